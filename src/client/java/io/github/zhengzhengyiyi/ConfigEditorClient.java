@@ -11,6 +11,8 @@ import io.github.zhengzhengyiyi.config.ModConfigData;
 import io.github.zhengzhengyiyi.gui.*;
 import io.github.zhengzhengyiyi.hud.BlockOverlayHudElement;
 import io.github.zhengzhengyiyi.hud.EntityOverlayHudElement;
+import io.github.zhengzhengyiyi.util.ConfigDirectoryWatcher;
+import io.github.zhengzhengyiyi.util.FileSaver;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
@@ -125,6 +127,8 @@ public class ConfigEditorClient implements ClientModInitializer {
 		
 		ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
             configManager.shutdown();
+            ConfigDirectoryWatcher.getInstance().shutdown();
+            FileSaver.shutdown();
         });
 		
 		// Register block overlay HUD element
@@ -43,7 +43,7 @@ public class TextStatsEntrypoint implements ApiEntrypoint {
         AbstractWidget textWidget = editor.getTextWidget();
         String text = "";
         if (textWidget instanceof MultilineEditor me) {
-            text = me.text;
+            text = me.getText();
         } else {
             LOGGER.error("can not find current text");
         }
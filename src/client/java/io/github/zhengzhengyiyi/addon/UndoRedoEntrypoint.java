@@ -32,7 +32,7 @@ public class UndoRedoEntrypoint implements ApiEntrypoint {
         resetStacks();
         if (textWidget != null) {
         	if (textWidget instanceof MultilineEditor) {
-        		currentText = ((MultilineEditor)textWidget).text;
+        		currentText = ((MultilineEditor)textWidget).getText();
             } else {
     			LOGGER.error("can not find current text");
     		}
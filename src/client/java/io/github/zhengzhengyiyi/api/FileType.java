@@ -51,38 +51,23 @@ public enum FileType {
 	    
 	    @Override
 	    public int getTextWidth(Font font, String text) {
-	        if (text == null || text.isEmpty()) return 0;
-	        return font.width(text);
+	        return TextMetrics.getInstance().getWidth(font, text);
 	    }
 	    
 	    @Override
 	    public int getCharIndexFromTokens(Font font, String line, int targetX) {
 	        if (line == null || line.isEmpty()) return 0;
 	        
-	        int currentWidth = 0;
-	        for (int i = 0; i < line.length(); i++) {
-	            char c = line.charAt(i);
-	            @SuppressWarnings("null")
-				int charWidth = font.width(String.valueOf(c));
-	            if (currentWidth + charWidth > targetX) {
-	                return i;
-	            }
-	            currentWidth += charWidth;
-	        }
-	        return line.length();
+	        // First character whose right edge passes targetX
+	        int end = TextMetrics.getInstance().getIndexAtWidth(font, line, targetX + 1);
+	        int[] prefix = TextMetrics.getInstance().getPrefixWidths(font, line);
+	        if (prefix[end] <= targetX) return line.length();
+	        return Math.max(0, end - 1);
 	    }
 	    
-	    @SuppressWarnings("null")
-		@Override
+	    @Override
 	    public int getTextWidthUpToChar(Font font, String line, int charIndex) {
-	        if (line == null || line.isEmpty() || charIndex <= 0) return 0;
-	        
-	        if (charIndex >= line.length()) {
-	            return font.width(line);
-	        }
-	        
-	        String substring = line.substring(0, charIndex);
-	        return font.width(substring);
+	        return TextMetrics.getInstance().getWidthUpTo(font, line, charIndex);
 	    }
 	}
 }
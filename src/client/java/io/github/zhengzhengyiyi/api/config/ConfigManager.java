@@ -3,15 +3,18 @@ package io.github.zhengzhengyiyi.api.config;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import io.github.zhengzhengyiyi.util.ConfigDirectoryWatcher;
 import net.minecraft.client.Minecraft;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,17 +23,41 @@ import org.slf4j.LoggerFactory;
  * Provides methods for accessing configuration data and automatically reloads
  * configuration when the file is modified externally.
  *
+ * The current configuration is one instance published through a volatile field,
+ * so {@link #getConfig()} is a plain read that is cheap enough for every frame.
+ * A published instance is not changed afterwards: {@link #update} changes a copy
+ * and publishes that, and a reload publishes the newly read instance.
+ *
+ * Code that depends on a setting can register a {@link ChangeListener} instead of
+ * checking the setting every frame. Listeners run on the client thread, and only
+ * when a published configuration differs from the one before it.
+ *
  * @param <T> the type of configuration data, must extend ConfigData
  */
 public class ConfigManager<T extends ConfigData> {
+    /**
+     * Receives a newly published configuration on the client thread.
+     */
+    @FunctionalInterface
+    public interface ChangeListener<T> {
+        /**
+         * @param previous the configuration before the change
+         * @param current the configuration now returned by {@link ConfigManager#getConfig()}
+         */
+        void onChanged(T previous, T current);
+    }
+
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private final Path configPath;
     private final Class<T> configClass;
-    private T config;
+    private volatile T config;
+    // The config path as the directory watcher reports it
+    private final Path watchedPath;
+    private final ConfigDirectoryWatcher.Listener watchListener = this::onFileChanged;
+    // Guarded by this
     private FileTime lastModifiedTime;
-    private ScheduledExecutorService fileWatcher;
-    private volatile boolean isReloading = false;
     private volatile boolean isWatcherRunning = false;
+    private final List<ChangeListener<? super T>> listeners = new CopyOnWriteArrayList<>();
     
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfigManager.class);
     
@@ -43,6 +70,7 @@ public class ConfigManager<T extends ConfigData> {
      */
     public ConfigManager(Path configPath, T defaultConfig, Class<T> configClass) {
         this.configPath = configPath;
+        this.watchedPath = configPath.toAbsolutePath().normalize();
         this.config = defaultConfig;
         this.configClass = configClass;
         init();
@@ -54,23 +82,19 @@ public class ConfigManager<T extends ConfigData> {
      */
     private void init() {
         load();
-//        startFileWatcher();
+        startFileWatcher();
     }
     
     /**
      * Loads configuration from file. Creates default configuration if file doesn't exist.
      */
-    public void load() {
-        if (isReloading) {
-            return;
-        }
-        
+    public synchronized void load() {
         try {
             if (Files.exists(configPath)) {
                 String jsonContent = Files.readString(configPath);
                 T loadedConfig = gson.fromJson(jsonContent, configClass);
                 if (loadedConfig != null) {
-                    this.config = loadedConfig;
+                    publish(loadedConfig);
                 }
                 lastModifiedTime = Files.getLastModifiedTime(configPath);
 //                LOGGER.info("Configuration loaded successfully from: {}", configPath);
@@ -86,7 +110,7 @@ public class ConfigManager<T extends ConfigData> {
     /**
      * Saves current configuration to file.
      */
-    public void save() {
+    public synchronized void save() {
         try {
             Files.createDirectories(configPath.getParent());
             String jsonContent = gson.toJson(config);
@@ -99,99 +123,127 @@ public class ConfigManager<T extends ConfigData> {
     }
     
     /**
-     * Starts a background thread that monitors the config file for changes.
-     * Automatically reloads the configuration if the file is modified externally.
+     * Starts watching the config file for changes made outside the game.
+     * The file's directory is watched by the shared {@link ConfigDirectoryWatcher},
+     * so no thread of its own is needed; changes are read on the watcher thread
+     * and published for the next {@link #getConfig()}.
      */
-    @SuppressWarnings("unused")
     private void startFileWatcher() {
-        if (fileWatcher != null && !fileWatcher.isShutdown()) {
-            fileWatcher.shutdown();
-            try {
-                if (!fileWatcher.awaitTermination(2, TimeUnit.SECONDS)) {
-                    fileWatcher.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                fileWatcher.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
-        
-        fileWatcher = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread thread = new Thread(r, "Config-File-Watcher-" + configPath.getFileName());
-            thread.setDaemon(true);
-            thread.setPriority(Thread.MIN_PRIORITY);
-            return thread;
-        });
-        
-        fileWatcher.scheduleAtFixedRate(() -> {
-            try {
-                if (!Files.exists(configPath)) {
-                    LOGGER.debug("Config file does not exist: {}", configPath);
-                    return;
-                }
-                
-                FileTime currentModifiedTime = Files.getLastModifiedTime(configPath);
-                boolean isModified = lastModifiedTime == null || 
-                                   currentModifiedTime.toMillis() > lastModifiedTime.toMillis() + 1000;
-                
-                if (isModified && !isReloading) {
-                    isReloading = true;
-                    LOGGER.info("Detected config file modification, reloading...");
-                    
-                    if (Minecraft.getInstance() != null) {
-                        Minecraft.getInstance().execute(() -> {
-                            load();
-                            isReloading = false;
-                        });
-                    } else {
-                        load();
-                        isReloading = false;
-                    }
-                }
-                
-            } catch (Exception e) {
-                LOGGER.error("File watcher error for {}: {}", configPath, e.getMessage());
-                isReloading = false;
-            }
-        }, 2, 2, TimeUnit.SECONDS);
-        
+        ConfigDirectoryWatcher watcher = ConfigDirectoryWatcher.getInstance();
+        watcher.removeListener(watchListener);
+        watcher.register(watchedPath.getParent());
+        watcher.addListener(watchListener);
         isWatcherRunning = true;
         LOGGER.info("File watcher started for: {}", configPath);
     }
+
+    private void onFileChanged(ConfigDirectoryWatcher.Kind kind, Path path) {
+        boolean affected = kind == ConfigDirectoryWatcher.Kind.OVERFLOW
+                ? watchedPath.startsWith(path)
+                : kind != ConfigDirectoryWatcher.Kind.DELETED && path.equals(watchedPath);
+        if (affected) {
+            reloadIfChanged();
+        }
+    }
+
+    /**
+     * Reloads the configuration unless the file is still as it was last read or
+     * written, which is the case after this manager saved it.
+     */
+    private synchronized void reloadIfChanged() {
+        try {
+            if (!Files.exists(configPath)) return;
+            if (Files.getLastModifiedTime(configPath).equals(lastModifiedTime)) return;
+        } catch (Exception e) {
+            LOGGER.error("Failed to check config modification time for {}: {}", configPath, e.getMessage());
+            return;
+        }
+        LOGGER.info("Detected config file modification, reloading...");
+        load();
+    }
     
     /**
-     * Returns the current configuration instance.
-     * Uses a file-modification-time check with a 2-second cooldown to avoid
-     * hitting the disk on every call.
+     * Returns the current configuration instance. This never touches the disk;
+     * changes to the file are picked up by the watcher and published here.
+     *
+     * The returned instance should be treated as read-only, since it may be in
+     * use on other threads; use {@link #update} to change the configuration.
      *
      * @return the current configuration instance
      */
     public T getConfig() {
-        maybeReload();
         return config;
     }
 
     /**
-     * Checks whether the config file has been modified since the last load,
-     * but at most once every 2 seconds to avoid constant disk I/O.
+     * Changes the configuration and saves it. The change is made to a copy of the
+     * current configuration, which then replaces it, so readers never see a
+     * half-made change.
+     *
+     * @param change applies the change to the copy
      */
-    private long lastCheckMs = 0;
-    private static final long CHECK_INTERVAL_MS = 2000;
+    public synchronized void update(Consumer<T> change) {
+        T copy = gson.fromJson(gson.toJsonTree(config), configClass);
+        change.accept(copy);
+        publish(copy);
+        save();
+    }
 
-    private void maybeReload() {
-        long now = System.currentTimeMillis();
-        if (now - lastCheckMs < CHECK_INTERVAL_MS) return;
-        lastCheckMs = now;
+    /**
+     * Registers a listener for any change to the configuration.
+     */
+    public void addListener(ChangeListener<? super T> listener) {
+        listeners.add(listener);
+    }
 
-        try {
-            if (!Files.exists(configPath)) return;
-            FileTime currentModifiedTime = Files.getLastModifiedTime(configPath);
-            if (lastModifiedTime == null ||
-                    currentModifiedTime.toMillis() > lastModifiedTime.toMillis()) {
-                load();
+    /**
+     * Registers a listener for one setting, called with its new value only when
+     * that value changed.
+     *
+     * @param setting reads the setting from a configuration
+     * @param onChange receives the new value on the client thread
+     * @return the registered listener, for {@link #removeListener}
+     */
+    public <V> ChangeListener<T> addListener(Function<? super T, ? extends V> setting, Consumer<? super V> onChange) {
+        ChangeListener<T> listener = (previous, current) -> {
+            V value = setting.apply(current);
+            if (!Objects.equals(setting.apply(previous), value)) {
+                onChange.accept(value);
             }
-        } catch (Exception e) {
-            LOGGER.error("Failed to check config modification time for {}: {}", configPath, e.getMessage());
+        };
+        addListener(listener);
+        return listener;
+    }
+
+    public void removeListener(ChangeListener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Makes a configuration the current one and tells the listeners if it differs
+     * from the previous one. A configuration changed in place and passed in again
+     * cannot be compared, so it is not reported.
+     */
+    private void publish(T next) {
+        T previous = config;
+        config = next;
+        if (listeners.isEmpty() || previous == next || gson.toJsonTree(previous).equals(gson.toJsonTree(next))) {
+            return;
+        }
+        Runnable notify = () -> {
+            for (ChangeListener<? super T> listener : listeners) {
+                try {
+                    listener.onChanged(previous, next);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Config change listener failed for {}", configPath, e);
+                }
+            }
+        };
+        Minecraft client = Minecraft.getInstance();
+        if (client != null) {
+            client.execute(notify);
+        } else {
+            notify.run();
         }
     }
     
@@ -200,8 +252,8 @@ public class ConfigManager<T extends ConfigData> {
      *
      * @param newConfig the new configuration instance
      */
-    public void updateConfig(T newConfig) {
-        this.config = newConfig;
+    public synchronized void updateConfig(T newConfig) {
+        publish(newConfig);
         save();
     }
     
@@ -211,7 +263,7 @@ public class ConfigManager<T extends ConfigData> {
      * @return true if the file watcher is running
      */
     public boolean isWatcherRunning() {
-        return isWatcherRunning && fileWatcher != null && !fileWatcher.isShutdown();
+        return isWatcherRunning;
     }
     
     /**
@@ -223,25 +275,13 @@ public class ConfigManager<T extends ConfigData> {
     }
     
     /**
-     * Shuts down the file watcher thread. Should be called when the application exits.
+     * Stops watching the config file. Should be called when the application exits.
      */
     public void shutdown() {
-        isWatcherRunning = false;
-        if (fileWatcher != null) {
+        if (isWatcherRunning) {
             LOGGER.info("Shutting down file watcher for: {}", configPath);
-            fileWatcher.shutdown();
-            try {
-                if (!fileWatcher.awaitTermination(3, TimeUnit.SECONDS)) {
-                    fileWatcher.shutdownNow();
-                    LOGGER.warn("File watcher had to be forcefully shutdown for: {}", configPath);
-                } else {
-                    LOGGER.info("File watcher shutdown successfully for: {}", configPath);
-                }
-            } catch (InterruptedException e) {
-                fileWatcher.shutdownNow();
-                Thread.currentThread().interrupt();
-                LOGGER.warn("File watcher shutdown interrupted for: {}", configPath);
-            }
         }
+        isWatcherRunning = false;
+        ConfigDirectoryWatcher.getInstance().removeListener(watchListener);
     }
 }
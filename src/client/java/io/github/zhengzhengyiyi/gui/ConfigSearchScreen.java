@@ -0,0 +1,181 @@
+package io.github.zhengzhengyiyi.gui;
+
+import io.github.zhengzhengyiyi.gui.theme.ThemeManager;
+import io.github.zhengzhengyiyi.util.ConfigSearchIndex;
+import net.minecraft.client.gui.GuiGraphicsExtractor;
+import net.minecraft.client.gui.components.Button;
+import net.minecraft.client.gui.components.EditBox;
+import net.minecraft.client.gui.screens.Screen;
+import net.minecraft.client.input.KeyEvent;
+import net.minecraft.client.input.MouseButtonEvent;
+import net.minecraft.network.chat.Component;
+import org.jspecify.annotations.NonNull;
+import org.lwjgl.glfw.GLFW;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Searches every config file at once through {@link ConfigSearchIndex} and opens
+ * the chosen match in the editor.
+ */
+public class ConfigSearchScreen extends Screen {
+    private static final int ROW_HEIGHT = 12;
+
+    private final EditorScreen parent;
+    private final ConfigSearchIndex index = ConfigSearchIndex.getInstance();
+    private ThemeManager themeManager;
+    private EditBox queryField;
+    private String query = "";
+    private ConfigSearchIndex.SearchResult result = ConfigSearchIndex.SearchResult.EMPTY;
+    private long searchMicros;
+    // Index version the current result was computed from
+    private int resultVersion = -1;
+    private int scrollOffset = 0;
+
+    public ConfigSearchScreen(EditorScreen parent, List<Path> files) {
+        super(Component.translatable("configeditor.searchall.title"));
+        this.parent = parent;
+        index.refresh(files);
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    protected void init() {
+        super.init();
+        themeManager = ThemeManager.getInstance();
+
+        queryField = new EditBox(this.font, 10, 24, this.width - 20, 18,
+                Component.translatable("configeditor.searchall.placeholder"));
+        queryField.setValue(query);
+        queryField.setResponder(text -> {
+            query = text;
+            runQuery();
+        });
+        this.addRenderableWidget(queryField);
+
+        this.addRenderableWidget(Button.builder(Component.translatable("gui.done"), button -> onClose())
+                .bounds(this.width / 2 - 100, this.height - 24, 200, 20)
+                .build());
+
+        this.setInitialFocus(queryField);
+    }
+
+    private void runQuery() {
+        long start = System.nanoTime();
+        result = index.search(query);
+        searchMicros = (System.nanoTime() - start) / 1000;
+        resultVersion = index.getVersion();
+        scrollOffset = 0;
+    }
+
+    @Override
+    public void tick() {
+        super.tick();
+        // Pick up matches from files that were indexed while the screen was open
+        if (resultVersion != index.getVersion()) {
+            int keptScroll = scrollOffset;
+            runQuery();
+            scrollOffset = Math.min(keptScroll, getMaxScroll());
+        }
+    }
+
+    private int getListTop() {
+        return 60;
+    }
+
+    private int getVisibleRows() {
+        return Math.max(1, (this.height - 30 - getListTop()) / ROW_HEIGHT);
+    }
+
+    private int getMaxScroll() {
+        return Math.max(0, result.matches.size() - getVisibleRows());
+    }
+
+    @Override
+    public void extractRenderState(@NonNull GuiGraphicsExtractor context, int mouseX, int mouseY, float delta) {
+        context.fill(0, 0, this.width, this.height, themeManager.getBackgroundColor());
+        context.fill(0, 0, this.width, 20, themeManager.getPanelColor());
+        context.fill(0, 19, this.width, 20, themeManager.getBorderColor());
+        context.text(this.font, this.title, 8, 6, themeManager.getTextColor(), false);
+
+        Component status;
+        if (query.isBlank()) {
+            status = Component.translatable("configeditor.searchall.files", index.getFileCount());
+        } else if (result.totalCount == 0) {
+            status = Component.translatable("configeditor.searchall.none");
+        } else if (result.totalCount > result.matches.size()) {
+            status = Component.translatable("configeditor.searchall.results.truncated", result.matches.size(),
+                    result.totalCount, result.fileCount, String.format("%.2f", searchMicros / 1000.0));
+        } else {
+            status = Component.translatable("configeditor.searchall.results",
+                    result.totalCount, result.fileCount, String.format("%.2f", searchMicros / 1000.0));
+        }
+        context.text(this.font, status, 10, 47, themeManager.getMutedTextColor(), false);
+        if (index.isIndexing()) {
+            Component indexing = Component.translatable("configeditor.searchall.indexing");
+            context.text(this.font, indexing, this.width - 10 - this.font.width(indexing), 47,
+                    themeManager.getAccentYellow(), false);
+        }
+
+        int listTop = getListTop();
+        int rows = getVisibleRows();
+        List<ConfigSearchIndex.Match> matches = result.matches;
+        for (int row = 0; row < rows && scrollOffset + row < matches.size(); row++) {
+            ConfigSearchIndex.Match match = matches.get(scrollOffset + row);
+            int y = listTop + row * ROW_HEIGHT;
+            if (mouseY >= y && mouseY < y + ROW_HEIGHT && mouseX >= 10 && mouseX < this.width - 10) {
+                context.fill(10, y - 1, this.width - 10, y + ROW_HEIGHT - 1, themeManager.getHoverRowColor());
+            }
+            String location = match.relativePath + ":" + match.line;
+            context.text(this.font, location, 14, y + 1, themeManager.getTextColor(), false);
+            context.text(this.font, match.token, 14 + this.font.width(location) + 8, y + 1,
+                    themeManager.getAccentColor(), false);
+        }
+
+        super.extractRenderState(context, mouseX, mouseY, delta);
+    }
+
+    @Override
+    public boolean mouseClicked(MouseButtonEvent click, boolean doubled) {
+        int listTop = getListTop();
+        if (click.button() == 0 && click.y() >= listTop && click.x() >= 10 && click.x() < this.width - 10) {
+            int row = (int) ((click.y() - listTop) / ROW_HEIGHT);
+            if (row < getVisibleRows() && scrollOffset + row < result.matches.size()) {
+                openMatch(result.matches.get(scrollOffset + row));
+                return true;
+            }
+        }
+        return super.mouseClicked(click, doubled);
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        if (verticalAmount > 0) {
+            scrollOffset = Math.max(0, scrollOffset - 3);
+            return true;
+        } else if (verticalAmount < 0) {
+            scrollOffset = Math.min(getMaxScroll(), scrollOffset + 3);
+            return true;
+        }
+        return super.mouseScrolled(mouseX, mouseY, horizontalAmount, verticalAmount);
+    }
+
+    @Override
+    public boolean keyPressed(@NonNull KeyEvent input) {
+        if (input.key() == GLFW.GLFW_KEY_ENTER && !result.matches.isEmpty()) {
+            openMatch(result.matches.get(scrollOffset));
+            return true;
+        }
+        return super.keyPressed(input);
+    }
+
+    private void openMatch(ConfigSearchIndex.Match match) {
+        parent.openAt(match.file, match.offset);
+    }
+
+    @Override
+    public void onClose() {
+        this.minecraft.setScreen(parent);
+    }
+}
@@ -3,7 +3,15 @@ package io.github.zhengzhengyiyi.gui;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import io.github.zhengzhengyiyi.util.BackupHelper;
+import io.github.zhengzhengyiyi.util.ConfigDirectoryWatcher;
+import io.github.zhengzhengyiyi.util.ConfigFileScanner;
+import io.github.zhengzhengyiyi.util.ConfigSearchIndex;
+import io.github.zhengzhengyiyi.util.FileSaver;
+import io.github.zhengzhengyiyi.util.TextFileLoader;
+import io.github.zhengzhengyiyi.util.document.MappedTextFile;
+import io.github.zhengzhengyiyi.util.document.PieceTable;
 import io.github.zhengzhengyiyi.*;
+import io.github.zhengzhengyiyi.api.config.ConfigManager;
 import io.github.zhengzhengyiyi.config.ModConfigData;
 import io.github.zhengzhengyiyi.gui.theme.ThemeManager;
 import io.github.zhengzhengyiyi.gui.widget.*;
@@ -18,14 +26,13 @@ import net.minecraft.client.gui.screens.ConfirmScreen;
 import net.minecraft.client.gui.components.EditBox;
 import net.minecraft.client.input.KeyEvent;
 import net.minecraft.client.gui.components.AbstractWidget;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.file.Files;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.Collections;
 import java.io.IOException;
 
 import org.jspecify.annotations.NonNull;
@@ -35,28 +42,57 @@ import org.slf4j.LoggerFactory;
 
 public class EditorScreen extends Screen {
     private static final Logger LOGGER = LoggerFactory.getLogger(EditorScreen.class);
+    private static final int EDITOR_TOP = 21;
+    private static final int BANNER_HEIGHT = 18;
     private List<Path> configFiles;
     private int selectedIndex = 0;
     private MultilineEditor editor;
+    // Shown instead of the editor for files too large to load
+    private LargeFileViewer viewer;
     private boolean modified = false;
     private Button saveButton;
     private Button openFolderButton;
     private Button backupButton;
-    private String buffer = "";
     private EditBox searchField;
     private Button visualEditButton;
     private Button aiChatButton;
     private Button searchNextButton;
     private Button searchPrevButton;
+    private Button multiSearchButton;
     private Button managePluginsButton;
+    private Button searchAllButton;
     private boolean searchVisible = false;
     private ThemeManager themeManager;
     private Button themeToggleButton;
-    private int fileListScrollOffset = 0;
     private Button scrollUpButton;
     private Button scrollDownButton;
-    private List<Button> fileButtonList;
+    private FileListWidget fileList;
     private Minecraft client = Minecraft.getInstance();
+    // Where to put the cursor the next time the screen opens, set by the search-all screen
+    private Path pendingFile;
+    private int pendingOffset = -1;
+    // File whose text the editor holds, kept when the screen is shown again so unsaved edits survive
+    private Path openFile;
+    // Whether the watcher listener is registered; changes made while it was not went unheard
+    private boolean watching = false;
+    // Counts loads so a file that finishes reading after another was picked is ignored
+    private int loadRequest = 0;
+    // Version of the scanner's file list that configFiles came from
+    private int filesVersion;
+    private final ConfigDirectoryWatcher.Listener fileWatchListener = this::onFileChanged;
+    private ConfigManager.ChangeListener<ModConfigData> readOnlyListener;
+    // The open file's text as last read or saved, to tell changes by other programs from our own saves
+    private PieceTable.Snapshot onDisk;
+    // Encoding the open file was read in, so saving writes it back the same way
+    private Charset fileCharset = StandardCharsets.UTF_8;
+    // Counts checks of the open file after it changed on disk, so only the latest one is acted on
+    private int changeCheck = 0;
+    // Shown above the editor while the file on disk no longer matches unsaved edits
+    private Component conflictMessage;
+    private String conflictText;
+    private Charset conflictCharset;
+    private Button reloadButton;
+    private Button keepButton;
 
     public EditorScreen() {
         super(Component.translatable("configeditor.title"));
@@ -75,16 +111,34 @@ public class EditorScreen extends Screen {
                 .build();
         this.addRenderableWidget(themeToggleButton);
         
-        try {
-            Path configDir = FabricLoader.getInstance().getConfigDir();
-            configFiles = new ArrayList<>();
-            loadConfigFilesRecursively(configDir, configFiles);
-        } catch (Exception e) {
-            configFiles = new ArrayList<>();
-            LOGGER.error("Failed to list config files", e);
+        // The list is kept between openings; the first opening fills it in as the directory is walked
+        ConfigFileScanner scanner = ConfigFileScanner.getInstance();
+        scanner.start();
+        filesVersion = scanner.getVersion();
+        configFiles = scanner.getFiles();
+        if (!scanner.isScanning()) {
+            ConfigSearchIndex.getInstance().refresh(configFiles);
+        }
+        if (pendingFile != null) {
+            int pendingIndex = configFiles.indexOf(pendingFile);
+            if (pendingIndex >= 0) {
+                selectedIndex = pendingIndex;
+            } else {
+                pendingOffset = -1;
+            }
+            pendingFile = null;
+        }
+        if (selectedIndex >= configFiles.size()) {
+            selectedIndex = 0;
         }
 
-        fileButtonList = new ArrayList<>();
+        // File list starts below the "FILES" header (y=20) and stops above the scroll arrows (height-50)
+        fileList = new FileListWidget(2, 21, 159, this.height - 72, this::switchFile);
+        fileList.setFiles(configFiles, FabricLoader.getInstance().getConfigDir());
+        fileList.setSelectedIndex(configFiles.isEmpty() ? -1 : selectedIndex);
+        if (!configFiles.isEmpty()) {
+            fileList.ensureVisible(selectedIndex);
+        }
         
         // Scroll arrows sit at the very bottom of the sidebar, above the bottom bar
         scrollUpButton = Button.builder(Component.literal("↑"), button -> scrollUp())
@@ -100,24 +154,44 @@ public class EditorScreen extends Screen {
                 .bounds(this.width - 40, this.height - 23, 38, 18)
                 .build();
         
+        searchAllButton = Button.builder(
+                Component.translatable("configeditor.button.searchall"),
+                button -> openSearchAll())
+                .bounds(100, 1, 60, 18)
+                .build();
+        
+        this.addRenderableWidget(fileList);
         this.addRenderableWidget(scrollUpButton);
         this.addRenderableWidget(scrollDownButton);
+        this.addRenderableWidget(searchAllButton);
         this.addRenderableWidget(managePluginsButton);
         
-        renderFileList();
-        
-        editor = new MultilineEditor(
-                165, 21,
-                this.width - 175, this.height - 48,
-                Component.translatable("configeditor.editor"));
-        editor.setChangedListener(text -> {
-            if (!buffer.equals(text)) {
-                modified = true;
-                updateButtonStates();
-            } else {
-                modified = false;
-            }
-        });
+        // init runs again after resizing and when coming back from another screen; the editor and its text are kept
+        if (editor == null) {
+            editor = new MultilineEditor(
+                    165, EDITOR_TOP,
+                    this.width - 175, this.height - 48,
+                    Component.translatable("configeditor.editor"));
+            viewer = new LargeFileViewer(
+                    165, EDITOR_TOP,
+                    this.width - 175, this.height - 48,
+                    Component.translatable("configeditor.viewer"));
+            viewer.visible = false;
+            editor.setEditListener(() -> {
+                // Text shown while a file is read is not an edit
+                if (editor.isLoading()) return;
+                if (onDisk == null || !editor.contentEquals(onDisk)) {
+                    modified = true;
+                    updateButtonStates();
+                } else {
+                    modified = false;
+                }
+            });
+        } else {
+            editor.setWidth(this.width - 175);
+            viewer.setWidth(this.width - 175);
+            viewer.setHeight(this.height - 48);
+        }
 
         int bottomY = this.height - 23;
         int centerX = this.width / 2;
@@ -147,7 +221,7 @@ public class EditorScreen extends Screen {
                 .bounds(5, bottomY, 90, 18)
                 .build();
         
-        int searchX = this.width - 320;
+        int searchX = this.width - 346;
         searchField = new EditBox(
             font, 
             searchX, 
@@ -191,6 +265,13 @@ public class EditorScreen extends Screen {
             .build();
         closeSearchButton.visible = true;
         
+        multiSearchButton = Button.builder(
+            getMultiSearchLabel(),
+            button -> toggleMultiSearch())
+            .bounds(searchX + 255, 2, 26, 18)
+            .build();
+        multiSearchButton.visible = true;
+        
         aiChatButton = Button.builder(
             Component.translatable("configeditor.button.aichat"),
             button -> openAiChat())
@@ -206,19 +287,60 @@ public class EditorScreen extends Screen {
         this.addRenderableWidget(searchPrevButton);
         this.addRenderableWidget(searchNextButton);
         this.addRenderableWidget(closeSearchButton);
+        this.addRenderableWidget(multiSearchButton);
         
         this.addRenderableWidget(aiChatButton);
         
         this.addRenderableWidget(editor);
+        this.addRenderableWidget(viewer);
+
+        reloadButton = Button.builder(
+                Component.translatable("configeditor.conflict.reload"),
+                button -> reloadFromDisk())
+                .bounds(this.width - 126, EDITOR_TOP + 1, 50, 16)
+                .build();
+        keepButton = Button.builder(
+                Component.translatable("configeditor.conflict.keep"),
+                button -> keepEdits())
+                .bounds(this.width - 72, EDITOR_TOP + 1, 62, 16)
+                .build();
+        this.addRenderableWidget(reloadButton);
+        this.addRenderableWidget(keepButton);
+        // A banner shown before init ran again stays up
+        reloadButton.visible = conflictMessage != null && conflictText != null;
+        keepButton.visible = conflictMessage != null;
+        layoutEditor();
+
+        // init also runs when the window is resized, so the listener may already be there
+        ConfigDirectoryWatcher watcher = ConfigDirectoryWatcher.getInstance();
+        watcher.removeListener(fileWatchListener);
+        watcher.addListener(fileWatchListener);
+        boolean missedChanges = !watching;
+        watching = true;
+        ConfigEditorClient.configManager.removeListener(readOnlyListener);
+        readOnlyListener = ConfigEditorClient.configManager.addListener(config -> config.readonly_mode,
+                readOnly -> editor.setEditable(!readOnly));
         
         this.setInitialFocus(editor);
 
-        if (!configFiles.isEmpty()) {
-            loadFile(selectedIndex);
-        } else {
+        if (configFiles.isEmpty()) {
+            openFile = null;
             editor.setText("{}");
             editor.setEditable(false);
-            LOGGER.warn("No config files found in config directory");
+            if (!scanner.isScanning()) {
+                LOGGER.warn("No config files found in config directory");
+            }
+        } else if (!configFiles.get(selectedIndex).equals(openFile)) {
+            loadFile(selectedIndex);
+        } else {
+            // Same file as before, so its text and unsaved edits are kept
+            if (pendingOffset >= 0 && editor.visible) {
+                editor.jumpTo(pendingOffset);
+            }
+            pendingOffset = -1;
+            if (missedChanges) {
+                checkFileOnDisk(openFile);
+            }
         }
         
         for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
@@ -230,100 +352,66 @@ public class EditorScreen extends Screen {
     }
     
     public boolean isConfigFile(Path file) {
-        String fileName = file.getFileName().toString();
-        
-        if (fileName.equals(".DS_Store") || 
-            fileName.startsWith(".") || 
-            fileName.equals("Thumbs.db")) {
-            return false;
-        }
-        
-        String lowerName = fileName.toLowerCase();
-        return lowerName.endsWith(".json") || 
-               lowerName.endsWith(".txt") || 
-               lowerName.endsWith(".yml") || 
-               lowerName.endsWith(".yaml") || 
-               lowerName.endsWith(".properties") || 
-               lowerName.endsWith(".toml") || 
-               lowerName.endsWith(".conf") || 
-               lowerName.endsWith(".cfg") || 
-               lowerName.endsWith(".ini");
-    }
-
-    private String formatFileName(String filePath) {
-        if (filePath.length() > 22) {
-            int lastSeparator = filePath.lastIndexOf('/');
-            if (lastSeparator != -1) {
-                String folder = filePath.substring(0, lastSeparator);
-                String fileName = filePath.substring(lastSeparator + 1);
-                
-                if (folder.length() > 8) {
-                    folder = folder.substring(0, 7) + "..";
-                }
-                if (fileName.length() > 12) {
-                    fileName = fileName.substring(0, 11) + "..";
-                }
-                return folder + "/" + fileName;
-            } else {
-                return filePath.substring(0, 17) + "...";
+        return ConfigFileScanner.isConfigFile(file);
+    }
+
+    @Override
+    public void tick() {
+        super.tick();
+        ConfigFileScanner scanner = ConfigFileScanner.getInstance();
+        if (configFiles != null && scanner.getVersion() != filesVersion) {
+            filesVersion = scanner.getVersion();
+            onFilesChanged(scanner.getFiles());
+            if (!scanner.isScanning()) {
+                ConfigSearchIndex.getInstance().refresh(configFiles);
             }
         }
-        return filePath;
+        updateScrollButtons();
     }
 
-    @SuppressWarnings("null")
-    private void renderFileList() {
-        for (Button button : fileButtonList) {
-            this.removeWidget(button);
+    /**
+     * Takes a new file list from the scanner, keeping the open file selected.
+     */
+    private void onFilesChanged(List<Path> files) {
+        Path current = configFiles.isEmpty() ? null : configFiles.get(selectedIndex);
+        if (current != null && !files.contains(current)) {
+            // The open file was deleted; it stays listed so saving recreates it instead of writing to another file
+            List<Path> withCurrent = new ArrayList<>(files);
+            withCurrent.add(-Collections.binarySearch(withCurrent, current) - 1, current);
+            files = List.copyOf(withCurrent);
         }
-        fileButtonList.clear();
-        
-        // File list starts below the "FILES" header (y=20) and stops above the scroll arrows (height-50)
-        int maxVisible = Math.max(1, (this.height - 70) / 22);
-        int buttonY = 22;
-        for (int i = fileListScrollOffset; i < configFiles.size() && i < fileListScrollOffset + maxVisible; i++) {
-            int index = i;
-            Path file = configFiles.get(i);
-            Path configDir = FabricLoader.getInstance().getConfigDir();
-            String relativePath = configDir.relativize(file).toString();
-            
-            Button button = Button.builder(
-                    Component.literal((index == selectedIndex ? "▶ " : "  ") + formatFileName(relativePath)),
-                    _button -> switchFile(index))
-                    .bounds(5, buttonY, 158, 20)
-                    .build();
-            this.addRenderableWidget(button);
-            fileButtonList.add(button);
-            buttonY += 22;
+        configFiles = files;
+        fileList.setFiles(configFiles, FabricLoader.getInstance().getConfigDir());
+        if (current != null) {
+            selectedIndex = configFiles.indexOf(current);
+            fileList.setSelectedIndex(selectedIndex);
+        } else if (!configFiles.isEmpty()) {
+            loadFile(0);
         }
+        updateScrollButtons();
     }
 
     private void scrollUp() {
-        if (fileListScrollOffset > 0) {
-            fileListScrollOffset--;
-            renderFileList();
-            updateScrollButtons();
-        }
+        fileList.scrollRows(-1);
+        updateScrollButtons();
     }
 
     private void scrollDown() {
-        int maxVisible = Math.max(1, (this.height - 70) / 22);
-        if (fileListScrollOffset < configFiles.size() - maxVisible) {
-            fileListScrollOffset++;
-            renderFileList();
-            updateScrollButtons();
-        }
+        fileList.scrollRows(1);
+        updateScrollButtons();
     }
 
     private void updateScrollButtons() {
-        int maxVisible = Math.max(1, (this.height - 70) / 22);
-        scrollUpButton.active = fileListScrollOffset > 0;
-        scrollDownButton.active = fileListScrollOffset < configFiles.size() - maxVisible;
+        scrollUpButton.active = fileList.canScrollUp();
+        scrollDownButton.active = fileList.canScrollDown();
     }
 
     private void updateButtonStates() {
         if (saveButton != null) {
-            saveButton.active = true;
+            saveButton.active = !viewer.visible;
+        }
+        if (visualEditButton != null) {
+            visualEditButton.active = !viewer.visible;
         }
     }
 
@@ -338,67 +426,211 @@ public class EditorScreen extends Screen {
         }
         
         selectedIndex = index;
+        fileList.setSelectedIndex(index);
         modified = false;
         Path file = configFiles.get(index);
-        
-        try {
-            String content = readFileWithFallbackEncoding(file);
-            buffer = content;
-            
-//            boolean isJson = checkIfJson(content);
-            editor.setFileName(getFileName(file.getFileName()));
-//            editor.setJsonMode(isJson);
-            editor.setText(content);
-            
-        } catch (Exception e) {
-            LOGGER.error("Failed to load config file: {}", file.getFileName(), e);
-            editor.setFileName(getFileName(file.getFileName()));
-//            editor.setJsonMode(true);
-            editor.setText("{}");
-            editor.setEditable(false);
-            showErrorPopup(Component.translatable("configeditor.error.loadfailed"));
-        }
-        
+        openFile = file;
+        int request = ++loadRequest;
+        onDisk = null;
+        fileCharset = StandardCharsets.UTF_8;
+        dismissConflict();
+        viewer.close();
+        viewer.visible = false;
+        editor.visible = true;
+
+        // Reading happens in the background; the old text is cleared so it cannot be edited or saved in its place
+        editor.setFileName(getFileName(file.getFileName()));
+        editor.setLoading(true);
+        editor.setText("");
         updateButtonStates();
+
+        TextFileLoader.load(file, new TextFileLoader.Listener() {
+            @Override
+            public void onPreview(String text) {
+                if (request != loadRequest) return;
+                editor.setText(text);
+            }
+
+            @Override
+            public void onLoaded(String text, Charset charset) {
+                if (request != loadRequest) return;
+                editor.setText(text);
+                onDisk = editor.getSnapshot();
+                fileCharset = charset;
+                editor.setLoading(false);
+                editor.setEditable(!ConfigEditorClient.configManager.getConfig().readonly_mode);
+                modified = false;
+                if (pendingOffset >= 0) {
+                    editor.jumpTo(pendingOffset);
+                    pendingOffset = -1;
+                }
+                updateButtonStates();
+            }
+
+            @Override
+            public void onMapped(MappedTextFile mapped) {
+                if (request != loadRequest) {
+                    mapped.close();
+                    return;
+                }
+                editor.setLoading(false);
+                editor.visible = false;
+                viewer.setFile(mapped);
+                viewer.visible = true;
+                setFocused(viewer);
+                pendingOffset = -1;
+                updateButtonStates();
+            }
+
+            @Override
+            public void onFailed(IOException error) {
+                if (request != loadRequest) return;
+                LOGGER.error("Failed to load config file: {}", file.getFileName(), error);
+                editor.setText("{}");
+                editor.setLoading(false);
+                editor.setEditable(false);
+                pendingOffset = -1;
+                showErrorPopup(Component.translatable("configeditor.error.loadfailed"));
+            }
+        });
     }
     
-    public static String getFileName(Path path) {
-        if (path == null) {
-            return "";
-        }
-        return path.getFileName().toString();
-    }
-
-    private String readFileWithFallbackEncoding(Path file) throws IOException {
-        try {
-            return Files.readString(file, java.nio.charset.StandardCharsets.UTF_8);
-        } catch (java.nio.charset.MalformedInputException e) {
-            try {
-                return Files.readString(file, java.nio.charset.Charset.defaultCharset());
-            } catch (java.nio.charset.MalformedInputException e2) {
-                return Files.readString(file, java.nio.charset.StandardCharsets.ISO_8859_1);
+    /**
+     * Called on the watcher thread when something in the config directory changed.
+     */
+    private void onFileChanged(ConfigDirectoryWatcher.Kind kind, Path path) {
+        client.execute(() -> {
+            if (client.screen != this || configFiles == null || configFiles.isEmpty()) return;
+            Path file = configFiles.get(selectedIndex);
+            if (kind == ConfigDirectoryWatcher.Kind.OVERFLOW ? file.startsWith(path) : file.equals(path)) {
+                checkFileOnDisk(file);
             }
-        }
+        });
     }
 
-    private void loadConfigFilesRecursively(Path directory, List<Path> fileList) throws IOException {
-        if (!Files.exists(directory) || !Files.isDirectory(directory)) {
+    /**
+     * Reads the open file again after it changed on disk. Without unsaved edits
+     * the new text replaces the old one; with them, a banner offers to reload.
+     */
+    private void checkFileOnDisk(Path file) {
+        if (editor.isLoading() || viewer.visible) {
+            // Nothing to lose: a file being read is read again, and the viewer cannot be edited
+            loadFile(selectedIndex);
             return;
         }
-        
-        try (var stream = Files.list(directory)) {
-            List<Path> entries = stream.collect(Collectors.toList());
-            
-            for (Path entry : entries) {
-                if (Files.isDirectory(entry)) {
-                    loadConfigFilesRecursively(entry, fileList);
-                } else if (Files.isRegularFile(entry) && isConfigFile(entry)) {
-                    fileList.add(entry);
+        int request = loadRequest;
+        int check = ++changeCheck;
+        TextFileLoader.load(file, new TextFileLoader.Listener() {
+            @Override
+            public void onLoaded(String text, Charset charset) {
+                if (request != loadRequest || check != changeCheck) return;
+                onFileReadAgain(text, charset);
+            }
+
+            @Override
+            public void onMapped(MappedTextFile mapped) {
+                mapped.close();
+                if (request != loadRequest || check != changeCheck) return;
+                // The file grew too large to edit, so it can only be viewed
+                if (modified) {
+                    showConflict(Component.translatable("configeditor.conflict.changed"), null, null);
+                } else {
+                    loadFile(selectedIndex);
+                }
+            }
+
+            @Override
+            public void onFailed(IOException error) {
+                if (request != loadRequest || check != changeCheck) return;
+                if (error instanceof NoSuchFileException) {
+                    // Saving puts the file back
+                    onDisk = null;
+                    showConflict(Component.translatable("configeditor.conflict.deleted"), null, null);
+                } else {
+                    LOGGER.warn("Failed to read changed config file: {}", file.getFileName(), error);
                 }
             }
+        });
+    }
+
+    private void onFileReadAgain(String text, Charset charset) {
+        if (onDisk != null && onDisk.contentEquals(text)) {
+            // Unchanged, such as after our own save, though it may have been saved in another encoding
+            fileCharset = charset;
+            dismissConflict();
+        } else if (!modified || editor.contentEquals(text)) {
+            applyTextFromDisk(text, charset);
+        } else {
+            showConflict(Component.translatable("configeditor.conflict.changed"), text, charset);
+        }
+    }
+
+    /**
+     * Replaces the editor text with the file's, keeping the cursor where it is.
+     */
+    private void applyTextFromDisk(String text, Charset charset) {
+        editor.setText(text);
+        onDisk = editor.getSnapshot();
+        fileCharset = charset;
+        modified = false;
+        dismissConflict();
+        updateButtonStates();
+    }
+
+    private void reloadFromDisk() {
+        if (conflictText != null) {
+            applyTextFromDisk(conflictText, conflictCharset);
         }
     }
 
+    /**
+     * Shows the banner above the editor, which moves down to make room for it.
+     * @param diskText the file's new text, which the reload button switches to, or null to offer no reload
+     * @param diskCharset the encoding the new text was read in
+     */
+    private void showConflict(Component message, String diskText, Charset diskCharset) {
+        conflictMessage = message;
+        conflictText = diskText;
+        conflictCharset = diskCharset;
+        reloadButton.visible = diskText != null;
+        keepButton.visible = true;
+        layoutEditor();
+    }
+
+    /**
+     * Keeps the unsaved edits over the file's new text; the next save overwrites it
+     * in the encoding the edits were read in.
+     */
+    private void keepEdits() {
+        if (conflictText != null) {
+            // The new text is now known, so it is not reported again
+            onDisk = PieceTable.Snapshot.of(conflictText);
+        }
+        dismissConflict();
+    }
+
+    private void dismissConflict() {
+        conflictMessage = null;
+        conflictText = null;
+        conflictCharset = null;
+        reloadButton.visible = false;
+        keepButton.visible = false;
+        layoutEditor();
+    }
+
+    private void layoutEditor() {
+        int top = conflictMessage != null ? EDITOR_TOP + BANNER_HEIGHT : EDITOR_TOP;
+        editor.setY(top);
+        editor.setHeight(this.height - 27 - top);
+    }
+
+    public static String getFileName(Path path) {
+        if (path == null) {
+            return "";
+        }
+        return path.getFileName().toString();
+    }
+
     public boolean checkIfJson(String content) {
         if (content == null || content.trim().isEmpty()) {
             return false;
@@ -418,21 +650,66 @@ public class EditorScreen extends Screen {
     }
 
     private void startSearch(String query) {
-        editor.startSearch(query);
+        // ":<line>" jumps to a line instead of searching
+        if (query.startsWith(":") && query.chars().skip(1).allMatch(Character::isDigit)) {
+            endSearch();
+            if (query.length() > 1 && query.length() <= 10) {
+                goToLine(Integer.parseInt(query.substring(1)));
+            }
+            return;
+        }
+        if (viewer.visible) {
+            viewer.startSearch(query);
+        } else {
+            editor.startSearch(query);
+        }
         searchNextButton.active = true;
         searchPrevButton.active = true;
     }
 
+    private void goToLine(int line) {
+        if (viewer.visible) {
+            viewer.goToLine(line);
+        } else {
+            editor.goToLine(line);
+        }
+    }
+
+    /**
+     * Switches the search box between one term and a comma-separated list of terms.
+     */
+    private void toggleMultiSearch() {
+        editor.setMultiPatternSearch(!editor.isMultiPatternSearch());
+        multiSearchButton.setMessage(getMultiSearchLabel());
+        String query = searchField.getValue().trim();
+        if (!query.isEmpty()) {
+            startSearch(query);
+        }
+    }
+
+    private Component getMultiSearchLabel() {
+        return Component.literal(editor != null && editor.isMultiPatternSearch() ? "§eA,B" : "A,B");
+    }
+
     private void findNext() {
-        editor.findNext();
+        if (viewer.visible) {
+            viewer.findNext();
+        } else {
+            editor.findNext();
+        }
     }
 
     private void findPrevious() {
-        editor.findPrevious();
+        if (viewer.visible) {
+            viewer.findPrevious();
+        } else {
+            editor.findPrevious();
+        }
     }
 
     private void endSearch() {
         editor.endSearch();
+        viewer.endSearch();
         searchNextButton.active = false;
         searchPrevButton.active = false;
     }
@@ -444,17 +721,19 @@ public class EditorScreen extends Screen {
     public void setEditorText(String text) {
         if (editor != null) {
             editor.setText(text);
-            buffer = text;
             modified = true;
             updateButtonStates();
         }
     }
     
     private void saveFileAsync(Runnable callback) {
-        if (configFiles.isEmpty()) return;
+        // A file still being read only has part of its text in the editor
+        if (configFiles.isEmpty() || editor.isLoading() || viewer.visible) return;
         
         Path file = configFiles.get(selectedIndex);
-        String content = editor.getText();
+        PieceTable.Snapshot content = editor.getSnapshot();
+        long revision = editor.getRevision();
+        Charset charset = fileCharset;
         
 //        if (editor.isJsonMode()) {
 //            try {
@@ -466,58 +745,30 @@ public class EditorScreen extends Screen {
 //            }
 //        }
         
-        new Thread(() -> {
-            int retryCount = 0;
-            final int maxRetries = 3;
-            
-            while (retryCount <= maxRetries) {
-                try {
-                    try (FileChannel channel = FileChannel.open(file, 
-                         StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
-                        FileLock lock = channel.tryLock(0, Long.MAX_VALUE, false);
-                        if (lock != null) {
-                            try {
-                                Files.writeString(file, content, StandardOpenOption.TRUNCATE_EXISTING);
-                                modified = false;
-                                LOGGER.info("Successfully saved file: {}", file.getFileName());
-                                
-                                if (callback != null) {
-                                    client.execute(callback);
-                                } else {
-                                    client.execute(this::updateButtonStates);
-                                }
-                                return;
-                            } finally {
-                                lock.release();
-                            }
-                        }
-                    }
-                    
-                    retryCount++;
-                    if (retryCount <= maxRetries) {
-                        Thread.sleep(300);
-                    }
-                    
-                } catch (Exception e) {
-                    retryCount++;
-                    if (retryCount > maxRetries) {
-                        LOGGER.error("Failed to save file after {} attempts: {}", maxRetries, file.getFileName(), e);
-                        client.execute(() -> {
-                            if (this.minecraft.screen != null && this.minecraft.screen.equals(this)) {
-                                showErrorPopup(Component.translatable("configeditor.error.savefailed"));
-                            }
-                        });
-                    }
+        FileSaver.save(file, content::writeTo, charset, new FileSaver.Listener() {
+            @Override
+            public void onSaved() {
+                if (configFiles != null && !configFiles.isEmpty() && file.equals(configFiles.get(selectedIndex))) {
+                    onDisk = content;
+                    dismissConflict();
+                    // Edits made while the save was running are still unsaved, unless they were undone
+                    modified = editor.getRevision() != revision && !editor.contentEquals(content);
+                }
+                if (callback != null) {
+                    callback.run();
+                } else {
+                    updateButtonStates();
                 }
             }
 
-            client.execute(() -> {
-                if (this.minecraft.screen != null && this.minecraft.screen.equals(this)) {
-                    showErrorPopup(Component.translatable("configeditor.error.fileretryfailed"));
+            @Override
+            public void onFailed(IOException error) {
+                // A save started from a confirmation screen reports there too, instead of leaving it up
+                if (minecraft.screen == EditorScreen.this || callback != null) {
+                    showErrorPopup(Component.translatable("configeditor.error.savefailed"));
                 }
-            });
-            
-        }).start();
+            }
+        });
     }
     
     @SuppressWarnings("null")
@@ -544,9 +795,40 @@ public class EditorScreen extends Screen {
     }
     
     private void openVisualEditor() {
+		if (viewer.visible) return;
 		this.minecraft.setScreen(new JsonVisualEditorScreen(this.editor.getText(), this.editor.getFileName()));
 	}
 
+	private void openSearchAll() {
+		this.minecraft.setScreen(new ConfigSearchScreen(this, configFiles));
+	}
+
+	/**
+	 * Shows this screen with a file opened at a character offset. Unsaved edits to
+	 * another file are offered for saving first.
+	 */
+	@SuppressWarnings("null")
+	public void openAt(Path file, int offset) {
+		pendingFile = file;
+		pendingOffset = offset;
+		if (!modified || file.equals(openFile)) {
+			this.minecraft.setScreen(this);
+			return;
+		}
+		this.minecraft.setScreen(new ConfirmScreen(
+			result -> {
+				if (result) {
+					saveFileAsync(() -> this.minecraft.setScreen(this));
+				} else {
+					modified = false;
+					this.minecraft.setScreen(this);
+				}
+			},
+			Component.translatable("configeditor.confirm.title"),
+			Component.translatable("configeditor.confirm.unsavedswitch", file.getFileName().toString())
+		));
+	}
+
 	private void openAiChat() {
 		Minecraft.getInstance().setScreen(new AIChatScreen());
 	}
@@ -599,6 +881,13 @@ public class EditorScreen extends Screen {
 
         super.extractRenderState(context, mouseX, mouseY, delta);
 
+        if (conflictMessage != null) {
+            int bottom = EDITOR_TOP + BANNER_HEIGHT;
+            context.fill(165, EDITOR_TOP, this.width - 10, bottom - 1, themeManager.getPanelColor());
+            context.fill(165, bottom - 1, this.width - 10, bottom, themeManager.getAccentYellow());
+            context.text(this.font, conflictMessage, 170, EDITOR_TOP + 5, themeManager.getAccentYellow(), false);
+        }
+
         // Status bar — file name with modified indicator
         if (!configFiles.isEmpty()) {
             String fileName = configFiles.get(selectedIndex).getFileName().toString();
@@ -614,6 +903,21 @@ public class EditorScreen extends Screen {
             context.text(this.font, label, 172, 5, nameColor, false);
         }
 
+        // Search match counter, updated as results come in
+        if (viewer.visible && viewer.isSearching()) {
+            String key = viewer.isSearchRunning() ? "configeditor.search.count.running"
+                    : viewer.isSearchTruncated() ? "configeditor.search.count.partial"
+                    : "configeditor.search.count";
+            Component counter = Component.translatable(key, viewer.getCurrentSearchIndex(), viewer.getSearchMatchCount());
+            context.text(this.font, counter, this.width - 352 - this.font.width(counter), 7, themeManager.getMutedTextColor(), false);
+        } else if (editor.isSearching()) {
+            String key = editor.isSearchRunning() ? "configeditor.search.count.running"
+                    : editor.isSearchTimedOut() ? "configeditor.search.count.partial"
+                    : "configeditor.search.count";
+            Component counter = Component.translatable(key, editor.getCurrentSearchIndex(), editor.getSearchMatchCount());
+            context.text(this.font, counter, this.width - 352 - this.font.width(counter), 7, themeManager.getMutedTextColor(), false);
+        }
+
         for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
             entrypoint.renderButton(context, mouseX, mouseY, delta);
         }
@@ -649,6 +953,7 @@ public class EditorScreen extends Screen {
         searchField.setVisible(searchVisible);
         searchNextButton.visible = searchVisible;
         searchPrevButton.visible = searchVisible;
+        multiSearchButton.visible = searchVisible;
         
         if (searchVisible) {
             setFocused(searchField);
@@ -666,8 +971,6 @@ public class EditorScreen extends Screen {
         super.onClose();
         
         configFiles = null;
-        fileButtonList.clear();
-        fileButtonList = null;
         
         for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
             entrypoint.onEditerClose(this);
@@ -678,6 +981,19 @@ public class EditorScreen extends Screen {
     @Override
     public void removed() {
         super.removed();
+        // Loads still running belong to this screen; a file mapped after this point is closed instead of shown
+        loadRequest++;
+        if (editor != null && (editor.isLoading() || viewer.visible)) {
+            // Nothing unsaved is lost: the file is read again if the screen is shown again
+            openFile = null;
+        }
+        watching = false;
+        ConfigDirectoryWatcher.getInstance().removeListener(fileWatchListener);
+        ConfigEditorClient.configManager.removeListener(readOnlyListener);
+        // Mapped files are released right away rather than whenever they are collected
+        if (viewer != null) {
+            viewer.close();
+        }
         LOGGER.info("Config editor screen removed");
     }
     
@@ -719,24 +1035,35 @@ public class EditorScreen extends Screen {
             }
         }
         
+        if (input.key() == GLFW.GLFW_KEY_F && input.hasControlDown() && input.hasShiftDown()) {
+            openSearchAll();
+            return true;
+        }
+        
         if (input.key() == GLFW.GLFW_KEY_F && input.hasControlDown()) {
             toggleSearch();
             return true;
         }
         
+        if (input.key() == GLFW.GLFW_KEY_G && input.hasControlDown()) {
+            if (!searchVisible) {
+                toggleSearch();
+            }
+            searchField.setValue(":");
+            setFocused(searchField);
+            return true;
+        }
+        
         return super.keyPressed(input);
     }
     
     @SuppressWarnings("null")
     private void toggleTheme() {
-        ModConfigData config = ConfigEditorClient.configManager.getConfig();
-        switch (config.theme) {
-            case DARK -> config.theme = ModConfigData.ThemeMode.LIGHT;
-            case LIGHT -> config.theme = ModConfigData.ThemeMode.AUTO;
-            case AUTO -> config.theme = ModConfigData.ThemeMode.DARK;
-        }
-        ConfigEditorClient.configManager.save();
-        themeManager.invalidate();
+        ConfigEditorClient.configManager.update(config -> config.theme = switch (config.theme) {
+            case DARK -> ModConfigData.ThemeMode.LIGHT;
+            case LIGHT -> ModConfigData.ThemeMode.AUTO;
+            case AUTO -> ModConfigData.ThemeMode.DARK;
+        });
         themeToggleButton.setMessage(Component.translatable(getThemeButtonText()));
     }
     
@@ -86,9 +86,7 @@ public class EntityOverlayHubScreen extends Screen {
      */
     @SuppressWarnings("null")
     private void toggleEntityOverlay() {
-        ModConfigData cfg = ConfigEditorClient.configManager.getConfig();
-        cfg.showEntityOverlay = !cfg.showEntityOverlay;
-        ConfigEditorClient.configManager.save();
+        ConfigEditorClient.configManager.update(cfg -> cfg.showEntityOverlay = !cfg.showEntityOverlay);
         entityOverlayToggle.setMessage(buildEntityLabel());
     }
 
@@ -98,9 +96,7 @@ public class EntityOverlayHubScreen extends Screen {
      */
     @SuppressWarnings("null")
     private void toggleBlockOverlay() {
-        ModConfigData cfg = ConfigEditorClient.configManager.getConfig();
-        cfg.showBlockOverlay = !cfg.showBlockOverlay;
-        ConfigEditorClient.configManager.save();
+        ConfigEditorClient.configManager.update(cfg -> cfg.showBlockOverlay = !cfg.showBlockOverlay);
         blockOverlayToggle.setMessage(buildBlockLabel());
     }
 
@@ -15,9 +15,9 @@ import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import java.nio.file.Files;
+import io.github.zhengzhengyiyi.util.FileSaver;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -510,25 +510,22 @@ public class JsonVisualEditorScreen extends Screen {
         
         String finalJson = gson.toJson(updatedJson);
         
-        new Thread(() -> {
-            try {
-                Files.createDirectories(filePath.getParent());
-                Files.writeString(filePath, finalJson, StandardCharsets.UTF_8);
-                
-                Minecraft.getInstance().execute(() -> {
-                    if (minecraft != null) {
-                        minecraft.setScreen(null);
-                    }
-                });
-                
-            } catch (Exception e) {
-                Minecraft.getInstance().execute(() -> {
-                    if (minecraft != null) {
-                        minecraft.setScreen(null);
-                    }
-                });
+        // The screen closes either way; a failed save is logged by the saver
+        FileSaver.save(filePath, finalJson, new FileSaver.Listener() {
+            @Override
+            public void onSaved() {
+                if (minecraft != null) {
+                    minecraft.setScreen(null);
+                }
+            }
+
+            @Override
+            public void onFailed(IOException error) {
+                if (minecraft != null) {
+                    minecraft.setScreen(null);
+                }
             }
-        }).start();
+        });
     }
     
     private JsonObject buildJsonObject() {
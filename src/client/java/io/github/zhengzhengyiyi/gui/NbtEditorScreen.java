@@ -15,10 +15,9 @@ import net.minecraft.nbt.Tag;
 import net.minecraft.network.chat.Component;
 
 import io.github.zhengzhengyiyi.gui.widget.*;
+import io.github.zhengzhengyiyi.util.FileSaver;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Optional;
 import java.util.Set;
 
@@ -82,19 +81,12 @@ public class NbtEditorScreen extends Screen {
     private void saveNbt() {
         String fileName = renameField.getValue().trim();
         if (!fileName.isEmpty() && nbtData.isPresent()) {
-            File saveDir = new File(Minecraft.getInstance().gameDirectory, "saved_nbt");
-            if (!saveDir.exists()) saveDir.mkdirs();
-
-            File outFile = new File(saveDir, fileName + ".json");
-            try (FileWriter writer = new FileWriter(outFile)) {
-                Gson gson = new GsonBuilder()
-                        .disableHtmlEscaping()
-                        .create();
-                JsonElement jsonElement = JsonParser.parseString(nbtToJsonString(nbtData.get()));
-                gson.toJson(jsonElement, writer);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            Path outFile = Minecraft.getInstance().gameDirectory.toPath().resolve("saved_nbt").resolve(fileName + ".json");
+            Gson gson = new GsonBuilder()
+                    .disableHtmlEscaping()
+                    .create();
+            JsonElement jsonElement = JsonParser.parseString(nbtToJsonString(nbtData.get()));
+            FileSaver.save(outFile, gson.toJson(jsonElement), null);
         }
 
         minecraft.setScreen(null);
@@ -63,20 +63,19 @@ public class PluginManagerScreen extends Screen {
             ConfigEditorClient.ENTRYPOINTS.remove(plugin);
             
             // Add to disabled list in config
-            if (!ConfigEditorClient.configManager.getConfig().disabledPlugins.contains(pluginId)) {
-                ConfigEditorClient.configManager.getConfig().disabledPlugins.add(pluginId);
-            }
+            ConfigEditorClient.configManager.update(config -> {
+                if (!config.disabledPlugins.contains(pluginId)) {
+                    config.disabledPlugins.add(pluginId);
+                }
+            });
         } else {
             // Enable plugin
             button.setMessage(Component.literal("§a✔ Enabled"));
             ConfigEditorClient.ENTRYPOINTS.add(plugin);
             
             // Remove from disabled list in config
-            ConfigEditorClient.configManager.getConfig().disabledPlugins.remove(pluginId);
+            ConfigEditorClient.configManager.update(config -> config.disabledPlugins.remove(pluginId));
         }
-        
-        // Save config to persist changes
-        ConfigEditorClient.configManager.save();
     }
 
     @SuppressWarnings("null")
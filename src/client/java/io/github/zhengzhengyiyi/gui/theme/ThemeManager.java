@@ -38,12 +38,14 @@ public class ThemeManager {
     public static final int LIGHT_SELECTED_ROW   = 0xFFCCD0DA; // selected row
     public static final int LIGHT_HOVER_ROW      = 0xFFD4D8E2; // hovered row
 
-    // Cached values — invalidated when the theme setting changes
-    private ModConfigData.ThemeMode cachedTheme = null;
+    // Cached values — updated by a config listener when the theme setting changes
     private int cachedBg = DARK_BACKGROUND;
     private boolean cachedIsDark = true;
 
-    private ThemeManager() {}
+    private ThemeManager() {
+        applyTheme(ConfigEditorClient.configManager.getConfig().theme);
+        ConfigEditorClient.configManager.addListener(config -> config.theme, this::applyTheme);
+    }
 
     public static ThemeManager getInstance() {
         if (instance == null) {
@@ -52,43 +54,33 @@ public class ThemeManager {
         return instance;
     }
 
-    private void recompute() {
-        ModConfigData.ThemeMode theme = ConfigEditorClient.configManager.getConfig().theme;
-        if (theme != cachedTheme) {
-            cachedTheme = theme;
-            if (theme == ModConfigData.ThemeMode.AUTO) {
-                cachedIsDark = isSystemDarkMode();
-            } else {
-                cachedIsDark = theme == ModConfigData.ThemeMode.DARK;
-            }
-            cachedBg = cachedIsDark ? DARK_BACKGROUND : LIGHT_BACKGROUND;
+    private void applyTheme(ModConfigData.ThemeMode theme) {
+        if (theme == ModConfigData.ThemeMode.AUTO) {
+            cachedIsDark = isSystemDarkMode();
+        } else {
+            cachedIsDark = theme == ModConfigData.ThemeMode.DARK;
         }
+        cachedBg = cachedIsDark ? DARK_BACKGROUND : LIGHT_BACKGROUND;
     }
 
     public boolean isDark() {
-        recompute();
         return cachedIsDark;
     }
 
-    public int getBackgroundColor()   { recompute(); return cachedIsDark ? DARK_BACKGROUND    : LIGHT_BACKGROUND; }
-    public int getSidebarColor()      { recompute(); return cachedIsDark ? DARK_SIDEBAR        : LIGHT_SIDEBAR; }
-    public int getPanelColor()        { recompute(); return cachedIsDark ? DARK_PANEL          : LIGHT_PANEL; }
-    public int getBorderColor()       { recompute(); return cachedIsDark ? DARK_BORDER         : LIGHT_BORDER; }
-    public int getBorderAccentColor() { recompute(); return cachedIsDark ? DARK_BORDER_ACCENT  : LIGHT_BORDER_ACCENT; }
-    public int getTextColor()         { recompute(); return cachedIsDark ? DARK_TEXT           : LIGHT_TEXT; }
-    public int getMutedTextColor()    { recompute(); return cachedIsDark ? DARK_TEXT_MUTED     : LIGHT_TEXT_MUTED; }
-    public int getAccentColor()       { recompute(); return cachedIsDark ? DARK_ACCENT         : LIGHT_ACCENT; }
-    public int getAccentGreen()       { recompute(); return cachedIsDark ? DARK_ACCENT_GREEN   : LIGHT_ACCENT_GREEN; }
-    public int getAccentRed()         { recompute(); return cachedIsDark ? DARK_ACCENT_RED     : LIGHT_ACCENT_RED; }
-    public int getAccentYellow()      { recompute(); return cachedIsDark ? DARK_ACCENT_YELLOW  : LIGHT_ACCENT_YELLOW; }
-    public int getAccentMauve()       { recompute(); return cachedIsDark ? DARK_ACCENT_MAUVE   : LIGHT_ACCENT_MAUVE; }
-    public int getSelectedRowColor()  { recompute(); return cachedIsDark ? DARK_SELECTED_ROW   : LIGHT_SELECTED_ROW; }
-    public int getHoverRowColor()     { recompute(); return cachedIsDark ? DARK_HOVER_ROW      : LIGHT_HOVER_ROW; }
-
-    /** Call this after the user changes the theme so the cache is immediately refreshed. */
-    public void invalidate() {
-        cachedTheme = null;
-    }
+    public int getBackgroundColor()   { return cachedIsDark ? DARK_BACKGROUND    : LIGHT_BACKGROUND; }
+    public int getSidebarColor()      { return cachedIsDark ? DARK_SIDEBAR        : LIGHT_SIDEBAR; }
+    public int getPanelColor()        { return cachedIsDark ? DARK_PANEL          : LIGHT_PANEL; }
+    public int getBorderColor()       { return cachedIsDark ? DARK_BORDER         : LIGHT_BORDER; }
+    public int getBorderAccentColor() { return cachedIsDark ? DARK_BORDER_ACCENT  : LIGHT_BORDER_ACCENT; }
+    public int getTextColor()         { return cachedIsDark ? DARK_TEXT           : LIGHT_TEXT; }
+    public int getMutedTextColor()    { return cachedIsDark ? DARK_TEXT_MUTED     : LIGHT_TEXT_MUTED; }
+    public int getAccentColor()       { return cachedIsDark ? DARK_ACCENT         : LIGHT_ACCENT; }
+    public int getAccentGreen()       { return cachedIsDark ? DARK_ACCENT_GREEN   : LIGHT_ACCENT_GREEN; }
+    public int getAccentRed()         { return cachedIsDark ? DARK_ACCENT_RED     : LIGHT_ACCENT_RED; }
+    public int getAccentYellow()      { return cachedIsDark ? DARK_ACCENT_YELLOW  : LIGHT_ACCENT_YELLOW; }
+    public int getAccentMauve()       { return cachedIsDark ? DARK_ACCENT_MAUVE   : LIGHT_ACCENT_MAUVE; }
+    public int getSelectedRowColor()  { return cachedIsDark ? DARK_SELECTED_ROW   : LIGHT_SELECTED_ROW; }
+    public int getHoverRowColor()     { return cachedIsDark ? DARK_HOVER_ROW      : LIGHT_HOVER_ROW; }
 
     private boolean isSystemDarkMode() {
         return true; // default to dark; no reliable cross-platform API in MC context
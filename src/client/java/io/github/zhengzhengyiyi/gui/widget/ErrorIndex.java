@@ -0,0 +1,82 @@
+package io.github.zhengzhengyiyi.gui.widget;
+
+import io.github.zhengzhengyiyi.util.JSONError;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Validation errors grouped by the line they start on.
+ *
+ * Errors are sorted by line, and each line that has errors maps to its range in
+ * that order, so drawing or hit-testing a line only looks at the errors on it.
+ */
+class ErrorIndex {
+    static final ErrorIndex EMPTY = new ErrorIndex(List.of());
+
+    private final List<JSONError> source;
+    private final JSONError[] errors;
+    // Zero-based lines that have errors, ascending, and where their errors start
+    private final int[] lines;
+    private final int[] starts;
+
+    ErrorIndex(List<JSONError> source) {
+        this.source = source;
+        this.errors = source.toArray(new JSONError[0]);
+        Arrays.sort(errors, Comparator.comparingInt((JSONError error) -> error.lineNumber)
+                .thenComparingInt(error -> error.startPosition));
+
+        int buckets = 0;
+        for (int i = 0; i < errors.length; i++) {
+            if (i == 0 || errors[i].lineNumber != errors[i - 1].lineNumber) buckets++;
+        }
+        lines = new int[buckets];
+        starts = new int[buckets + 1];
+        int bucket = 0;
+        for (int i = 0; i < errors.length; i++) {
+            if (i == 0 || errors[i].lineNumber != errors[i - 1].lineNumber) {
+                lines[bucket] = errors[i].lineNumber - 1;
+                starts[bucket] = i;
+                bucket++;
+            }
+        }
+        starts[buckets] = errors.length;
+    }
+
+    /**
+     * Whether this index was built from the given list.
+     */
+    boolean isFor(List<JSONError> errors) {
+        return source == errors;
+    }
+
+    /**
+     * Gets the bucket of the first line at or after {@code line} that has errors.
+     * @return the bucket, or {@link #getBucketCount()} if there is none
+     */
+    int findBucket(int line) {
+        int index = Arrays.binarySearch(lines, line);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    int getBucketCount() {
+        return lines.length;
+    }
+
+    int getBucketLine(int bucket) {
+        return lines[bucket];
+    }
+
+    int getBucketStart(int bucket) {
+        return starts[bucket];
+    }
+
+    int getBucketEnd(int bucket) {
+        return starts[bucket + 1];
+    }
+
+    JSONError get(int index) {
+        return errors[index];
+    }
+}
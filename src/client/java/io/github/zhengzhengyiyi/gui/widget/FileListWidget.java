@@ -0,0 +1,300 @@
+package io.github.zhengzhengyiyi.gui.widget;
+
+import io.github.zhengzhengyiyi.gui.theme.ThemeManager;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphicsExtractor;
+import net.minecraft.client.gui.components.AbstractWidget;
+import net.minecraft.client.gui.narration.NarrationElementOutput;
+import net.minecraft.client.input.MouseButtonEvent;
+import net.minecraft.network.chat.Component;
+import net.minecraft.util.Mth;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The sidebar list of config files.
+ *
+ * Only the rows in view exist: a fixed pool of rows is rebound to whichever files
+ * are visible as the list scrolls, so thousands of files cost no more than a
+ * screenful. Row labels are worked out once when the file list is set. Scrolling
+ * is by pixel and eases toward its target, and the list can be dragged by its
+ * body or its scroll bar.
+ */
+public class FileListWidget extends AbstractWidget {
+    public static final int ROW_HEIGHT = 22;
+    private static final int SCROLLBAR_WIDTH = 4;
+    // Pixels the mouse has to move before a press on a row becomes a drag
+    private static final int DRAG_THRESHOLD = 4;
+
+    /**
+     * One visible row. Rows are reused for different files as the list scrolls.
+     */
+    private static final class Row {
+        int index = -1;
+        String label = "";
+        String path = "";
+        boolean shortened = false;
+    }
+
+    private final Font textRenderer;
+    private final IntConsumer onSelect;
+    private final Row[] rows;
+    private List<Path> files = List.of();
+    private String[] labels = new String[0];
+    private String[] relativePaths = new String[0];
+    private int selectedIndex = -1;
+    private double scrollAmount = 0;
+    private double targetScroll = 0;
+    private boolean draggingScrollbar = false;
+    private boolean draggingList = false;
+    private double pressY = -1;
+    private double dragStartScroll = 0;
+
+    /**
+     * @param onSelect called with the index of a file when its row is clicked
+     */
+    public FileListWidget(int x, int y, int width, int height, IntConsumer onSelect) {
+        super(x, y, width, height, Component.translatable("configeditor.files"));
+        this.textRenderer = Minecraft.getInstance().font;
+        this.onSelect = onSelect;
+        // One extra row for the one that is partly scrolled in at the bottom
+        this.rows = new Row[height / ROW_HEIGHT + 2];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Row();
+        }
+    }
+
+    /**
+     * Replaces the listed files and works out their labels.
+     * @param files the files, in display order
+     * @param root the directory the labels are relative to
+     */
+    public void setFiles(List<Path> files, Path root) {
+        this.files = files;
+        this.labels = new String[files.size()];
+        this.relativePaths = new String[files.size()];
+        for (int i = 0; i < labels.length; i++) {
+            relativePaths[i] = root.relativize(files.get(i)).toString().replace(File.separatorChar, '/');
+            labels[i] = formatFileName(relativePaths[i]);
+        }
+        for (Row row : rows) {
+            row.index = -1;
+        }
+        setScroll(targetScroll);
+        scrollAmount = targetScroll;
+    }
+
+    public void setSelectedIndex(int index) {
+        this.selectedIndex = index;
+        for (Row row : rows) {
+            row.index = -1;
+        }
+    }
+
+    /**
+     * Scrolls just far enough for a file's row to be fully in view.
+     */
+    public void ensureVisible(int index) {
+        int top = index * ROW_HEIGHT;
+        if (top < targetScroll) {
+            setScroll(top);
+        } else if (top + ROW_HEIGHT > targetScroll + this.height) {
+            setScroll(top + ROW_HEIGHT - this.height);
+        }
+    }
+
+    /**
+     * Scrolls by a number of rows, negative to scroll up.
+     */
+    public void scrollRows(int amount) {
+        setScroll(targetScroll + amount * ROW_HEIGHT);
+    }
+
+    public boolean canScrollUp() {
+        return targetScroll > 0;
+    }
+
+    public boolean canScrollDown() {
+        return targetScroll < getMaxScroll();
+    }
+
+    private int getMaxScroll() {
+        return Math.max(0, files.size() * ROW_HEIGHT - this.height);
+    }
+
+    private void setScroll(double scroll) {
+        targetScroll = Mth.clamp(scroll, 0, getMaxScroll());
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    protected void extractWidgetRenderState(GuiGraphicsExtractor context, int mouseX, int mouseY, float delta) {
+        if (!this.visible) {
+            return;
+        }
+
+        // Ease toward the target so wheel steps do not jump a whole row at once
+        if (scrollAmount != targetScroll) {
+            double step = (targetScroll - scrollAmount) * 0.5;
+            scrollAmount = Math.abs(step) < 0.5 ? targetScroll : scrollAmount + step;
+        }
+
+        ThemeManager theme = ThemeManager.getInstance();
+        int scroll = (int) Math.round(scrollAmount);
+        int first = scroll / ROW_HEIGHT;
+        int textRight = this.getX() + this.width - SCROLLBAR_WIDTH - 2;
+        Row hovered = null;
+
+        context.enableScissor(this.getX(), this.getY(), this.getX() + this.width, this.getY() + this.height);
+        try {
+            for (int i = 0; i < rows.length && first + i < files.size(); i++) {
+                Row row = bind(rows[(first + i) % rows.length], first + i);
+                int y = this.getY() + row.index * ROW_HEIGHT - scroll;
+                if (y >= this.getY() + this.height) break;
+
+                boolean isHovered = !draggingList && !draggingScrollbar && this.isMouseOver(mouseX, mouseY)
+                        && mouseX < textRight && mouseY >= y && mouseY < y + ROW_HEIGHT - 2;
+                if (row.index == selectedIndex) {
+                    context.fill(this.getX() + 3, y, textRight, y + ROW_HEIGHT - 2, theme.getSelectedRowColor());
+                } else if (isHovered) {
+                    context.fill(this.getX() + 3, y, textRight, y + ROW_HEIGHT - 2, theme.getHoverRowColor());
+                }
+                if (isHovered) {
+                    hovered = row;
+                }
+                int color = row.index == selectedIndex ? theme.getAccentColor() : theme.getTextColor();
+                context.text(this.textRenderer, row.label, this.getX() + 6,
+                        y + (ROW_HEIGHT - 2 - this.textRenderer.lineHeight) / 2 + 1, color, false);
+            }
+
+            int maxScroll = getMaxScroll();
+            if (maxScroll > 0) {
+                int barX = this.getX() + this.width - SCROLLBAR_WIDTH;
+                int thumbHeight = getThumbHeight();
+                int thumbY = this.getY() + (int) ((this.height - thumbHeight) * scrollAmount / maxScroll);
+                context.fill(barX, this.getY(), barX + SCROLLBAR_WIDTH, this.getY() + this.height, theme.getBorderColor());
+                context.fill(barX, thumbY, barX + SCROLLBAR_WIDTH, thumbY + thumbHeight, theme.getMutedTextColor());
+            }
+        } finally {
+            context.disableScissor();
+        }
+
+        // Long paths are shortened in the list, so show the whole path on hover
+        if (hovered != null && hovered.shortened) {
+            context.setTooltipForNextFrame(this.textRenderer, Component.literal(hovered.path), mouseX, mouseY);
+        }
+    }
+
+    private Row bind(Row row, int index) {
+        if (row.index != index) {
+            row.index = index;
+            row.label = (index == selectedIndex ? "▶ " : "  ") + labels[index];
+            row.path = relativePaths[index];
+            row.shortened = !labels[index].equals(relativePaths[index]);
+        }
+        return row;
+    }
+
+    private int getThumbHeight() {
+        return Math.max(16, (int) ((long) this.height * this.height / Math.max(1, files.size() * ROW_HEIGHT)));
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public boolean mouseClicked(MouseButtonEvent click, boolean doubled) {
+        if (!this.visible || !this.active || click.button() != 0 || !this.isMouseOver(click.x(), click.y())) {
+            return false;
+        }
+        dragStartScroll = targetScroll;
+        pressY = click.y();
+        draggingScrollbar = getMaxScroll() > 0 && click.x() >= this.getX() + this.width - SCROLLBAR_WIDTH - 2;
+        if (draggingScrollbar) {
+            // Clicking the track centers the thumb on the mouse
+            int thumbHeight = getThumbHeight();
+            double ratio = (click.y() - this.getY() - thumbHeight / 2.0) / (this.height - thumbHeight);
+            setScroll(ratio * getMaxScroll());
+            scrollAmount = targetScroll;
+            dragStartScroll = targetScroll;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public boolean mouseDragged(MouseButtonEvent click, double offsetX, double offsetY) {
+        if (pressY < 0) {
+            return false;
+        }
+        double moved = click.y() - pressY;
+        if (draggingScrollbar) {
+            int track = this.height - getThumbHeight();
+            setScroll(dragStartScroll + moved * getMaxScroll() / Math.max(1, track));
+        } else {
+            if (!draggingList && Math.abs(moved) < DRAG_THRESHOLD) {
+                return true;
+            }
+            draggingList = true;
+            setScroll(dragStartScroll - moved);
+        }
+        scrollAmount = targetScroll;
+        return true;
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public boolean mouseReleased(MouseButtonEvent click) {
+        if (pressY < 0) {
+            return false;
+        }
+        boolean wasDrag = draggingList || draggingScrollbar;
+        pressY = -1;
+        draggingList = false;
+        draggingScrollbar = false;
+        if (!wasDrag && this.isMouseOver(click.x(), click.y())) {
+            int index = (int) ((click.y() - this.getY() + Math.round(scrollAmount)) / ROW_HEIGHT);
+            if (index >= 0 && index < files.size()) {
+                onSelect.accept(index);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        if (!this.visible || !this.isMouseOver(mouseX, mouseY)) {
+            return false;
+        }
+        setScroll(targetScroll - verticalAmount * ROW_HEIGHT * 2);
+        return true;
+    }
+
+    @Override
+    protected void updateWidgetNarration(NarrationElementOutput builder) {
+        this.defaultButtonNarrationText(builder);
+    }
+
+    private static String formatFileName(String filePath) {
+        if (filePath.length() > 22) {
+            int lastSeparator = filePath.lastIndexOf('/');
+            if (lastSeparator != -1) {
+                String folder = filePath.substring(0, lastSeparator);
+                String fileName = filePath.substring(lastSeparator + 1);
+
+                if (folder.length() > 8) {
+                    folder = folder.substring(0, 7) + "..";
+                }
+                if (fileName.length() > 12) {
+                    fileName = fileName.substring(0, 11) + "..";
+                }
+                return folder + "/" + fileName;
+            } else {
+                return filePath.substring(0, 17) + "...";
+            }
+        }
+        return filePath;
+    }
+}
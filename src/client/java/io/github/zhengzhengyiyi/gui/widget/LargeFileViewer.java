@@ -0,0 +1,460 @@
+package io.github.zhengzhengyiyi.gui.widget;
+
+import io.github.zhengzhengyiyi.util.document.MappedTextFile;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphicsExtractor;
+import net.minecraft.client.gui.components.AbstractWidget;
+import net.minecraft.client.gui.narration.NarrationElementOutput;
+import net.minecraft.client.input.KeyEvent;
+import net.minecraft.client.input.MouseButtonEvent;
+import net.minecraft.network.chat.Component;
+import net.minecraft.util.Mth;
+import org.lwjgl.glfw.GLFW;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows a {@link MappedTextFile} read-only, for files too large for the editor.
+ *
+ * Only the lines in view are decoded, and only again when the view moves. Search
+ * scans the mapped bytes on a background thread and keeps the byte offset of each
+ * match, so neither needs the file as a string.
+ */
+public class LargeFileViewer extends AbstractWidget {
+    private static final int SCROLLBAR_WIDTH = 5;
+    // Searching stops after this many matches
+    private static final int MAX_MATCHES = 100_000;
+    // Matches found by the worker are handed over at least this often
+    private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Config-Editor-Viewer-Search");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Font textRenderer;
+    private MappedTextFile file;
+    private int scrollLine = 0;
+    private int horizontalScrollOffset = 0;
+    // Line picked by go-to-line or a search match, drawn with a marker
+    private int markedLine = -1;
+    private boolean draggingScrollbar = false;
+
+    // The decoded lines in view, and the byte offset each of them starts at
+    private int windowFirst = -1;
+    private String[] windowLines = new String[0];
+    private long[] windowStarts = new long[0];
+
+    private boolean searching = false;
+    private byte[] searchNeedle = new byte[0];
+    private long[] matches = new long[64];
+    private int matchCount = 0;
+    private int currentMatch = -1;
+    private Future<?> searchTask;
+    // Counts searches so batches from a replaced search are dropped
+    private int searchGeneration = 0;
+    private boolean searchRunning = false;
+    private boolean searchTruncated = false;
+
+    public LargeFileViewer(int x, int y, int width, int height, Component message) {
+        super(x, y, width, height, message);
+        this.textRenderer = Minecraft.getInstance().font;
+    }
+
+    /**
+     * Shows a file, closing the one shown before.
+     */
+    public void setFile(MappedTextFile file) {
+        close();
+        this.file = file;
+        scrollLine = 0;
+        horizontalScrollOffset = 0;
+        markedLine = -1;
+        windowFirst = -1;
+    }
+
+    public boolean hasFile() {
+        return file != null;
+    }
+
+    /**
+     * Stops any search and releases the shown file.
+     */
+    public void close() {
+        endSearch();
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+        windowFirst = -1;
+        windowLines = new String[0];
+        windowStarts = new long[0];
+    }
+
+    private int getLineHeight() {
+        return this.textRenderer.lineHeight + 2;
+    }
+
+    private int getVisibleLines() {
+        return Math.max(1, this.height / getLineHeight());
+    }
+
+    private int getMaxScroll() {
+        return file == null ? 0 : Math.max(0, file.getLineCount() - getVisibleLines());
+    }
+
+    private void setScrollLine(int line) {
+        scrollLine = Mth.clamp(line, 0, getMaxScroll());
+    }
+
+    /**
+     * Scrolls to a line and marks it.
+     * @param line the one-based line number
+     */
+    public void goToLine(int line) {
+        if (file == null) return;
+        markedLine = Mth.clamp(line - 1, 0, file.getLineCount() - 1);
+        setScrollLine(markedLine - 2);
+    }
+
+    /**
+     * Scrolls to the line that holds a byte offset and marks it.
+     */
+    public void jumpToOffset(long offset) {
+        if (file == null) return;
+        goToLine(file.getLineOfOffset(offset) + 1);
+    }
+
+    /**
+     * Decodes the lines in view, unless they are the ones decoded last time.
+     */
+    private void updateWindow() {
+        int count = Math.min(getVisibleLines() + 1, file.getLineCount() - scrollLine);
+        if (windowFirst == scrollLine && windowLines.length == count) return;
+        windowFirst = scrollLine;
+        windowLines = new String[count];
+        windowStarts = new long[count + 1];
+        long start = file.getLineStart(scrollLine);
+        for (int i = 0; i < count; i++) {
+            long end = file.getLineEnd(start);
+            windowStarts[i] = start;
+            windowLines[i] = file.getText(start, end);
+            start = end + 1;
+        }
+        windowStarts[count] = start;
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    protected void extractWidgetRenderState(GuiGraphicsExtractor context, int mouseX, int mouseY, float delta) {
+        if (!this.visible) {
+            return;
+        }
+
+        context.enableScissor(this.getX(), this.getY(), this.getX() + this.width, this.getY() + this.height);
+        try {
+            context.fill(this.getX(), this.getY(), this.getX() + this.width, this.getY() + this.height, 0xFF000000);
+            if (file == null) return;
+
+            updateWindow();
+            int lineHeight = getLineHeight();
+            int gutter = this.textRenderer.width(String.valueOf(file.getLineCount())) + 8;
+            int textX = this.getX() + gutter - horizontalScrollOffset;
+
+            for (int i = 0; i < windowLines.length; i++) {
+                int line = windowFirst + i;
+                int yPos = this.getY() + 4 + i * lineHeight;
+                if (line == markedLine) {
+                    context.fill(this.getX(), yPos - 1, this.getX() + this.width, yPos + lineHeight - 1, 0x33FFFFFF);
+                }
+                context.text(textRenderer, String.valueOf(line + 1), this.getX() + 2, yPos, 0xFF888888, false);
+                context.text(textRenderer, windowLines[i], textX, yPos, 0xFFDDDDDD, false);
+            }
+
+            if (searching) {
+                renderSearchHighlights(context, textX, lineHeight);
+            }
+
+            int maxScroll = getMaxScroll();
+            if (maxScroll > 0) {
+                int visibleLines = getVisibleLines();
+                int barX = this.getX() + this.width - SCROLLBAR_WIDTH;
+                int thumbHeight = getThumbHeight(visibleLines);
+                int thumbY = this.getY() + (int) ((long) (this.height - thumbHeight) * scrollLine / maxScroll);
+                context.fill(barX, this.getY(), this.getX() + this.width, this.getY() + this.height, 0xFF555555);
+                context.fill(barX + 1, thumbY, this.getX() + this.width - 1, thumbY + thumbHeight, 0xFFBBBBBB);
+            }
+
+            Component label = Component.translatable("configeditor.viewer.readonly",
+                    String.format("%.1f", file.length() / (1024.0 * 1024.0)));
+            context.text(textRenderer, label, this.getX() + this.width - SCROLLBAR_WIDTH - 6 - textRenderer.width(label),
+                    this.getY() + 4, 0xFFFFFF55, false);
+        } finally {
+            context.disableScissor();
+        }
+    }
+
+    /**
+     * Draws a marker under the matches in view. The first one is found by binary
+     * search, so the cost depends on the matches in view only.
+     */
+    private void renderSearchHighlights(GuiGraphicsExtractor context, int textX, int lineHeight) {
+        int index = Arrays.binarySearch(matches, 0, matchCount, windowStarts[0]);
+        if (index < 0) index = -index - 1;
+        int row = 0;
+        for (; index < matchCount; index++) {
+            long match = matches[index];
+            while (row < windowLines.length && match >= windowStarts[row + 1]) {
+                row++;
+            }
+            if (row >= windowLines.length) break;
+
+            long lineStart = windowStarts[row];
+            if (match - lineStart + searchNeedle.length > MappedTextFile.MAX_LINE_BYTES) continue;
+            int xStart = textX + textRenderer.width(file.getText(lineStart, match));
+            int xEnd = textX + textRenderer.width(file.getText(lineStart, match + searchNeedle.length));
+            int yStart = this.getY() + 4 + row * lineHeight + textRenderer.lineHeight - 1;
+            context.fill(xStart, yStart, xEnd, yStart + 2, index == currentMatch ? 0x66FFD700 : 0x66FFFF00);
+        }
+    }
+
+    private int getThumbHeight(int visibleLines) {
+        return Math.max(20, (int) ((long) this.height * visibleLines / Math.max(1, file.getLineCount())));
+    }
+
+    /**
+     * Starts looking for every occurrence of a query. Letters match regardless of
+     * case, as in the editor.
+     */
+    public void startSearch(String query) {
+        endSearch();
+        if (file == null || query == null || query.isEmpty()) return;
+
+        searching = true;
+        searchRunning = true;
+        searchNeedle = query.getBytes(file.getCharset());
+        searchGeneration++;
+        searchTask = EXECUTOR.submit(new SearchTask(file, searchNeedle, searchGeneration));
+    }
+
+    /**
+     * Takes a batch of matches from the worker, on the client thread.
+     */
+    private void acceptMatches(int generation, long[] batch, boolean finished, boolean truncated) {
+        if (generation != searchGeneration || file == null) return;
+        if (matchCount + batch.length > matches.length) {
+            matches = Arrays.copyOf(matches, Math.max(matchCount + batch.length, matches.length * 2));
+        }
+        System.arraycopy(batch, 0, matches, matchCount, batch.length);
+        matchCount += batch.length;
+
+        if (currentMatch < 0 && matchCount > 0) {
+            // The first match below the top of the view, or the first one once the scan is done
+            long top = file.getLineStart(scrollLine);
+            int index = Arrays.binarySearch(matches, 0, matchCount, top);
+            if (index < 0) index = -index - 1;
+            if (index < matchCount) {
+                currentMatch = index;
+                jumpToOffset(matches[currentMatch]);
+            } else if (finished) {
+                currentMatch = 0;
+                jumpToOffset(matches[0]);
+            }
+        }
+        if (finished) {
+            searchRunning = false;
+            searchTruncated = truncated;
+            searchTask = null;
+        }
+    }
+
+    public void findNext() {
+        if (!searching || matchCount == 0) return;
+        currentMatch = (currentMatch + 1) % matchCount;
+        jumpToOffset(matches[currentMatch]);
+    }
+
+    public void findPrevious() {
+        if (!searching || matchCount == 0) return;
+        currentMatch = (currentMatch - 1 + matchCount) % matchCount;
+        jumpToOffset(matches[currentMatch]);
+    }
+
+    public void endSearch() {
+        if (searchTask != null) {
+            searchTask.cancel(true);
+            searchTask = null;
+        }
+        searchGeneration++;
+        searching = false;
+        searchRunning = false;
+        searchTruncated = false;
+        matchCount = 0;
+        currentMatch = -1;
+    }
+
+    public boolean isSearching() {
+        return searching;
+    }
+
+    /**
+     * Whether the search is still scanning and more matches may arrive.
+     */
+    public boolean isSearchRunning() {
+        return searchRunning;
+    }
+
+    /**
+     * Whether the search stopped at {@link #MAX_MATCHES}, so the count is incomplete.
+     */
+    public boolean isSearchTruncated() {
+        return searchTruncated;
+    }
+
+    public int getSearchMatchCount() {
+        return matchCount;
+    }
+
+    public int getCurrentSearchIndex() {
+        return currentMatch + 1;
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        if (!this.visible || file == null || !this.isMouseOver(mouseX, mouseY)) return false;
+        if (verticalAmount != 0) {
+            setScrollLine(scrollLine - (int) Math.signum(verticalAmount) * 3);
+        }
+        if (horizontalAmount != 0) {
+            horizontalScrollOffset = Math.max(0, horizontalScrollOffset - (int) (horizontalAmount * 20));
+        }
+        return true;
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public boolean mouseClicked(MouseButtonEvent click, boolean doubled) {
+        if (!this.visible || file == null || click.button() != 0 || !this.isMouseOver(click.x(), click.y())) {
+            return false;
+        }
+        this.setFocused(true);
+        if (getMaxScroll() > 0 && click.x() >= this.getX() + this.width - SCROLLBAR_WIDTH) {
+            draggingScrollbar = true;
+            scrollToMouse(click.y());
+        }
+        return true;
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public boolean mouseDragged(MouseButtonEvent click, double offsetX, double offsetY) {
+        if (draggingScrollbar) {
+            scrollToMouse(click.y());
+            return true;
+        }
+        return super.mouseDragged(click, offsetX, offsetY);
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public boolean mouseReleased(MouseButtonEvent click) {
+        if (draggingScrollbar) {
+            draggingScrollbar = false;
+            return true;
+        }
+        return super.mouseReleased(click);
+    }
+
+    private void scrollToMouse(double mouseY) {
+        int thumbHeight = getThumbHeight(getVisibleLines());
+        double ratio = (mouseY - this.getY() - thumbHeight / 2.0) / Math.max(1, this.height - thumbHeight);
+        setScrollLine((int) Math.round(Mth.clamp(ratio, 0, 1) * getMaxScroll()));
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public boolean keyPressed(KeyEvent input) {
+        if (!this.isFocused() || file == null) {
+            return false;
+        }
+        int page = getVisibleLines() - 1;
+        switch (input.key()) {
+            case GLFW.GLFW_KEY_UP -> setScrollLine(scrollLine - 1);
+            case GLFW.GLFW_KEY_DOWN -> setScrollLine(scrollLine + 1);
+            case GLFW.GLFW_KEY_PAGE_UP -> setScrollLine(scrollLine - page);
+            case GLFW.GLFW_KEY_PAGE_DOWN -> setScrollLine(scrollLine + page);
+            case GLFW.GLFW_KEY_HOME -> setScrollLine(0);
+            case GLFW.GLFW_KEY_END -> setScrollLine(getMaxScroll());
+            case GLFW.GLFW_KEY_LEFT -> horizontalScrollOffset = Math.max(0, horizontalScrollOffset - 20);
+            case GLFW.GLFW_KEY_RIGHT -> horizontalScrollOffset += 20;
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One search on the worker thread. Cancelling its future stops the scan.
+     */
+    private final class SearchTask implements Runnable {
+        private final MappedTextFile searched;
+        private final byte[] needle;
+        private final int generation;
+        private long[] pending = new long[256];
+        private int pendingCount = 0;
+        private int found = 0;
+        private long lastPublish;
+
+        SearchTask(MappedTextFile searched, byte[] needle, int generation) {
+            this.searched = searched;
+            this.needle = needle;
+            this.generation = generation;
+        }
+
+        @Override
+        public void run() {
+            lastPublish = System.nanoTime();
+            boolean complete;
+            try {
+                complete = searched.findAll(needle, 0, searched.length(), true, this::found);
+            } catch (IllegalStateException e) {
+                // The file was closed while searching
+                return;
+            }
+            if (Thread.currentThread().isInterrupted()) return;
+            publish(true, !complete);
+        }
+
+        private boolean found(long offset) {
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = offset;
+            if (System.nanoTime() - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                publish(false, false);
+            }
+            return ++found < MAX_MATCHES;
+        }
+
+        private void publish(boolean finished, boolean truncated) {
+            long[] batch = Arrays.copyOf(pending, pendingCount);
+            pendingCount = 0;
+            lastPublish = System.nanoTime();
+            Minecraft.getInstance().execute(() -> acceptMatches(generation, batch, finished, truncated));
+        }
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    protected void updateWidgetNarration(NarrationElementOutput builder) {
+        this.defaultButtonNarrationText(builder);
+    }
+}
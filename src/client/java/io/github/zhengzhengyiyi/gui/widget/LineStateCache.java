@@ -0,0 +1,100 @@
+package io.github.zhengzhengyiyi.gui.widget;
+
+import io.github.zhengzhengyiyi.util.document.DocumentListener;
+import io.github.zhengzhengyiyi.util.document.PieceTable;
+import io.github.zhengzhengyiyi.util.highlighter.HighLighter;
+
+import java.util.Arrays;
+
+/**
+ * Stores the highlighter's lexer state at the end of every line.
+ *
+ * States are computed lazily, only down to the lines that are drawn. After an
+ * edit, lexing restarts at the first edited line and continues downward until a
+ * line past the edit ends in the same state it had before; the states of every
+ * line below it are still valid and are kept.
+ */
+class LineStateCache implements DocumentListener {
+    private final PieceTable document;
+    private final HighLighter highLighter;
+    private int[] endStates = new int[64];
+    private int lineCount;
+
+    // endStates[0, validLines) are correct
+    private int validLines;
+    // endStates[editedUntil, knownLines) come from unchanged lines, each lexed from the
+    // state its predecessor still holds; one of them matching again ends re-lexing
+    private int editedUntil;
+    private int knownLines;
+
+    LineStateCache(PieceTable document, HighLighter highLighter) {
+        this.document = document;
+        this.highLighter = highLighter;
+        this.lineCount = document.getLineCount();
+        ensureCapacity(lineCount);
+        document.addListener(this);
+    }
+
+    /**
+     * Gets the lexer state at the start of a line.
+     * @param line the zero-based line number
+     */
+    int getStartState(int line) {
+        if (line <= 0) return HighLighter.INITIAL_STATE;
+        line = Math.min(line, lineCount);
+        while (validLines < line) {
+            lexNextLine();
+        }
+        return endStates[line - 1];
+    }
+
+    @Override
+    public void onLinesChanged(int firstLine, int removedLines, int addedLines) {
+        int delta = addedLines - removedLines;
+        int tailStart = firstLine + removedLines + 1;
+
+        if (tailStart > lineCount || lineCount + delta != document.getLineCount()) {
+            lineCount = document.getLineCount();
+            ensureCapacity(lineCount);
+            validLines = 0;
+            editedUntil = lineCount;
+            knownLines = lineCount;
+            return;
+        }
+
+        ensureCapacity(lineCount + delta);
+        System.arraycopy(endStates, tailStart, endStates, tailStart + delta, lineCount - tailStart);
+        lineCount += delta;
+
+        validLines = Math.min(validLines, firstLine);
+        knownLines = knownLines >= tailStart ? knownLines + delta : Math.min(knownLines, firstLine);
+        editedUntil = Math.max(editedUntil >= tailStart ? editedUntil + delta : 0, firstLine + addedLines + 1);
+    }
+
+    private void lexNextLine() {
+        int line = validLines;
+        int startState = line == 0 ? HighLighter.INITIAL_STATE : endStates[line - 1];
+        int endState = highLighter.getEndState(document.getLine(line), startState);
+        boolean converged = line >= editedUntil && line < knownLines && endStates[line] == endState;
+
+        endStates[line] = endState;
+        validLines++;
+        if (converged) {
+            validLines = knownLines;
+        } else {
+            // The next line was lexed from the old state of this one, so it can only
+            // start a new run of reusable states, not continue one
+            editedUntil = Math.max(editedUntil, validLines);
+        }
+        if (validLines >= knownLines) {
+            knownLines = validLines;
+            editedUntil = 0;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > endStates.length) {
+            endStates = Arrays.copyOf(endStates, Math.max(capacity, endStates.length * 2));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.zhengzhengyiyi.gui.widget;
+
+import io.github.zhengzhengyiyi.util.document.DocumentListener;
+import io.github.zhengzhengyiyi.util.document.PieceTable;
+
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caches the rendered width of every line of a document along with the widest one.
+ *
+ * Only the lines touched by an edit are measured again, so the horizontal scroll
+ * range no longer needs a pass over the whole document every frame. The widest
+ * width is rescanned from the cached ints only when the widest line gets shorter.
+ */
+class LineWidthCache implements DocumentListener {
+    private final PieceTable document;
+    private final ToIntFunction<String> measurer;
+    private int[] widths = new int[64];
+    private int lineCount = 0;
+    private int maxWidth = 0;
+
+    LineWidthCache(PieceTable document, ToIntFunction<String> measurer) {
+        this.document = document;
+        this.measurer = measurer;
+        document.addListener(this);
+        rebuild();
+    }
+
+    /**
+     * Gets the width of the widest line in pixels.
+     */
+    int getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * Measures every line again, e.g. after the font changed.
+     */
+    void rebuild() {
+        lineCount = document.getLineCount();
+        ensureCapacity(lineCount);
+        maxWidth = 0;
+        for (int i = 0; i < lineCount; i++) {
+            widths[i] = measurer.applyAsInt(document.getLine(i));
+            maxWidth = Math.max(maxWidth, widths[i]);
+        }
+    }
+
+    @Override
+    public void onLinesChanged(int firstLine, int removedLines, int addedLines) {
+        int oldLast = Math.min(firstLine + removedLines, lineCount - 1);
+        boolean lostWidest = false;
+        for (int i = firstLine; i <= oldLast; i++) {
+            if (maxWidth > 0 && widths[i] >= maxWidth) {
+                lostWidest = true;
+                break;
+            }
+        }
+
+        int tailStart = firstLine + removedLines + 1;
+        int newLineCount = lineCount + addedLines - removedLines;
+        if (tailStart > lineCount || newLineCount != document.getLineCount()) {
+            rebuild();
+            return;
+        }
+
+        ensureCapacity(newLineCount);
+        System.arraycopy(widths, tailStart, widths, firstLine + addedLines + 1, lineCount - tailStart);
+        lineCount = newLineCount;
+
+        for (int i = firstLine; i <= firstLine + addedLines; i++) {
+            widths[i] = measurer.applyAsInt(document.getLine(i));
+            maxWidth = Math.max(maxWidth, widths[i]);
+        }
+
+        if (lostWidest) {
+            maxWidth = 0;
+            for (int i = 0; i < lineCount; i++) {
+                maxWidth = Math.max(maxWidth, widths[i]);
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > widths.length) {
+            widths = Arrays.copyOf(widths, Math.max(capacity, widths.length * 2));
+        }
+    }
+}
@@ -2,6 +2,8 @@ package io.github.zhengzhengyiyi.gui.widget;
 
 import io.github.zhengzhengyiyi.ConfigEditorClient;
 import io.github.zhengzhengyiyi.util.*;
+import io.github.zhengzhengyiyi.util.document.LineIndex;
+import io.github.zhengzhengyiyi.util.document.PieceTable;
 import io.github.zhengzhengyiyi.util.highlighter.JsonSyntaxHighlighter;
 import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.GuiGraphicsExtractor;
@@ -25,34 +27,46 @@ public class MultilineEditor extends AbstractEditor {
     private boolean isDraggingHorizontalScroll = false;
     private int dragStartX = 0;
     private int dragStartScrollOffset = 0;
-    public String text = "";
+    private final PieceTable document = new PieceTable();
+    private final LineIndex lines = document.getLineIndex();
     private int scrollOffset = 0;
     private int horizontalScrollOffset = 0;
     public static int maxVisibleLines = 10;
     private boolean editable = true;
+    // Set while the file is still being read; the text shown is a preview or empty
+    private boolean loading = false;
     private Consumer<String> changedListener;
+    private Runnable editListener;
     private int cursorPosition = 0;
     private long lastCursorBlinkTime = 0;
     private boolean cursorVisible = true;
     private String filename = "";
     public List<JSONError> currentErrors = new ArrayList<>();
+    private static final long VALIDATION_DELAY_MS = 250;
+    private final AsyncJSONValidator validator = new AsyncJSONValidator(document);
+    // Time at which the pending validation starts, or -1 if there is none
+    private long validationDueAt = -1;
+    // Document revision currentErrors belongs to
+    private long errorsRevision = -1;
     public JSONError hoveredError = null;
+    private ErrorIndex errorIndex = ErrorIndex.EMPTY;
     private TextSearchEngine searchEngine = new TextSearchEngine();
     private boolean isSearching = false;
     public String searchQuery = "";
+    private boolean scrolledToSearchMatch = false;
     public int lastCursorX = 0;
     private List<String> currentSuggestions = new ArrayList<>();
     private int selectedSuggestion = -1;
     private boolean showSuggestions = false;
-    private int maxLineWidth = 0;
-    /** Counts render frames; editable is refreshed from config every 20 frames. */
-    private int editableCheckTick = 0;
+    private final LineWidthCache lineWidths;
+    private final LineStateCache lineStates;
 
     public MultilineEditor(int x, int y, int width, int height, Component message) {
         super(x, y, width, height, message);
         this.textRenderer = Minecraft.getInstance().font;
+        this.lineWidths = new LineWidthCache(document, line -> highLighter.getTextWidth(this.textRenderer, line));
+        this.lineStates = new LineStateCache(document, highLighter);
         this.setFocused(false);
-        // editable is refreshed from config in extractWidgetRenderState every ~20 ticks
     }
     
     @SuppressWarnings("null")
@@ -62,10 +76,9 @@ public class MultilineEditor extends AbstractEditor {
             return;
         }
 
-        // Refresh editable flag from config every 20 frames (~1 second) instead of a background thread
-        if (++editableCheckTick >= 20) {
-            editableCheckTick = 0;
-            editable = !ConfigEditorClient.configManager.getConfig().readonly_mode;
+        if (!loading && validationDueAt >= 0 && System.currentTimeMillis() >= validationDueAt) {
+            validationDueAt = -1;
+            validateJSON();
         }
 
         context.enableScissor(this.getX(), this.getY(), this.getX() + this.width, this.getY() + this.height);
@@ -74,79 +87,68 @@ public class MultilineEditor extends AbstractEditor {
             context.fill(this.getX(), this.getY(), this.getX() + this.width, this.getY() + this.height, 0xFF000000);
 //            context.drawBorder(this.getX(), this.getY(), this.width, this.height, 0xFFFFFFFF);
 
-            String[] lines = this.text.split("\n", -1);
+            int lineCount = lines.getLineCount();
             int lineHeight = this.textRenderer.lineHeight + 2;
             int maxVisibleLines = this.height / lineHeight;
-
-            calculateMaxLineWidth(lines);
+            int lastVisibleLine = Math.min(lineCount, this.scrollOffset + maxVisibleLines);
 
             if (isSearching && !searchQuery.isEmpty()) {
-                renderSearchHighlights(context, lines, lineHeight, maxVisibleLines);
+                renderSearchHighlights(context, lineHeight, maxVisibleLines);
             }
 
-            for (int i = 0; i < lines.length; i++) {
-                if (i >= this.scrollOffset && i < this.scrollOffset + maxVisibleLines) {
-                    int yPos = this.getY() + 4 + (i - this.scrollOffset) * lineHeight;
-                    String lineNum = String.valueOf(i + 1);
-                    context.text(textRenderer, lineNum, this.getX() + 2 - horizontalScrollOffset, yPos, 0xFF888888, false);
-                    highLighter.drawHighlightedText(context, this.textRenderer, lines[i], this.getX() + 4 + 12 - horizontalScrollOffset, yPos, this.editable);
-                }
+            for (int i = this.scrollOffset; i < lastVisibleLine; i++) {
+                int yPos = this.getY() + 4 + (i - this.scrollOffset) * lineHeight;
+                String lineNum = String.valueOf(i + 1);
+                context.text(textRenderer, lineNum, this.getX() + 2 - horizontalScrollOffset, yPos, 0xFF888888, false);
+                highLighter.drawHighlightedText(context, this.textRenderer, document.getLine(i), lineStates.getStartState(i), this.getX() + 4 + 12 - horizontalScrollOffset, yPos, this.editable);
             }
             
-            renderErrorUnderlines(context, lines, lineHeight, maxVisibleLines);
+            if (errorsRevision == document.getRevision()) {
+                renderErrorUnderlines(context, lineHeight, maxVisibleLines);
+            }
 
             for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
                 entrypoint.renderButton(context, mouseX, mouseY, delta);
             }
 
-            if (this.isFocused() && this.editable) {
+            if (this.isFocused() && this.editable && !this.loading) {
                 long currentTime = System.nanoTime();
                 if (currentTime - lastCursorBlinkTime > 500000000) {
                     cursorVisible = !cursorVisible;
                     lastCursorBlinkTime = currentTime;
                 }
                 if (cursorVisible) {
-                    int lineIndex = 0;
-                    int xPos = this.getX() + 4 + 12;
-                    int remaining = this.cursorPosition;
-                    for (int i = 0; i < lines.length; i++) {
-                        if (remaining <= lines[i].length()) {
-                            xPos += highLighter.getTextWidthUpToChar(this.textRenderer, lines[i], remaining);
-                            lineIndex = i;
-                            break;
-                        }
-                        remaining -= (lines[i].length() + 1);
-                    }
+                    int lineIndex = lines.getLineOfOffset(this.cursorPosition);
                     
                     if (lineIndex >= this.scrollOffset && lineIndex < this.scrollOffset + maxVisibleLines) {
+                        int column = this.cursorPosition - lines.getLineStart(lineIndex);
+                        int xPos = this.getX() + 4 + 12 + highLighter.getTextWidthUpToChar(this.textRenderer, document.getLine(lineIndex), column);
                         int yPos = this.getY() + 4 + (lineIndex - this.scrollOffset) * lineHeight;
                         context.verticalLine(xPos - horizontalScrollOffset, yPos - 1, yPos + this.textRenderer.lineHeight + 1, 0xFFFFFFFF);
                     }
                 }
             }
             
-            renderErrorTooltips(context, mouseX, mouseY, lines, lineHeight, maxVisibleLines);
+            renderErrorTooltips(context, mouseX, mouseY, lineHeight, maxVisibleLines);
             
             if (showSuggestions && !currentSuggestions.isEmpty()) {
                 renderSuggestions(context, mouseX, mouseY);
             }
 
-            renderScrollBars(context, lines.length, maxVisibleLines);
+            renderScrollBars(context, lineCount, maxVisibleLines);
+
+            if (loading) {
+                Component label = Component.translatable("configeditor.loading");
+                context.text(textRenderer, label, this.getX() + this.width - 10 - textRenderer.width(label), this.getY() + 4, 0xFFFFFF55, false);
+            }
         } finally {
             context.disableScissor();
         }
     }
 
-    private void calculateMaxLineWidth(String[] lines) {
-        maxLineWidth = 0;
-        for (String line : lines) {
-            int lineWidth = highLighter.getTextWidth(this.textRenderer, line);
-            maxLineWidth = Math.max(maxLineWidth, lineWidth);
-        }
-    }
-
     private void renderScrollBars(GuiGraphicsExtractor context, int totalLines, int maxVisibleLines) {
         int scrollbarWidth = 5;
+        int maxLineWidth = lineWidths.getMaxWidth();
         
         if (totalLines > maxVisibleLines) {
             int scrollbarHeight = Math.max(20, (int)((float)this.height * (float)maxVisibleLines / (float)totalLines));
@@ -166,57 +168,22 @@ public class MultilineEditor extends AbstractEditor {
         }
     }
 
-    private void renderSearchHighlights(GuiGraphicsExtractor context, String[] lines, int lineHeight, int maxVisibleLines) {
-        searchEngine.setScrollOffset(this.scrollOffset);
-        
-        int currentLineStart = 0;
-        for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
-            String line = lines[lineIndex];
-            
-            if (lineIndex >= scrollOffset && lineIndex < scrollOffset + maxVisibleLines) {
-                int yPos = getY() + 4 + (lineIndex - scrollOffset) * lineHeight;
-                int xBase = getX() + 4 + 12 - horizontalScrollOffset;
-                
-                for (int matchPos : searchEngine.matchPositions) {
-                    if (matchPos >= currentLineStart && matchPos < currentLineStart + line.length()) {
-                        int matchInLine = matchPos - currentLineStart;
-                        int matchEndInLine = Math.min(matchInLine + searchQuery.length(), line.length());
-                        
-                        if (matchInLine < matchEndInLine) {
-                            String beforeMatch = line.substring(0, matchInLine);
-                            String matchText = line.substring(matchInLine, matchEndInLine);
-                            
-                            @SuppressWarnings("null")
-                            int xStart = xBase + textRenderer.width(beforeMatch);
-                            @SuppressWarnings("null")
-                            int highlightWidth = textRenderer.width(matchText);
-                            int yStart = yPos + textRenderer.lineHeight - 1;
-                            
-                            boolean isCurrentMatch = matchPos == searchEngine.getCurrentMatchPosition();
-                            int color = isCurrentMatch ? 0x66FFD700 : 0x66FFFF00;
-                            
-                            context.fill(xStart, yStart, xStart + highlightWidth, yStart + 2, color);
-                        }
-                    }
-                }
-            }
-            
-            currentLineStart += line.length() + 1;
-        }
+    private void renderSearchHighlights(GuiGraphicsExtractor context, int lineHeight, int maxVisibleLines) {
+        int lastVisibleLine = Math.min(lines.getLineCount(), scrollOffset + maxVisibleLines);
+        searchEngine.renderHighlights(context, textRenderer, highLighter, document, scrollOffset, lastVisibleLine,
+                getX() + 4 + 12 - horizontalScrollOffset, getY() + 4, lineHeight);
     }
     
     @SuppressWarnings("null")
-    public void renderErrorTooltips(GuiGraphicsExtractor context, int mouseX, int mouseY, String[] lines, int lineHeight, int maxVisibleLines) {
+    public void renderErrorTooltips(GuiGraphicsExtractor context, int mouseX, int mouseY, int lineHeight, int maxVisibleLines) {
         hoveredError = null;
         
-        if (isMouseOver(mouseX, mouseY)) {
-            for (JSONError error : currentErrors) {
-                if (isMouseOverError(mouseX, mouseY, error, lines, lineHeight, maxVisibleLines)) {
-                    hoveredError = error;
-                    String tooltip = "Line " + error.lineNumber + ", Col " + error.columnNumber + ": " + error.message;
-                    context.setTooltipForNextFrame(textRenderer, Component.literal(tooltip), mouseX, mouseY);
-                    break;
-                }
+        if (errorsRevision == document.getRevision() && isMouseOver(mouseX, mouseY)) {
+            JSONError error = getErrorAt(mouseX, mouseY, lineHeight, maxVisibleLines);
+            if (error != null) {
+                hoveredError = error;
+                String tooltip = "Line " + error.lineNumber + ", Col " + error.columnNumber + ": " + error.message;
+                context.setTooltipForNextFrame(textRenderer, Component.literal(tooltip), mouseX, mouseY);
             }
         }
     }
@@ -226,19 +193,11 @@ public class MultilineEditor extends AbstractEditor {
 //    	System.out.println("Rendering suggestions...");
     	
         int lineHeight = textRenderer.lineHeight + 2;
-        String[] lines = text.split("\n", -1);
         
-        int lineIndex = 0;
-        int xPos = getX() + 4 + 12 - horizontalScrollOffset;
-        int remaining = cursorPosition;
-        for (int i = 0; i < lines.length; i++) {
-            if (remaining <= lines[i].length()) {
-                xPos += highLighter.getTextWidthUpToChar(textRenderer, lines[i], remaining);
-                lineIndex = i;
-                break;
-            }
-            remaining -= (lines[i].length() + 1);
-        }
+        int lineIndex = lines.getLineOfOffset(cursorPosition);
+        int column = cursorPosition - lines.getLineStart(lineIndex);
+        int xPos = getX() + 4 + 12 - horizontalScrollOffset
+                + highLighter.getTextWidthUpToChar(textRenderer, document.getLine(lineIndex), column);
         
         int yPos = getY() + 4 + (lineIndex - scrollOffset) * lineHeight + textRenderer.lineHeight;
         
@@ -264,27 +223,45 @@ public class MultilineEditor extends AbstractEditor {
         }
     }
 
-    private boolean isMouseOverError(int mouseX, int mouseY, JSONError error, String[] lines, int lineHeight, int maxVisibleLines) {
-        int lineIndex = error.lineNumber - 1;
-        if (lineIndex >= scrollOffset && lineIndex < scrollOffset + maxVisibleLines) {
-            int yPos = getY() + 4 + (lineIndex - scrollOffset) * lineHeight;
-            if (mouseY >= yPos && mouseY <= yPos + textRenderer.lineHeight) {
-                String line = lines[lineIndex];
-                int errorStartInLine = Math.min(error.startPosition - getLineStart(error.startPosition), line.length());
-                int errorEndInLine = Math.min(error.endPosition - getLineStart(error.startPosition), line.length());
-                
-                if (errorStartInLine < errorEndInLine) {
-                    String beforeError = line.substring(0, errorStartInLine);
-                    @SuppressWarnings("null")
-                    int xStart = getX() + 4 + textRenderer.width(beforeError) - horizontalScrollOffset;
-                    @SuppressWarnings("null")
-                    int xEnd = xStart + textRenderer.width(line.substring(errorStartInLine, errorEndInLine));
-                    
-                    return mouseX >= xStart && mouseX <= xEnd;
-                }
+    /**
+     * Finds the error whose underline is under the mouse, looking only at the errors on the hovered line.
+     */
+    private JSONError getErrorAt(int mouseX, int mouseY, int lineHeight, int maxVisibleLines) {
+        int row = Math.floorDiv(mouseY - (getY() + 4), lineHeight);
+        int lineIndex = scrollOffset + row;
+        if (row < 0 || row >= maxVisibleLines || lineIndex >= lines.getLineCount()) return null;
+        if (mouseY > getY() + 4 + row * lineHeight + textRenderer.lineHeight) return null;
+
+        ErrorIndex index = getErrorIndex();
+        int bucket = index.findBucket(lineIndex);
+        if (bucket == index.getBucketCount() || index.getBucketLine(bucket) != lineIndex) return null;
+
+        String line = document.getLine(lineIndex);
+        int lineStartPosition = lines.getLineStart(lineIndex);
+        int textStartX = getX() + 4 + 12 - horizontalScrollOffset;
+        for (int i = index.getBucketStart(bucket); i < index.getBucketEnd(bucket); i++) {
+            JSONError error = index.get(i);
+            int errorStartInLine = Math.min(error.startPosition - lineStartPosition, line.length());
+            int errorEndInLine = Math.min(error.endPosition - lineStartPosition, line.length());
+            if (errorStartInLine < 0 || errorStartInLine >= errorEndInLine) continue;
+
+            int xStart = textStartX + highLighter.getTextWidthUpToChar(textRenderer, line, errorStartInLine);
+            int xEnd = textStartX + highLighter.getTextWidthUpToChar(textRenderer, line, errorEndInLine);
+            if (mouseX >= xStart && mouseX <= xEnd) {
+                return error;
             }
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Gets the line index of {@link #currentErrors}, rebuilding it if the list was replaced.
+     */
+    private ErrorIndex getErrorIndex() {
+        if (!errorIndex.isFor(currentErrors)) {
+            errorIndex = new ErrorIndex(currentErrors);
+        }
+        return errorIndex;
     }
     
     @Override
@@ -312,27 +289,21 @@ public class MultilineEditor extends AbstractEditor {
             }
         }
         
-        if (this.isMouseOver(mouseX, mouseY) && this.editable) {
+        if (this.isMouseOver(mouseX, mouseY) && this.editable && !this.loading) {
             this.setFocused(true);
             
             int lineHeight = this.textRenderer.lineHeight + 2;
             int clickedY = (int)mouseY - (this.getY() + 4);
-            int lineIndex = Mth.clamp(clickedY / lineHeight + this.scrollOffset, 0, this.text.split("\n", -1).length - 1);
-            
-            String[] lines = this.text.split("\n", -1);
-            String line = lines[lineIndex];
+            int lineIndex = Mth.clamp(clickedY / lineHeight + this.scrollOffset, 0, lines.getLineCount() - 1);
+            String line = document.getLine(lineIndex);
             
             int clickedX = (int)mouseX - (this.getX() + 4 + 12) + horizontalScrollOffset;
             
             int charIndex = highLighter.getCharIndexFromTokens(this.textRenderer, line, clickedX);
             
-            int newPosition = 0;
-            for (int i = 0; i < lineIndex; i++) {
-                newPosition += lines[i].length() + 1;
-            }
-            newPosition += charIndex;
+            int newPosition = lines.getLineStart(lineIndex) + charIndex;
             
-            this.cursorPosition = Mth.clamp(newPosition, 0, this.text.length());
+            this.cursorPosition = Mth.clamp(newPosition, 0, document.length());
             
             for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
                 InteractionResult result = entrypoint.onMouseDown((int)Math.round(mouseX), (int)Math.round(mouseY));
@@ -371,7 +342,7 @@ public class MultilineEditor extends AbstractEditor {
 //            return true;
 //        } else {
             int lineHeight = this.textRenderer.lineHeight + 2;
-            int maxLines = this.text.split("\n", -1).length;
+            int maxLines = lines.getLineCount();
             int maxVisibleLines = this.height / lineHeight;
             
             int newScrollOffset = this.scrollOffset - (int)Math.signum(amount);
@@ -391,7 +362,7 @@ public class MultilineEditor extends AbstractEditor {
     }
 
     private boolean isMouseOverHorizontalScrollBar(double mouseX, double mouseY) {
-        if (maxLineWidth <= this.width - 20) return false;
+        if (lineWidths.getMaxWidth() <= this.width - 20) return false;
         
         int scrollbarHeight = 5;
         return mouseX >= this.getX() && mouseX <= this.getX() + this.width &&
@@ -401,7 +372,7 @@ public class MultilineEditor extends AbstractEditor {
     @SuppressWarnings("null")
     @Override
     public boolean keyPressed(KeyEvent input) {
-        if (!this.editable) {
+        if (!this.editable || this.loading) {
             return false;
         }
         
@@ -420,7 +391,7 @@ public class MultilineEditor extends AbstractEditor {
         
         if (keyCode == GLFW.GLFW_KEY_BACKSPACE) {
             if (this.cursorPosition > 0) {
-                this.text = this.text.substring(0, this.cursorPosition - 1) + this.text.substring(this.cursorPosition);
+                document.delete(this.cursorPosition - 1, this.cursorPosition);
                 this.cursorPosition--;
                 this.onTextChanged();
                 updateCursorX();
@@ -433,8 +404,8 @@ public class MultilineEditor extends AbstractEditor {
         }
 
         if (keyCode == GLFW.GLFW_KEY_DELETE) {
-            if (this.cursorPosition < this.text.length()) {
-                this.text = this.text.substring(0, this.cursorPosition) + this.text.substring(this.cursorPosition + 1);
+            if (this.cursorPosition < document.length()) {
+                document.delete(this.cursorPosition, this.cursorPosition + 1);
                 this.onTextChanged();
                 updateCursorX();
                 updateSuggestions();
@@ -475,23 +446,21 @@ public class MultilineEditor extends AbstractEditor {
             if (keyCode == GLFW.GLFW_KEY_A) {
                 // Select all: move cursor to end (full text is "selected" conceptually)
                 // Since we don't have visual selection yet, copy the whole text
-                Minecraft.getInstance().keyboardHandler.setClipboard(this.text);
-                this.cursorPosition = this.text.length();
+                Minecraft.getInstance().keyboardHandler.setClipboard(getText());
+                this.cursorPosition = document.length();
                 updateCursorX();
                 return true;
             }
             if (keyCode == GLFW.GLFW_KEY_C) {
                 // Copy entire text to clipboard
-                Minecraft.getInstance().keyboardHandler.setClipboard(this.text);
+                Minecraft.getInstance().keyboardHandler.setClipboard(getText());
                 return true;
             }
             if (keyCode == GLFW.GLFW_KEY_V) {
                 // Paste from clipboard at cursor position
                 String clipboard = Minecraft.getInstance().keyboardHandler.getClipboard();
                 if (clipboard != null && !clipboard.isEmpty()) {
-                    this.text = this.text.substring(0, this.cursorPosition)
-                            + clipboard
-                            + this.text.substring(this.cursorPosition);
+                    document.insert(this.cursorPosition, clipboard);
                     this.cursorPosition += clipboard.length();
                     this.onTextChanged();
                     updateCursorX();
@@ -502,13 +471,13 @@ public class MultilineEditor extends AbstractEditor {
         }
         
         if (keyCode == GLFW.GLFW_KEY_LEFT) {
-            this.cursorPosition = Mth.clamp(this.cursorPosition - 1, 0, this.text.length());
+            this.cursorPosition = Mth.clamp(this.cursorPosition - 1, 0, document.length());
             updateCursorX();
             hideSuggestions();
             return true;
         }
         if (keyCode == GLFW.GLFW_KEY_RIGHT) {
-            this.cursorPosition = Mth.clamp(this.cursorPosition + 1, 0, this.text.length());
+            this.cursorPosition = Mth.clamp(this.cursorPosition + 1, 0, document.length());
             updateCursorX();
             hideSuggestions();
             for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
@@ -517,7 +486,7 @@ public class MultilineEditor extends AbstractEditor {
             return true;
         }
         if (keyCode == GLFW.GLFW_KEY_HOME) {
-            this.cursorPosition = getLineStart(this.cursorPosition);
+            this.cursorPosition = lines.getLineStartForOffset(this.cursorPosition);
             updateCursorX();
             hideSuggestions();
             for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
@@ -526,7 +495,7 @@ public class MultilineEditor extends AbstractEditor {
             return true;
         }
         if (keyCode == GLFW.GLFW_KEY_END) {
-            this.cursorPosition = getLineEnd(this.cursorPosition);
+            this.cursorPosition = lines.getLineEndForOffset(this.cursorPosition);
             updateCursorX();
             hideSuggestions();
             for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
@@ -536,15 +505,12 @@ public class MultilineEditor extends AbstractEditor {
         }
         if (keyCode == GLFW.GLFW_KEY_UP) {
             if (!showSuggestions) {
-                int lineStart = getLineStart(this.cursorPosition);
-                int currentX = this.cursorPosition - lineStart;
+                int line = lines.getLineOfOffset(this.cursorPosition);
+                int currentX = this.cursorPosition - lines.getLineStart(line);
                 
-                int prevLineEnd = lineStart > 0 ? getLineEnd(lineStart - 1) : -1;
-                if (prevLineEnd != -1) {
-                    int prevLineStart = getLineStart(prevLineEnd);
-                    int prevLineLength = prevLineEnd - prevLineStart;
-                    int newX = Math.min(currentX, prevLineLength);
-                    this.cursorPosition = prevLineStart + newX;
+                if (line > 0) {
+                    int newX = Math.min(currentX, lines.getLineLength(line - 1));
+                    this.cursorPosition = lines.getLineStart(line - 1) + newX;
                 }
                 updateCursorX();
                 for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
@@ -555,15 +521,12 @@ public class MultilineEditor extends AbstractEditor {
         }
         if (keyCode == GLFW.GLFW_KEY_DOWN) {
             if (!showSuggestions) {
-                int lineEnd = getLineEnd(this.cursorPosition);
-                int currentX = this.cursorPosition - getLineStart(this.cursorPosition);
+                int line = lines.getLineOfOffset(this.cursorPosition);
+                int currentX = this.cursorPosition - lines.getLineStart(line);
                 
-                int nextLineStart = lineEnd < this.text.length() ? lineEnd + 1 : -1;
-                if (nextLineStart != -1) {
-                    int nextLineEnd = getLineEnd(nextLineStart);
-                    int nextLineLength = nextLineEnd - nextLineStart;
-                    int newX = Math.min(currentX, nextLineLength);
-                    this.cursorPosition = nextLineStart + newX;
+                if (line + 1 < lines.getLineCount()) {
+                    int newX = Math.min(currentX, lines.getLineLength(line + 1));
+                    this.cursorPosition = lines.getLineStart(line + 1) + newX;
                 }
                 updateCursorX();
                 for (io.github.zhengzhengyiyi.api.ApiEntrypoint entrypoint : ConfigEditorClient.ENTRYPOINTS) {
@@ -574,7 +537,7 @@ public class MultilineEditor extends AbstractEditor {
         }
         
         if (keyCode == GLFW.GLFW_KEY_ENTER || keyCode == GLFW.GLFW_KEY_KP_ENTER) {
-            this.text = this.text.substring(0, this.cursorPosition) + "\n" + this.text.substring(this.cursorPosition);
+            document.insert(this.cursorPosition, "\n");
             this.cursorPosition++;
             this.onTextChanged();
             updateCursorX();
@@ -590,7 +553,7 @@ public class MultilineEditor extends AbstractEditor {
     
     @Override
     public boolean charTyped(@SuppressWarnings("null") CharacterEvent input) {
-        if (!this.isFocused() || !this.editable) {
+        if (!this.isFocused() || !this.editable || this.loading) {
             return false;
         }
         
@@ -605,8 +568,8 @@ public class MultilineEditor extends AbstractEditor {
         
         if (input.isAllowedChatCharacter()) {
             String chr = input.codepointAsString();
-            this.text = this.text.substring(0, this.cursorPosition) + chr + this.text.substring(this.cursorPosition);
-            this.cursorPosition++;
+            document.insert(this.cursorPosition, chr);
+            this.cursorPosition += chr.length();
             this.onTextChanged();
             updateCursorX();
             
@@ -631,13 +594,48 @@ public class MultilineEditor extends AbstractEditor {
         this.defaultButtonNarrationText(builder);
     }
 
+    /**
+     * Gets the document as a string. The string is built lazily from the
+     * piece table and cached until the next edit.
+     */
     public String getText() {
-        return this.text;
+        return document.toString();
+    }
+
+    /**
+     * Takes a copy of the document that later edits do not change, for saving in
+     * the background without building a string of it.
+     */
+    public PieceTable.Snapshot getSnapshot() {
+        return document.snapshot();
+    }
+
+    /**
+     * Gets a number that changes with every edit.
+     */
+    public long getRevision() {
+        return document.getRevision();
+    }
+
+    /**
+     * Compares the document with the given text without building a string copy of it.
+     * @param other the text to compare with
+     * @return true if the document content equals the text
+     */
+    public boolean contentEquals(String other) {
+        return document.contentEquals(other);
+    }
+
+    /**
+     * Compares the text with a snapshot, without building either as a string.
+     */
+    public boolean contentEquals(PieceTable.Snapshot other) {
+        return other.contentEquals(document);
     }
     
     public void setText(String text) {
-        this.text = text;
-        this.cursorPosition = Mth.clamp(this.cursorPosition, 0, this.text.length());
+        document.setText(text);
+        this.cursorPosition = Mth.clamp(this.cursorPosition, 0, document.length());
         this.onTextChanged();
         updateCursorX();
         hideSuggestions();
@@ -647,15 +645,44 @@ public class MultilineEditor extends AbstractEditor {
         this.editable = editable;
     }
 
+    /**
+     * Marks the text as incomplete while the file is read in the background. The
+     * editor shows what it has but takes no edits and does not validate until
+     * loading ends.
+     */
+    public void setLoading(boolean loading) {
+        this.loading = loading;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Sets a listener that receives the full text after every edit.
+     * Note that this materializes the document on each keystroke;
+     * prefer {@link #setEditListener(Runnable)} when the text itself is not needed.
+     */
     public void setChangedListener(Consumer<String> changedListener) {
         this.changedListener = changedListener;
     }
 
+    /**
+     * Sets a listener that is notified after every edit without building the document text.
+     * @param editListener the callback to run after each edit
+     */
+    public void setEditListener(Runnable editListener) {
+        this.editListener = editListener;
+    }
+
     private void onTextChanged() {
+        if (this.editListener != null) {
+            this.editListener.run();
+        }
         if (this.changedListener != null) {
-            this.changedListener.accept(this.text);
+            this.changedListener.accept(getText());
         }
-        validateJSON();
+        validationDueAt = System.currentTimeMillis() + VALIDATION_DELAY_MS;
     }
     
 //    private void renderErrorUnderlines(DrawContext context, String[] lines, int lineHeight, int maxVisibleLines) {
@@ -694,55 +721,41 @@ public class MultilineEditor extends AbstractEditor {
 //        }
 //    }
     
-    private void renderErrorUnderlines(GuiGraphicsExtractor context, String[] lines, int lineHeight, int maxVisibleLines) {
-        for (JSONError error : currentErrors) {
-            int lineIndex = error.lineNumber - 1;
-            if (lineIndex >= scrollOffset && lineIndex < scrollOffset + maxVisibleLines) {
-                int yPos = getY() + 4 + (lineIndex - scrollOffset) * lineHeight;
-                
-                String line = lines[lineIndex];
-                
-                int lineStartPosition = calculateLineStartPosition(lineIndex, lines);
+    private void renderErrorUnderlines(GuiGraphicsExtractor context, int lineHeight, int maxVisibleLines) {
+        ErrorIndex index = getErrorIndex();
+        int lastVisibleLine = Math.min(lines.getLineCount(), scrollOffset + maxVisibleLines);
+        int textStartX = getX() + 4 + 12 - horizontalScrollOffset;
+
+        for (int bucket = index.findBucket(scrollOffset); bucket < index.getBucketCount(); bucket++) {
+            int lineIndex = index.getBucketLine(bucket);
+            if (lineIndex >= lastVisibleLine) break;
+
+            int yPos = getY() + 4 + (lineIndex - scrollOffset) * lineHeight;
+            String line = document.getLine(lineIndex);
+            int lineStartPosition = lines.getLineStart(lineIndex);
+
+            for (int i = index.getBucketStart(bucket); i < index.getBucketEnd(bucket); i++) {
+                JSONError error = index.get(i);
                 int errorStartInLine = Math.min(error.startPosition - lineStartPosition, line.length());
                 int errorEndInLine = Math.min(error.endPosition - lineStartPosition, line.length());
-                
-                if (errorStartInLine >= 0 && errorStartInLine < errorEndInLine && errorEndInLine <= line.length()) {
-                    String visibleLine = line.substring(0, line.length());
-                    String beforeError = visibleLine.substring(0, errorStartInLine);
-                    String errorText = visibleLine.substring(errorStartInLine, errorEndInLine);
-                    
-                    int textStartX = getX() + 4 + 12;
-                    int beforeErrorWidth = highLighter.getTextWidth(textRenderer, beforeError);
-                    int errorWidth = highLighter.getTextWidth(textRenderer, errorText);
-                    
-                    int xStart = textStartX + beforeErrorWidth - horizontalScrollOffset;
-                    
-                    if (xStart >= getX() && xStart < getX() + width && errorWidth > 0) {
-                        for (int i = 0; i < errorWidth; i += 3) {
-                            int x = xStart + i;
-                            if (x < getX() + width && i + 2 <= errorWidth) {
-                                context.horizontalLine(x, x + 2, yPos, 0xFFFF0000);
-                            }
-                        }
-                    } else if (errorWidth == 0) {
-                        int x = textStartX + beforeErrorWidth - horizontalScrollOffset;
-                        if (x >= getX() && x < getX() + width) {
-                            context.horizontalLine(x, x + 5, yPos, 0xFFFF0000);
+                if (errorStartInLine < 0 || errorStartInLine >= errorEndInLine) continue;
+
+                int xStart = textStartX + highLighter.getTextWidthUpToChar(textRenderer, line, errorStartInLine);
+                int errorWidth = textStartX + highLighter.getTextWidthUpToChar(textRenderer, line, errorEndInLine) - xStart;
+
+                if (xStart >= getX() && xStart < getX() + width && errorWidth > 0) {
+                    for (int x = 0; x < errorWidth; x += 3) {
+                        if (xStart + x < getX() + width && x + 2 <= errorWidth) {
+                            context.horizontalLine(xStart + x, xStart + x + 2, yPos, 0xFFFF0000);
                         }
                     }
+                } else if (errorWidth == 0 && xStart >= getX() && xStart < getX() + width) {
+                    context.horizontalLine(xStart, xStart + 5, yPos, 0xFFFF0000);
                 }
             }
         }
     }
 
-    private int calculateLineStartPosition(int lineIndex, String[] lines) {
-        int position = 0;
-        for (int i = 0; i < lineIndex; i++) {
-            position += lines[i].length() + 1;
-        }
-        return position;
-    }
-    
 //    private void renderErrorUnderlines(DrawContext context, String[] lines, int lineHeight, int maxVisibleLines) {
 //        for (JSONError error : currentErrors) {
 //            int lineIndex = error.lineNumber - 1;
@@ -771,15 +784,24 @@ public class MultilineEditor extends AbstractEditor {
 //        }
 //    }
     
+    /**
+     * Validates the current content on a background thread. Only the container
+     * around the edits since the last pass is checked again when possible. The
+     * errors are published once the result arrives, and only if the document has
+     * not changed since.
+     */
     public void validateJSON() {
-        this.currentErrors = JSONValidator.validateJSON(this.text);
+        validator.submit(errors -> {
+            this.currentErrors = errors;
+            this.errorsRevision = document.getRevision();
+        });
     }
     
-    @SuppressWarnings("null")
     private void updateCursorX() {
-        int lineStart = getLineStart(this.cursorPosition);
-        String currentLine = this.text.substring(lineStart, this.cursorPosition);
-        this.lastCursorX = this.textRenderer.width(currentLine);
+        int lineIndex = lines.getLineOfOffset(this.cursorPosition);
+        int column = this.cursorPosition - lines.getLineStart(lineIndex);
+        // Looked up in the line's cached prefix widths, which drawing the cursor fills anyway
+        this.lastCursorX = highLighter.getTextWidthUpToChar(this.textRenderer, document.getLine(lineIndex), column);
         
         int visibleWidth = this.width - 20;
         if (lastCursorX > horizontalScrollOffset + visibleWidth) {
@@ -789,19 +811,6 @@ public class MultilineEditor extends AbstractEditor {
         }
     }
 
-    private int getLineStart(int pos) {
-        int start = this.text.lastIndexOf('\n', pos - 1) + 1;
-        return start;
-    }
-
-    private int getLineEnd(int pos) {
-        int end = this.text.indexOf('\n', pos);
-        if (end == -1) {
-            end = this.text.length();
-        }
-        return end;
-    }
-
 //    private void copyToClipboard() {
 //        Minecraft.getInstance().keyboard.setClipboard(this.text);
 //    }
@@ -817,7 +826,7 @@ public class MultilineEditor extends AbstractEditor {
 //    }
     
     public void insertTextAtCursor(String text) {
-        this.text = this.text.substring(0, this.cursorPosition) + text + this.text.substring(this.cursorPosition);
+        document.insert(this.cursorPosition, text);
         this.cursorPosition += text.length();
         this.onTextChanged();
         updateCursorX();
@@ -829,7 +838,7 @@ public class MultilineEditor extends AbstractEditor {
     }
 
     public void setCursorPosition(int position) {
-        this.cursorPosition = Mth.clamp(position, 0, this.text.length());
+        this.cursorPosition = Mth.clamp(position, 0, document.length());
         updateCursorX();
         hideSuggestions();
     }
@@ -845,11 +854,20 @@ public class MultilineEditor extends AbstractEditor {
     public void startSearch(String query) {
         this.searchQuery = query;
         this.isSearching = true;
-        searchEngine.search(query, text);
-        if (searchEngine.hasMatches()) {
+        this.scrolledToSearchMatch = false;
+        searchEngine.search(query, getText(), lines.getLineStart(scrollOffset), this::onSearchProgress);
+        hideSuggestions();
+    }
+    
+    /**
+     * Called as search results come in. Scrolls to the first match once, so later
+     * batches do not move the view while the user is looking at it.
+     */
+    private void onSearchProgress() {
+        if (!scrolledToSearchMatch && searchEngine.hasMatches()) {
+            scrolledToSearchMatch = true;
             scrollToCurrentMatch();
         }
-        hideSuggestions();
     }
     
     public void findNext() {
@@ -869,10 +887,30 @@ public class MultilineEditor extends AbstractEditor {
     private void scrollToCurrentMatch() {
         Integer matchPos = searchEngine.getCurrentMatchPosition();
         if (matchPos != null) {
-            int lineIndex = getLineIndex(matchPos);
-            if (lineIndex < scrollOffset || lineIndex >= scrollOffset + maxVisibleLines) {
-                scrollOffset = Math.max(0, lineIndex - 2);
-            }
+            scrollToOffset(matchPos);
+        }
+    }
+    
+    /**
+     * Moves the cursor to a position and scrolls the view so it can be seen.
+     */
+    public void jumpTo(int position) {
+        setCursorPosition(position);
+        scrollToOffset(this.cursorPosition);
+    }
+    
+    /**
+     * Moves the cursor to the start of a line and scrolls it into view.
+     * @param line the one-based line number
+     */
+    public void goToLine(int line) {
+        jumpTo(lines.getLineStart(Mth.clamp(line - 1, 0, lines.getLineCount() - 1)));
+    }
+    
+    private void scrollToOffset(int offset) {
+        int lineIndex = lines.getLineOfOffset(offset);
+        if (lineIndex < scrollOffset || lineIndex >= scrollOffset + maxVisibleLines) {
+            scrollOffset = Math.max(0, lineIndex - 2);
         }
     }
     
@@ -882,16 +920,6 @@ public class MultilineEditor extends AbstractEditor {
         searchEngine.clear();
     }
     
-    private int getLineIndex(int position) {
-        int line = 0;
-        for (int i = 0; i < position && i < text.length(); i++) {
-            if (text.charAt(i) == '\n') {
-                line++;
-            }
-        }
-        return line;
-    }
-    
     public boolean isSearching() {
         return isSearching;
     }
@@ -904,12 +932,39 @@ public class MultilineEditor extends AbstractEditor {
         return searchEngine.getCurrentMatchIndex() + 1;
     }
     
+    /**
+     * Makes searches look for each comma-separated term of the query at once.
+     */
+    public void setMultiPatternSearch(boolean multiPattern) {
+        searchEngine.setMultiPattern(multiPattern);
+    }
+    
+    public boolean isMultiPatternSearch() {
+        return searchEngine.isMultiPattern();
+    }
+    
+    /**
+     * Whether the search is still running in the background and more matches may arrive.
+     */
+    public boolean isSearchRunning() {
+        return searchEngine.isRunning();
+    }
+    
+    /**
+     * Whether the search stopped at its time limit, so the match count is incomplete.
+     */
+    public boolean isSearchTimedOut() {
+        return searchEngine.isTimedOut();
+    }
+    
     private void updateSuggestions() {
         if (!ConfigEditorClient.configManager.getConfig().doSuggestions) {
             hideSuggestions();
             return;
         }
-        currentSuggestions = CodeSuggester.suggestForPosition(text, cursorPosition);
+        // Reads only the text around the cursor; the last validation stands in for parsing the whole document
+        boolean valid = errorsRevision >= 0 && currentErrors.isEmpty();
+        currentSuggestions = CodeSuggester.suggestForPosition(document, cursorPosition, valid);
         showSuggestions = !currentSuggestions.isEmpty();
         selectedSuggestion = showSuggestions ? 0 : -1;
     }
@@ -929,19 +984,11 @@ public class MultilineEditor extends AbstractEditor {
         if (!showSuggestions) return false;
         
         int lineHeight = textRenderer.lineHeight + 2;
-        String[] lines = text.split("\n", -1);
         
-        int lineIndex = 0;
-        int xPos = getX() + 4 + 12 - horizontalScrollOffset;
-        int remaining = cursorPosition;
-        for (int i = 0; i < lines.length; i++) {
-            if (remaining <= lines[i].length()) {
-                xPos += highLighter.getTextWidthUpToChar(textRenderer, lines[i], remaining);
-                lineIndex = i;
-                break;
-            }
-            remaining -= (lines[i].length() + 1);
-        }
+        int lineIndex = lines.getLineOfOffset(cursorPosition);
+        int column = cursorPosition - lines.getLineStart(lineIndex);
+        int xPos = getX() + 4 + 12 - horizontalScrollOffset
+                + highLighter.getTextWidthUpToChar(textRenderer, document.getLine(lineIndex), column);
         
         int yPos = getY() + 4 + (lineIndex - scrollOffset) * lineHeight + textRenderer.lineHeight;
         int suggestionHeight = Math.min(currentSuggestions.size(), 5) * lineHeight;
@@ -957,7 +1004,7 @@ public class MultilineEditor extends AbstractEditor {
         if (isDraggingHorizontalScroll) {
             int visibleWidth = this.width - 20;
             int dragDeltaX = (int) click.x() - dragStartX;
-            int scrollRange = Math.max(0, maxLineWidth - visibleWidth);
+            int scrollRange = Math.max(0, lineWidths.getMaxWidth() - visibleWidth);
             
             if (scrollRange > 0) {
                 float scrollRatio = (float) dragDeltaX / (float) this.width;
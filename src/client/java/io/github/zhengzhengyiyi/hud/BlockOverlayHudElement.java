@@ -30,6 +30,13 @@ public class BlockOverlayHudElement implements HudElement {
     private static final int TEXT_COLOR     = 0xFFCDD6F4; // soft white
     private static final int SUB_TEXT_COLOR = 0xFF6C7086; // muted grey for registry id
 
+    // Follows the config through a listener rather than reading it every frame
+    private boolean enabled = ConfigEditorClient.configManager.getConfig().showBlockOverlay;
+
+    public BlockOverlayHudElement() {
+        ConfigEditorClient.configManager.addListener(config -> config.showBlockOverlay, value -> enabled = value);
+    }
+
     @Override
     public void extractRenderState(@SuppressWarnings("null") GuiGraphicsExtractor context, @SuppressWarnings("null") DeltaTracker delta) {
         Minecraft mc = Minecraft.getInstance();
@@ -37,7 +44,7 @@ public class BlockOverlayHudElement implements HudElement {
         // Only render in-game with no screen open
         if (mc.screen != null) return;
         if (mc.level == null || mc.player == null) return;
-        if (!ConfigEditorClient.configManager.getConfig().showBlockOverlay) return;
+        if (!enabled) return;
 
         var level = mc.level; // non-null after the check above
 
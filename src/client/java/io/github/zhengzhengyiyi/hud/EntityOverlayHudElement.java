@@ -47,13 +47,19 @@ public class EntityOverlayHudElement implements HudElement {
     private static final int HEALTH_FG_COLOR  = 0xFFA6E3A1; // green health
     private static final int HEALTH_LOW_COLOR = 0xFFF38BA8; // red low health
 
+    private boolean enabled = ConfigEditorClient.configManager.getConfig().showEntityOverlay;
+
+    public EntityOverlayHudElement() {
+        ConfigEditorClient.configManager.addListener(config -> config.showEntityOverlay, value -> enabled = value);
+    }
+
     @Override
     public void extractRenderState(@SuppressWarnings("null") GuiGraphicsExtractor context, @SuppressWarnings("null") DeltaTracker delta) {
         Minecraft mc = Minecraft.getInstance();
 
         if (mc.screen != null) return;
         if (mc.level == null || mc.player == null) return;
-        if (!ConfigEditorClient.configManager.getConfig().showEntityOverlay) return;
+        if (!enabled) return;
 
         // crosshairPickEntity is the entity the crosshair is directly targeting
         Entity entity = mc.crosshairPickEntity;
@@ -0,0 +1,189 @@
+package io.github.zhengzhengyiyi.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An Aho–Corasick automaton that finds every occurrence of a set of literal
+ * patterns in a single pass over the text.
+ *
+ * States are trie nodes numbered from 0 (the root). Transitions out of the root
+ * are a dense table indexed by character, since most characters of a text lead
+ * back there; all other transitions live in one open-addressing hash table keyed
+ * by state and character. Case-insensitive automata fold both the patterns and
+ * the text the same way {@link String#regionMatches(boolean, int, String, int, int)} does.
+ */
+public final class AhoCorasick {
+    /**
+     * Receives matches as the text is scanned, in order of their end position.
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        void found(int start, int pattern);
+    }
+
+    private final boolean caseSensitive;
+    private final int[] rootNext = new int[Character.MAX_VALUE + 1];
+
+    // Non-root transitions: key = state << 16 | char, value = target state
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeMask;
+
+    private final int[] fail;
+    private final int[] depth;
+    // Pattern that ends at a state, or -1
+    private final int[] output;
+    // Nearest state on the failure chain that ends a pattern, or -1
+    private final int[] outputLink;
+    private final int maxPatternLength;
+
+    /**
+     * @param patterns the non-empty patterns to look for; a match reports the pattern's index in this list
+     * @param caseSensitive whether letters must match in case
+     */
+    public AhoCorasick(List<String> patterns, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+
+        int maxStates = 1;
+        int longest = 0;
+        for (String pattern : patterns) {
+            maxStates += pattern.length();
+            longest = Math.max(longest, pattern.length());
+        }
+        this.maxPatternLength = longest;
+
+        int capacity = Integer.highestOneBit(Math.max(16, maxStates * 2 - 1)) << 1;
+        edgeKeys = new long[capacity];
+        edgeTargets = new int[capacity];
+        Arrays.fill(edgeKeys, -1L);
+        edgeMask = capacity - 1;
+
+        int[] stateDepth = new int[maxStates];
+        int[] parents = new int[maxStates];
+        char[] chars = new char[maxStates];
+        int[] patternAt = new int[maxStates];
+        Arrays.fill(patternAt, -1);
+        int states = 1;
+
+        for (int index = 0; index < patterns.size(); index++) {
+            String pattern = patterns.get(index);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = fold(pattern.charAt(i));
+                int next = state == 0 ? rootNext[c] : getEdge(state, c);
+                if (next <= 0) {
+                    next = states++;
+                    stateDepth[next] = i + 1;
+                    parents[next] = state;
+                    chars[next] = c;
+                    if (state == 0) {
+                        rootNext[c] = next;
+                    } else {
+                        putEdge(state, c, next);
+                    }
+                }
+                state = next;
+            }
+            if (state != 0 && patternAt[state] < 0) {
+                patternAt[state] = index;
+            }
+        }
+
+        this.depth = Arrays.copyOf(stateDepth, states);
+        this.output = Arrays.copyOf(patternAt, states);
+        this.fail = new int[states];
+        this.outputLink = new int[states];
+        buildFailureLinks(states, longest, parents, chars);
+    }
+
+    /**
+     * Gets the length of the longest pattern.
+     */
+    public int getMaxPatternLength() {
+        return maxPatternLength;
+    }
+
+    /**
+     * Scans part of a text, continuing from a state returned by an earlier call,
+     * so a long text can be scanned in pieces.
+     * @param text the text
+     * @param from the first offset to read
+     * @param to the offset after the last one to read
+     * @param state 0 to start fresh, or the result of the scan that ended at {@code from}
+     * @param listener receives each match with its start offset and pattern index
+     * @return the state to continue from
+     */
+    public int scan(CharSequence text, int from, int to, int state, MatchListener listener) {
+        for (int i = from; i < to; i++) {
+            state = next(state, fold(text.charAt(i)));
+            int match = output[state] >= 0 ? state : outputLink[state];
+            while (match > 0) {
+                listener.found(i - depth[match] + 1, output[match]);
+                match = outputLink[match];
+            }
+        }
+        return state;
+    }
+
+    private int next(int state, char c) {
+        while (state != 0) {
+            int target = getEdge(state, c);
+            if (target > 0) return target;
+            state = fail[state];
+        }
+        return rootNext[c];
+    }
+
+    private void buildFailureLinks(int states, int longest, int[] parents, char[] chars) {
+        // A failure link always points to a shallower state, so states are linked in order of depth
+        int[] firstAtDepth = new int[longest + 2];
+        for (int state = 1; state < states; state++) {
+            firstAtDepth[depth[state] + 1]++;
+        }
+        for (int d = 1; d < firstAtDepth.length; d++) {
+            firstAtDepth[d] += firstAtDepth[d - 1];
+        }
+        int[] byDepth = new int[states];
+        for (int state = 1; state < states; state++) {
+            byDepth[firstAtDepth[depth[state]]++] = state;
+        }
+
+        outputLink[0] = -1;
+        for (int i = 0; i < states - 1; i++) {
+            int state = byDepth[i];
+            int target = parents[state] == 0 ? 0 : next(fail[parents[state]], chars[state]);
+            fail[state] = target;
+            outputLink[state] = output[target] >= 0 ? target : outputLink[target];
+        }
+    }
+
+    private int getEdge(int state, char c) {
+        long key = ((long) state << 16) | c;
+        int slot = hash(key);
+        while (edgeKeys[slot] != -1L) {
+            if (edgeKeys[slot] == key) return edgeTargets[slot];
+            slot = (slot + 1) & edgeMask;
+        }
+        return 0;
+    }
+
+    private void putEdge(int state, char c, int target) {
+        long key = ((long) state << 16) | c;
+        int slot = hash(key);
+        while (edgeKeys[slot] != -1L) {
+            slot = (slot + 1) & edgeMask;
+        }
+        edgeKeys[slot] = key;
+        edgeTargets[slot] = target;
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & edgeMask;
+    }
+
+    private char fold(char c) {
+        return caseSensitive ? c : Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
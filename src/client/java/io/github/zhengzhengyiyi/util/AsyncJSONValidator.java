@@ -0,0 +1,186 @@
+package io.github.zhengzhengyiyi.util;
+
+import io.github.zhengzhengyiyi.util.document.DocumentListener;
+import io.github.zhengzhengyiyi.util.document.LineIndex;
+import io.github.zhengzhengyiyi.util.document.PieceTable;
+import net.minecraft.client.Minecraft;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link JSONValidator} on a background thread.
+ *
+ * The validator keeps the errors and the {@link JSONStructure} of the last
+ * completed pass, and records the range of the document edited since then. If
+ * that range lies inside an object or array of the last pass, only that container
+ * is validated again and its errors are spliced into the previous ones; a full
+ * pass is only run when the edit changed how brackets pair up.
+ *
+ * Submitting a new request cancels the previous one, and a result is only handed
+ * back on the client thread if the document did not change in the meantime.
+ */
+public class AsyncJSONValidator implements DocumentListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncJSONValidator.class);
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Config-Editor-JSON-Validator");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final PieceTable document;
+
+    // Result of the last completed pass
+    private List<JSONError> errors = List.of();
+    private JSONStructure structure = JSONStructure.EMPTY;
+    private boolean validated = false;
+
+    // Range edited since the last completed pass, in current document offsets
+    private int dirtyStart = -1;
+    private int dirtyEnd = -1;
+    private int dirtyDelta = 0;
+
+    private volatile long latestRequest = 0;
+    private Future<?> running;
+
+    public AsyncJSONValidator(PieceTable document) {
+        this.document = document;
+        document.addListener(this);
+    }
+
+    @Override
+    public void onLinesChanged(int firstLine, int removedLines, int addedLines) {
+    }
+
+    @Override
+    public void onTextEdited(int offset, int removedLength, int insertedLength) {
+        int change = insertedLength - removedLength;
+        if (dirtyStart < 0) {
+            dirtyStart = offset;
+            dirtyEnd = offset + insertedLength;
+        } else {
+            dirtyEnd = Math.max(dirtyEnd, offset + removedLength) + change;
+            dirtyStart = Math.min(dirtyStart, offset);
+        }
+        dirtyDelta += change;
+    }
+
+    /**
+     * Validates the current document content in the background.
+     * @param callback receives all errors of the document on the client thread, unless the request became stale
+     */
+    public void submit(Consumer<List<JSONError>> callback) {
+        if (validated && dirtyStart < 0) {
+            cancel();
+            callback.accept(errors);
+            return;
+        }
+
+        int pair = validated ? structure.findEnclosing(dirtyStart, dirtyEnd - dirtyDelta) : -1;
+        if (pair < 0) {
+            submitFull(callback);
+            return;
+        }
+
+        int open = structure.getOpen(pair);
+        int close = structure.getClose(pair) + dirtyDelta;
+        LineIndex lines = document.getLineIndex();
+        int line = lines.getLineOfOffset(open);
+        String container = document.substring(open, close + 1);
+        int lineStart = lines.getLineStart(line);
+
+        run(() -> JSONValidator.validateContainer(container, open, line + 1, lineStart), result -> {
+            if (!result.isBalanced()) {
+                submitFull(callback);
+                return;
+            }
+            commit(splice(pair, result), structure.replace(pair, result.structure, dirtyDelta));
+            callback.accept(errors);
+        });
+    }
+
+    /**
+     * Cancels the pending request, if any. Its result will not be delivered.
+     */
+    public void cancel() {
+        latestRequest++;
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    private void submitFull(Consumer<List<JSONError>> callback) {
+        String text = document.toString();
+        run(() -> JSONValidator.validate(text), result -> {
+            commit(result.errors, result.structure);
+            callback.accept(errors);
+        });
+    }
+
+    private void run(Supplier<JSONValidator.Result> task, Consumer<JSONValidator.Result> onResult) {
+        cancel();
+        long request = latestRequest;
+        long revision = document.getRevision();
+        running = EXECUTOR.submit(() -> {
+            if (request != latestRequest) return;
+            try {
+                JSONValidator.Result result = task.get();
+                if (request != latestRequest) return;
+                Minecraft.getInstance().execute(() -> {
+                    if (request == latestRequest && revision == document.getRevision()) {
+                        running = null;
+                        onResult.accept(result);
+                    }
+                });
+            } catch (Exception e) {
+                LOGGER.error("JSON validation failed", e);
+            }
+        });
+    }
+
+    /**
+     * Replaces the errors of a container with those of its new content. Errors
+     * after the container keep their message and are moved to where their
+     * position ended up.
+     */
+    private List<JSONError> splice(int pair, JSONValidator.Result result) {
+        int open = structure.getOpen(pair);
+        int close = structure.getClose(pair);
+        LineIndex lines = document.getLineIndex();
+
+        List<JSONError> spliced = new ArrayList<>(errors.size() + result.errors.size());
+        for (JSONError error : errors) {
+            if (error.startPosition <= open) {
+                spliced.add(error);
+            } else if (error.startPosition > close) {
+                int start = error.startPosition + dirtyDelta;
+                int line = lines.getLineOfOffset(start);
+                spliced.add(new JSONError(line + 1, start - lines.getLineStart(line) + 1, error.message,
+                        start, error.endPosition + dirtyDelta));
+            }
+        }
+        spliced.addAll(result.errors);
+        spliced.sort(Comparator.comparingInt(error -> error.startPosition));
+        return spliced;
+    }
+
+    private void commit(List<JSONError> newErrors, JSONStructure newStructure) {
+        errors = List.copyOf(newErrors);
+        structure = newStructure;
+        validated = true;
+        dirtyStart = -1;
+        dirtyEnd = -1;
+        dirtyDelta = 0;
+    }
+}
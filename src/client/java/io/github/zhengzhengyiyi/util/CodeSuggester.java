@@ -35,18 +35,31 @@ public class CodeSuggester {
     public static final Pattern STRING_PATTERN = Pattern.compile("\"[^\"]*\"");
     public static final Pattern NUMBER_PATTERN = Pattern.compile("-?\\d+(\\.\\d+)?");
     public static final Pattern KEY_PATTERN = Pattern.compile("\"([^\"]+)\"\\s*:");
+    // Only this much text on either side of the cursor is looked at, so suggesting costs the same in any file size
+    private static final int CONTEXT_CHARS = 4096;
 
     public static List<String> suggestForPosition(String jsonText, int cursorPosition) {
+        return suggestForPosition(jsonText, cursorPosition, isValidJson(jsonText));
+    }
+
+    /**
+     * Suggests completions from the text around the cursor. Only a window of
+     * {@value #CONTEXT_CHARS} characters on either side is copied out of the text.
+     *
+     * @param text the whole document
+     * @param documentValid whether the document is known to be valid JSON, which makes closing tokens the fallback
+     */
+    public static List<String> suggestForPosition(CharSequence text, int cursorPosition, boolean documentValid) {
         List<String> suggestions = new ArrayList<>();
         
-        if (jsonText == null || jsonText.isEmpty()) {
+        if (text == null || text.length() == 0) {
             suggestions.add("{");
             suggestions.add("[");
             return suggestions;
         }
         
-        String textBeforeCursor = jsonText.substring(0, cursorPosition);
-        String textAfterCursor = jsonText.substring(cursorPosition);
+        String textBeforeCursor = text.subSequence(Math.max(0, cursorPosition - CONTEXT_CHARS), cursorPosition).toString();
+        String textAfterCursor = text.subSequence(cursorPosition, Math.min(text.length(), cursorPosition + CONTEXT_CHARS)).toString();
         
         if (isInKeyContext(textBeforeCursor, textAfterCursor)) {
             suggestions.addAll(suggestKeys(textBeforeCursor));
@@ -58,7 +71,7 @@ public class CodeSuggester {
         }
         
         if (suggestions.isEmpty()) {
-            suggestions.addAll(suggestStructural(jsonText, cursorPosition));
+            suggestions.addAll(suggestStructural(textBeforeCursor, documentValid));
         }
         
         return filterDuplicates(suggestions);
@@ -139,18 +152,24 @@ public class CodeSuggester {
         return suggestions;
     }
     
-    private static List<String> suggestStructural(String jsonText, int cursorPosition) {
-        List<String> suggestions = new ArrayList<>();
-        
+    private static boolean isValidJson(String jsonText) {
+        if (jsonText == null) return false;
         try {
             JsonParser.parseString(jsonText);
+            return true;
+        } catch (JsonSyntaxException e) {
+            return false;
+        }
+    }
+    
+    private static List<String> suggestStructural(String textBefore, boolean documentValid) {
+        List<String> suggestions = new ArrayList<>();
+        
+        if (documentValid) {
             suggestions.add(",");
             suggestions.add("}");
             suggestions.add("]");
-        } catch (JsonSyntaxException e) {
-            String textBefore = jsonText.substring(0, cursorPosition);
-//            String textAfter = jsonText.substring(cursorPosition);
-            
+        } else {
             if (textBefore.trim().endsWith("{") || textBefore.trim().endsWith("[")) {
                 suggestions.add("\"\": ");
             } else if (textBefore.trim().endsWith(":")) {
@@ -0,0 +1,283 @@
+package io.github.zhengzhengyiyi.util;
+
+import net.fabricmc.loader.api.FabricLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the config directory and everything below it for files being created,
+ * changed or deleted.
+ *
+ * There is one {@link WatchService} and one daemon thread for the whole tree.
+ * Directories are registered as they are discovered; directories created later
+ * are registered by the watcher itself, which also reports the files already in
+ * them. Listeners are called on the watcher thread and have to hand the work to
+ * their own thread.
+ *
+ * Events are debounced per path: a program saving a file usually touches it
+ * several times in a row, so a path is only reported once it has been quiet for
+ * {@value #DEBOUNCE_MS} ms, with the events in between merged into one. A file that
+ * keeps changing is still reported every {@value #MAX_DELAY_MS} ms.
+ */
+public final class ConfigDirectoryWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigDirectoryWatcher.class);
+    private static final long DEBOUNCE_MS = 250;
+    private static final long MAX_DELAY_MS = 2000;
+
+    public enum Kind {
+        CREATED,
+        MODIFIED,
+        DELETED,
+        /** Events were lost; anything under the path may have changed. */
+        OVERFLOW
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void onChange(Kind kind, Path path);
+    }
+
+    /**
+     * A change waiting to be reported.
+     */
+    private static final class PendingChange {
+        Kind kind;
+        final long firstSeen;
+        long due;
+
+        PendingChange(Kind kind, long now) {
+            this.kind = kind;
+            this.firstSeen = now;
+            this.due = now + DEBOUNCE_MS;
+        }
+    }
+
+    private static ConfigDirectoryWatcher instance;
+
+    private final Path root;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    // Only touched on the watcher thread
+    private final Map<Path, PendingChange> pending = new LinkedHashMap<>();
+    private WatchService service;
+
+    private ConfigDirectoryWatcher(Path root) {
+        this.root = root;
+    }
+
+    public static synchronized ConfigDirectoryWatcher getInstance() {
+        if (instance == null) {
+            instance = new ConfigDirectoryWatcher(FabricLoader.getInstance().getConfigDir());
+        }
+        return instance;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching one directory, but not the directories inside it.
+     * Registering a directory again has no effect.
+     */
+    public void register(Path directory) {
+        WatchService watchService = getService();
+        if (watchService == null) return;
+        try {
+            WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            directories.put(key, directory);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to watch directory {}", directory, e);
+        }
+    }
+
+    private synchronized WatchService getService() {
+        if (service == null) {
+            try {
+                service = FileSystems.getDefault().newWatchService();
+            } catch (IOException e) {
+                LOGGER.error("Failed to create a watch service for {}", root, e);
+                return null;
+            }
+            Thread thread = new Thread(this::run, "Config-Editor-File-Watcher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        return service;
+    }
+
+    /**
+     * Stops watching. Called when the game shuts down.
+     */
+    public synchronized void shutdown() {
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close the watch service", e);
+            }
+        }
+    }
+
+    private void run() {
+        WatchService watchService;
+        synchronized (this) {
+            watchService = service;
+        }
+        while (true) {
+            WatchKey key;
+            try {
+                long wait = nextDue() - System.nanoTime() / 1_000_000;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : watchService.poll();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (key != null) {
+                Path directory = directories.get(key);
+                if (directory != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        handle(directory, event);
+                    }
+                }
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+            }
+            fireDue();
+        }
+    }
+
+    private long nextDue() {
+        long next = Long.MAX_VALUE;
+        for (PendingChange change : pending.values()) {
+            next = Math.min(next, change.due);
+        }
+        return next;
+    }
+
+    /**
+     * Notes a change to report once the path has been quiet for a while.
+     */
+    private void queue(Kind kind, Path path) {
+        long now = System.nanoTime() / 1_000_000;
+        PendingChange change = pending.get(path);
+        if (change == null) {
+            pending.put(path, new PendingChange(kind, now));
+            return;
+        }
+        // A file created and then written is still new; otherwise the last event tells what the path is now
+        if (!(change.kind == Kind.CREATED && kind == Kind.MODIFIED)) {
+            change.kind = kind;
+        }
+        change.due = Math.min(now + DEBOUNCE_MS, change.firstSeen + MAX_DELAY_MS);
+    }
+
+    private void fireDue() {
+        long now = System.nanoTime() / 1_000_000;
+        Iterator<Map.Entry<Path, PendingChange>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingChange> entry = iterator.next();
+            if (entry.getValue().due <= now) {
+                iterator.remove();
+                fire(entry.getValue().kind, entry.getKey());
+            }
+        }
+    }
+
+    private void handle(Path directory, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            fire(Kind.OVERFLOW, directory);
+            return;
+        }
+        Path path = directory.resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            queue(Kind.DELETED, path);
+        } else if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+            if (!Files.isDirectory(path)) {
+                queue(Kind.MODIFIED, path);
+            }
+        } else if (Files.isDirectory(path)) {
+            registerTree(path);
+        } else {
+            queue(Kind.CREATED, path);
+        }
+    }
+
+    /**
+     * Registers a new directory and the ones inside it, and reports the files
+     * that were created or moved into it before it was watched.
+     */
+    private void registerTree(Path directory) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        queue(Kind.CREATED, file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Failed to watch new directory {}", directory, e);
+            fire(Kind.OVERFLOW, directory);
+        }
+    }
+
+    private void fire(Kind kind, Path path) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onChange(kind, path);
+            } catch (Exception e) {
+                LOGGER.error("Config directory listener failed for {}", path, e);
+            }
+        }
+    }
+}
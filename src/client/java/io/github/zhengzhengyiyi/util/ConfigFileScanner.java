@@ -0,0 +1,196 @@
+package io.github.zhengzhengyiyi.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the list of config files under the config directory.
+ *
+ * The directory is walked once, in the background, the first time the list is
+ * needed. After that the list is kept up to date from {@link ConfigDirectoryWatcher}
+ * events, so opening the editor again costs nothing. While the first walk runs,
+ * the files found so far are published every few milliseconds so the sidebar can
+ * fill in as they arrive. The list is sorted by path.
+ */
+public final class ConfigFileScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigFileScanner.class);
+    private static final long PUBLISH_INTERVAL_NANOS = 50_000_000L;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Config-Editor-File-Scanner");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private static ConfigFileScanner instance;
+
+    private final ConfigDirectoryWatcher watcher;
+    // Only touched on the scanner thread
+    private final List<Path> files = new ArrayList<>();
+    private long lastPublish;
+    private volatile List<Path> published = List.of();
+    private volatile int version = 0;
+    private volatile boolean scanning = false;
+    private boolean started = false;
+
+    private ConfigFileScanner(ConfigDirectoryWatcher watcher) {
+        this.watcher = watcher;
+    }
+
+    public static synchronized ConfigFileScanner getInstance() {
+        if (instance == null) {
+            instance = new ConfigFileScanner(ConfigDirectoryWatcher.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the first walk of the config directory, unless it already ran.
+     */
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        scanning = true;
+        watcher.addListener(this::onChange);
+        EXECUTOR.execute(() -> scan(true));
+    }
+
+    /**
+     * Gets the config files found so far, sorted by path. The list does not change;
+     * a new one is published whenever files come or go.
+     */
+    public List<Path> getFiles() {
+        return published;
+    }
+
+    /**
+     * Gets a number that changes every time a new file list is published.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Whether the config directory is being walked, so more files may still appear.
+     */
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    /**
+     * Whether a file is one the editor can open, judging by its name.
+     */
+    public static boolean isConfigFile(Path file) {
+        String fileName = file.getFileName().toString();
+
+        if (fileName.equals(".DS_Store") ||
+            fileName.startsWith(".") ||
+            fileName.equals("Thumbs.db")) {
+            return false;
+        }
+
+        String lowerName = fileName.toLowerCase(Locale.ROOT);
+        return lowerName.endsWith(".json") ||
+               lowerName.endsWith(".txt") ||
+               lowerName.endsWith(".yml") ||
+               lowerName.endsWith(".yaml") ||
+               lowerName.endsWith(".properties") ||
+               lowerName.endsWith(".toml") ||
+               lowerName.endsWith(".conf") ||
+               lowerName.endsWith(".cfg") ||
+               lowerName.endsWith(".ini");
+    }
+
+    /**
+     * Walks the whole config directory again.
+     * @param progressive whether to publish the files found so far while walking; a
+     *                    rescan does not, since its partial list would be missing files
+     */
+    private void scan(boolean progressive) {
+        scanning = true;
+        files.clear();
+        lastPublish = System.nanoTime();
+        Path root = watcher.getRoot();
+        try {
+            if (Files.isDirectory(root)) {
+                Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                        new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        watcher.register(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && isConfigFile(file)) {
+                            add(file);
+                            if (progressive && System.nanoTime() - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                                publish();
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        LOGGER.debug("Skipping unreadable config entry {}", file, exc);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to list config files", e);
+        } finally {
+            // Cleared before the last publish, so a reader that sees the final list knows it is final
+            scanning = false;
+            publish();
+        }
+    }
+
+    private void onChange(ConfigDirectoryWatcher.Kind kind, Path path) {
+        EXECUTOR.execute(() -> {
+            switch (kind) {
+                case CREATED -> {
+                    // Directories outside the config folder can be watched for other reasons
+                    if (path.startsWith(watcher.getRoot()) && isConfigFile(path) && add(path)) publish();
+                }
+                case DELETED -> {
+                    // The path may be a directory, so drop everything below it too
+                    if (files.removeIf(file -> file.startsWith(path))) publish();
+                }
+                case OVERFLOW -> scan(false);
+                case MODIFIED -> { }
+            }
+        });
+    }
+
+    private boolean add(Path file) {
+        int index = Collections.binarySearch(files, file);
+        if (index >= 0) return false;
+        files.add(-index - 1, file);
+        return true;
+    }
+
+    private void publish() {
+        lastPublish = System.nanoTime();
+        published = List.copyOf(files);
+        version++;
+    }
+}
@@ -0,0 +1,492 @@
+package io.github.zhengzhengyiyi.util;
+
+import net.fabricmc.loader.api.FabricLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A full-text index over the config directory, used to find which files mention
+ * a key without opening them.
+ *
+ * Text is split into tokens, which are runs of letters, digits and underscores
+ * compared without case. Each file keeps its tokens sorted together with the
+ * offset and line of every occurrence, and the index maps each token to the
+ * files that contain it. A file is read again only when its size or modification
+ * time changes, and the index is written to a cache file so the next start does
+ * not have to read anything. Finished indexes are published as immutable
+ * snapshots, so a query never waits for indexing.
+ */
+public final class ConfigSearchIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigSearchIndex.class);
+    public static final int MAX_RESULTS = 500;
+    // Files larger than this stay out of the index; they are usually generated dumps
+    private static final long MAX_INDEXED_SIZE = 8L * 1024 * 1024;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int CACHE_MAGIC = 0x43455849;
+    // Version 1 read every file as UTF-8
+    private static final int CACHE_VERSION = 2;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Config-Editor-Indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), r -> {
+                Thread thread = new Thread(r, "Config-Editor-Indexer-Worker");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+
+    private static ConfigSearchIndex instance;
+
+    private final Path root;
+    private final Path cacheFile;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Refreshes that have been requested but not finished
+    private final AtomicInteger pending = new AtomicInteger();
+    // Only touched on the indexer thread
+    private boolean cacheLoaded = false;
+
+    private ConfigSearchIndex(Path root, Path cacheFile) {
+        this.root = root;
+        this.cacheFile = cacheFile;
+    }
+
+    public static synchronized ConfigSearchIndex getInstance() {
+        if (instance == null) {
+            FabricLoader loader = FabricLoader.getInstance();
+            instance = new ConfigSearchIndex(loader.getConfigDir(),
+                    loader.getGameDir().resolve(".config_editor").resolve("search.idx"));
+        }
+        return instance;
+    }
+
+    /**
+     * Brings the index up to date with a list of files in the background.
+     * Files that are not in the list are dropped from the index.
+     * @param files the files to index, all inside the config directory
+     */
+    public void refresh(List<Path> files) {
+        List<Path> snapshotOfFiles = List.copyOf(files);
+        pending.incrementAndGet();
+        EXECUTOR.execute(() -> {
+            try {
+                update(snapshotOfFiles);
+            } catch (Exception e) {
+                LOGGER.error("Failed to index config files", e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Whether files are being read for the index right now. Queries still work
+     * and answer from the last finished index.
+     */
+    public boolean isIndexing() {
+        return pending.get() > 0;
+    }
+
+    /**
+     * Gets a number that changes every time a new index is published.
+     */
+    public int getVersion() {
+        return snapshot.version;
+    }
+
+    public int getFileCount() {
+        return snapshot.files.length;
+    }
+
+    /**
+     * Looks up every occurrence of a query. All words of the query must appear in
+     * a file for it to match; the last word may be incomplete and matches any token
+     * it starts, and its occurrences are the ones reported.
+     * @param query the text typed by the user
+     * @return the matches ordered by file and offset, at most {@link #MAX_RESULTS} of them
+     */
+    public SearchResult search(String query) {
+        Snapshot current = snapshot;
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || current.files.length == 0) return SearchResult.EMPTY;
+
+        // Files that contain every complete word
+        boolean[] candidates = null;
+        for (int i = 0; i < terms.size() - 1; i++) {
+            int[] files = current.postings.get(terms.get(i));
+            if (files == null) return SearchResult.EMPTY;
+            boolean[] containing = new boolean[current.files.length];
+            for (int file : files) {
+                containing[file] = candidates == null || candidates[file];
+            }
+            candidates = containing;
+        }
+
+        String prefix = terms.get(terms.size() - 1);
+        SortedMap<String, int[]> completions = current.postings.subMap(prefix, prefix + Character.MAX_VALUE);
+        boolean[] matching = new boolean[current.files.length];
+        for (int[] files : completions.values()) {
+            for (int file : files) {
+                matching[file] = candidates == null || candidates[file];
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        int total = 0;
+        int fileCount = 0;
+        IntList found = new IntList();
+        for (int file = 0; file < matching.length; file++) {
+            if (!matching[file]) continue;
+            FileEntry entry = current.files[file];
+            int first = entry.findFirstToken(prefix);
+            int last = first;
+            while (last < entry.tokens.length && entry.tokens[last].startsWith(prefix)) {
+                last++;
+            }
+            if (last == first) continue;
+            fileCount++;
+            total += entry.starts[last] - entry.starts[first];
+            if (matches.size() >= MAX_RESULTS) continue;
+
+            found.clear();
+            for (int i = entry.starts[first]; i < entry.starts[last]; i++) {
+                found.add(i);
+            }
+
+            // Occurrences of several completions interleave, so order them by offset
+            long[] occurrences = new long[found.size()];
+            for (int i = 0; i < occurrences.length; i++) {
+                occurrences[i] = (long) entry.offsets[found.get(i)] << 32 | found.get(i);
+            }
+            Arrays.sort(occurrences);
+            Path path = root.resolve(entry.path);
+            for (int i = 0; i < occurrences.length && matches.size() < MAX_RESULTS; i++) {
+                int occurrence = (int) occurrences[i];
+                matches.add(new Match(path, entry.path, entry.offsets[occurrence], entry.lines[occurrence],
+                        entry.tokenAt(occurrence)));
+            }
+        }
+        return new SearchResult(Collections.unmodifiableList(matches), total, fileCount);
+    }
+
+    private void update(List<Path> files) throws InterruptedException {
+        if (!cacheLoaded) {
+            cacheLoaded = true;
+            Snapshot cached = readCache();
+            if (cached != null) {
+                snapshot = cached;
+            }
+        }
+
+        Map<String, FileEntry> previous = new HashMap<>();
+        for (FileEntry entry : snapshot.files) {
+            previous.put(entry.path, entry);
+        }
+
+        List<FileEntry> entries = new ArrayList<>(files.size());
+        List<Callable<FileEntry>> tasks = new ArrayList<>();
+        int reused = 0;
+        for (Path file : files) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                continue;
+            }
+            String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+            long modified = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+            FileEntry old = previous.get(path);
+            if (old != null && old.modified == modified && old.size == size) {
+                entries.add(old);
+                reused++;
+            } else {
+                tasks.add(() -> indexFile(file, path, modified, size));
+            }
+        }
+        if (tasks.isEmpty() && reused == previous.size()) return;
+
+        long startTime = System.nanoTime();
+        for (Future<FileEntry> future : WORKERS.invokeAll(tasks)) {
+            try {
+                entries.add(future.get());
+            } catch (ExecutionException e) {
+                LOGGER.warn("Failed to index config file", e.getCause());
+            }
+        }
+        entries.sort(Comparator.comparing(entry -> entry.path));
+        snapshot = Snapshot.of(entries.toArray(new FileEntry[0]), snapshot.version + 1);
+        LOGGER.info("Indexed {} of {} config files in {} ms", tasks.size(), entries.size(),
+                (System.nanoTime() - startTime) / 1_000_000);
+        writeCache(snapshot);
+    }
+
+    private static FileEntry indexFile(Path file, String path, long modified, long size) throws IOException {
+        if (size > MAX_INDEXED_SIZE) {
+            return new FileEntry(path, modified, size, new String[0], new int[1], new int[0], new int[0]);
+        }
+        // Decoded as the editor decodes it, so offsets land where the editor jumps to
+        String text = TextFileLoader.read(file);
+
+        // Occurrences of each token as offset, line pairs
+        Map<String, IntList> occurrences = new HashMap<>();
+        int line = 1;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                line++;
+                i++;
+                continue;
+            }
+            if (!isTokenChar(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            if (i - start <= MAX_TOKEN_LENGTH) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                IntList list = occurrences.computeIfAbsent(token, key -> new IntList(4));
+                list.add(start);
+                list.add(line);
+            }
+        }
+
+        String[] tokens = occurrences.keySet().toArray(new String[0]);
+        Arrays.sort(tokens);
+        int total = 0;
+        for (IntList list : occurrences.values()) {
+            total += list.size() / 2;
+        }
+        int[] starts = new int[tokens.length + 1];
+        int[] offsets = new int[total];
+        int[] lines = new int[total];
+        int next = 0;
+        for (int token = 0; token < tokens.length; token++) {
+            starts[token] = next;
+            IntList list = occurrences.get(tokens[token]);
+            for (int j = 0; j < list.size(); j += 2) {
+                offsets[next] = list.get(j);
+                lines[next] = list.get(j + 1);
+                next++;
+            }
+        }
+        starts[tokens.length] = next;
+        return new FileEntry(path, modified, size, tokens, starts, offsets, lines);
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            if (!isTokenChar(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private Snapshot readCache() {
+        if (!Files.isRegularFile(cacheFile)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) return null;
+            FileEntry[] files = new FileEntry[in.readInt()];
+            for (int f = 0; f < files.length; f++) {
+                String path = in.readUTF();
+                long modified = in.readLong();
+                long size = in.readLong();
+                String[] tokens = new String[in.readInt()];
+                int[] starts = new int[tokens.length + 1];
+                int[] offsets = new int[in.readInt()];
+                int[] lines = new int[offsets.length];
+                for (int token = 0; token < tokens.length; token++) {
+                    tokens[token] = in.readUTF();
+                    starts[token + 1] = in.readInt();
+                }
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = in.readInt();
+                    lines[i] = in.readInt();
+                }
+                files[f] = new FileEntry(path, modified, size, tokens, starts, offsets, lines);
+            }
+            return Snapshot.of(files, 1);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Ignoring unreadable search index cache {}", cacheFile, e);
+            return null;
+        }
+    }
+
+    private void writeCache(Snapshot index) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(index.files.length);
+                for (FileEntry entry : index.files) {
+                    out.writeUTF(entry.path);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.size);
+                    out.writeInt(entry.tokens.length);
+                    out.writeInt(entry.offsets.length);
+                    for (int token = 0; token < entry.tokens.length; token++) {
+                        out.writeUTF(entry.tokens[token]);
+                        out.writeInt(entry.starts[token + 1]);
+                    }
+                    for (int i = 0; i < entry.offsets.length; i++) {
+                        out.writeInt(entry.offsets[i]);
+                        out.writeInt(entry.lines[i]);
+                    }
+                }
+            }
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write search index cache {}", cacheFile, e);
+        }
+    }
+
+    /**
+     * The tokens of one file. Occurrences are grouped by token, so the
+     * occurrences of {@code tokens[i]} are {@code starts[i]} up to {@code starts[i + 1]}.
+     */
+    private static final class FileEntry {
+        final String path;
+        final long modified;
+        final long size;
+        final String[] tokens;
+        final int[] starts;
+        final int[] offsets;
+        final int[] lines;
+
+        FileEntry(String path, long modified, long size, String[] tokens, int[] starts, int[] offsets, int[] lines) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.tokens = tokens;
+            this.starts = starts;
+            this.offsets = offsets;
+            this.lines = lines;
+        }
+
+        int findFirstToken(String prefix) {
+            int index = Arrays.binarySearch(tokens, prefix);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        String tokenAt(int occurrence) {
+            int index = Arrays.binarySearch(starts, occurrence);
+            return tokens[index >= 0 ? index : -index - 2];
+        }
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new FileEntry[0], new TreeMap<>(), 0);
+
+        final FileEntry[] files;
+        // Token to the indices of the files that contain it, ascending
+        final TreeMap<String, int[]> postings;
+        final int version;
+
+        private Snapshot(FileEntry[] files, TreeMap<String, int[]> postings, int version) {
+            this.files = files;
+            this.postings = postings;
+            this.version = version;
+        }
+
+        static Snapshot of(FileEntry[] files, int version) {
+            Map<String, IntList> postings = new HashMap<>();
+            for (int file = 0; file < files.length; file++) {
+                for (String token : files[file].tokens) {
+                    postings.computeIfAbsent(token, key -> new IntList(2)).add(file);
+                }
+            }
+            TreeMap<String, int[]> sorted = new TreeMap<>();
+            postings.forEach((token, list) -> sorted.put(token, list.toArray()));
+            return new Snapshot(files, sorted, version);
+        }
+    }
+
+    /**
+     * One occurrence of a query in a config file.
+     */
+    public static final class Match {
+        public final Path file;
+        // Path relative to the config directory, with '/' separators
+        public final String relativePath;
+        public final int offset;
+        // One-based
+        public final int line;
+        // The token that matched, in lower case
+        public final String token;
+
+        Match(Path file, String relativePath, int offset, int line, String token) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.offset = offset;
+            this.line = line;
+            this.token = token;
+        }
+    }
+
+    public static final class SearchResult {
+        public static final SearchResult EMPTY = new SearchResult(List.of(), 0, 0);
+
+        public final List<Match> matches;
+        // All occurrences, including the ones past MAX_RESULTS
+        public final int totalCount;
+        public final int fileCount;
+
+        SearchResult(List<Match> matches, int totalCount, int fileCount) {
+            this.matches = matches;
+            this.totalCount = totalCount;
+            this.fileCount = fileCount;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package io.github.zhengzhengyiyi.util;
+
+import net.minecraft.client.Minecraft;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes files so that a crash never leaves one half written.
+ *
+ * The text goes to a temporary file next to the target, which is flushed to disk
+ * and then renamed over the target in one step, so the target holds either the
+ * old or the new text. Temporary files start with a dot and end in {@code .tmp},
+ * so they are never listed as config files.
+ *
+ * All saves run one at a time on a single I/O thread. A save of a file that is
+ * still waiting for that thread replaces the waiting text instead of queueing a
+ * second write, so saving several times in a row writes the file once.
+ *
+ * Text is written in the encoding the caller gives, normally the one the file was
+ * read in. A character that encoding cannot hold fails the save, rather than
+ * being written as a question mark.
+ *
+ * The text is encoded as it is written, straight from its pieces, so no string or
+ * byte array of the whole file is built. It is hashed on the way to the temporary
+ * file and compared with the file on disk; a save that would not change the file
+ * deletes the temporary file instead of renaming it. The hash of each file written
+ * is kept together with its size and modification time, so the file only has to
+ * be read back when something else changed it since.
+ */
+public final class FileSaver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSaver.class);
+    private static final int MAX_QUEUED = 64;
+    // The rename is retried, since on Windows another program reading the target blocks it briefly
+    private static final int MOVE_ATTEMPTS = 3;
+    private static final long MOVE_RETRY_MS = 100;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+        Thread thread = new Thread(r, "Config-Editor-File-Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Saves waiting for the I/O thread, by target; guarded by itself
+    private static final Map<Path, PendingSave> PENDING = new HashMap<>();
+    // Last known content of files on disk; only touched on the I/O thread
+    private static final Map<Path, Fingerprint> KNOWN = new HashMap<>();
+
+    /**
+     * Text to save. It must not change once handed to the saver, since it is
+     * written out on the I/O thread.
+     */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    /**
+     * Receives the outcome of {@link #save} on the client thread.
+     */
+    public interface Listener {
+        void onSaved();
+
+        void onFailed(IOException error);
+    }
+
+    private static final class PendingSave {
+        final Path file;
+        Content content;
+        Charset charset;
+        final List<Listener> listeners = new ArrayList<>();
+
+        PendingSave(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * The size, modification time and content hash of a file as last seen.
+     */
+    private static final class Fingerprint {
+        final long size;
+        final FileTime modified;
+        final byte[] hash;
+
+        Fingerprint(long size, FileTime modified, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Counts and hashes the bytes written through it, and passes them on.
+     */
+    private static final class HashingOutputStream extends FilterOutputStream {
+        final MessageDigest digest = newDigest();
+        long count = 0;
+
+        HashingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            digest.update((byte) b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            digest.update(bytes, offset, length);
+            count += length;
+        }
+    }
+
+    private FileSaver() {
+    }
+
+    /**
+     * Saves text as UTF-8 in the background.
+     *
+     * If an earlier save of the same file has not started yet, this text replaces
+     * its text and both listeners hear about the one write.
+     *
+     * @param file the file to write
+     * @param content the new content of the file
+     * @param listener receives the outcome on the client thread, or null
+     */
+    public static void save(Path file, String content, Listener listener) {
+        save(file, out -> out.write(content), StandardCharsets.UTF_8, listener);
+    }
+
+    /**
+     * Saves text in the given encoding in the background, encoding it piece by
+     * piece as it is written.
+     * @param charset the encoding of the file, as reported when it was loaded
+     * @see #save(Path, String, Listener)
+     */
+    public static void save(Path file, Content content, Charset charset, Listener listener) {
+        Path target = file.toAbsolutePath().normalize();
+        PendingSave save;
+        synchronized (PENDING) {
+            save = PENDING.get(target);
+            if (save != null) {
+                save.content = content;
+                save.charset = charset;
+                if (listener != null) save.listeners.add(listener);
+                return;
+            }
+            save = new PendingSave(target);
+            save.content = content;
+            save.charset = charset;
+            if (listener != null) save.listeners.add(listener);
+            PENDING.put(target, save);
+        }
+
+        PendingSave queued = save;
+        try {
+            EXECUTOR.execute(() -> run(queued));
+        } catch (RejectedExecutionException e) {
+            synchronized (PENDING) {
+                PENDING.remove(target);
+            }
+            notify(queued.listeners, new IOException("Too many saves queued", e));
+        }
+    }
+
+    private static void run(PendingSave save) {
+        Content content;
+        Charset charset;
+        List<Listener> listeners;
+        synchronized (PENDING) {
+            // From here on a new save of the file queues a new write
+            PENDING.remove(save.file);
+            content = save.content;
+            charset = save.charset;
+            listeners = List.copyOf(save.listeners);
+        }
+        try {
+            if (writeIfChanged(save.file, content, charset)) {
+                LOGGER.info("Successfully saved file: {}", save.file.getFileName());
+            } else {
+                LOGGER.debug("File unchanged, not written: {}", save.file.getFileName());
+            }
+            notify(listeners, null);
+        } catch (IOException e) {
+            LOGGER.error("Failed to save file: {}", save.file, e);
+            notify(listeners, e);
+        }
+    }
+
+    private static void notify(List<Listener> listeners, IOException error) {
+        if (listeners.isEmpty()) return;
+        Minecraft.getInstance().execute(() -> {
+            for (Listener listener : listeners) {
+                if (error == null) {
+                    listener.onSaved();
+                } else {
+                    listener.onFailed(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the content of a file on the calling thread, unless it already
+     * holds exactly this text.
+     *
+     * The text goes to a temporary file next to the target, hashed as it is
+     * written, so it is only encoded once. If the hash matches the file on disk
+     * the temporary file is deleted; otherwise it is flushed to disk and renamed
+     * over the target.
+     * @return whether the file was written
+     */
+    private static boolean writeIfChanged(Path file, Content content, Charset charset) throws IOException {
+        // Write through a link to the file it points at, instead of replacing the link
+        Path target = Files.isSymbolicLink(file) ? file.toRealPath() : file;
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        Path temp = Files.createTempFile(directory, "." + target.getFileName() + ".", ".tmp");
+        byte[] hash;
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                HashingOutputStream written = new HashingOutputStream(Channels.newOutputStream(channel));
+                encode(content, charset, written);
+                hash = written.digest.digest();
+                Fingerprint onDisk = getFingerprint(target, written.count);
+                if (onDisk != null && onDisk.size == written.count && MessageDigest.isEqual(onDisk.hash, hash)) {
+                    return false;
+                }
+                channel.force(true);
+            }
+            copyPermissions(target, temp);
+            move(temp, target);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        syncDirectory(directory);
+
+        BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+        KNOWN.put(target, new Fingerprint(attributes.size(), attributes.lastModifiedTime(), hash));
+        return true;
+    }
+
+    /**
+     * Gets the fingerprint of a file on disk. The file is only read if it has the
+     * expected size and changed since it was last seen.
+     * @return the fingerprint, or null if the file does not exist
+     */
+    private static Fingerprint getFingerprint(Path file, long expectedSize) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            KNOWN.remove(file);
+            return null;
+        }
+        Fingerprint known = KNOWN.get(file);
+        if (known != null && known.size == attributes.size() && known.modified.equals(attributes.lastModifiedTime())) {
+            return known;
+        }
+        if (attributes.size() != expectedSize) {
+            // Cannot be equal, so there is no need to read it
+            return new Fingerprint(attributes.size(), attributes.lastModifiedTime(), new byte[0]);
+        }
+        HashingOutputStream read = new HashingOutputStream(OutputStream.nullOutputStream());
+        try (InputStream in = Files.newInputStream(file)) {
+            in.transferTo(read);
+        }
+        Fingerprint fingerprint = new Fingerprint(read.count, attributes.lastModifiedTime(), read.digest.digest());
+        KNOWN.put(file, fingerprint);
+        return fingerprint;
+    }
+
+    private static void encode(Content content, Charset charset, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)));
+        try {
+            content.writeTo(writer);
+            writer.flush();
+        } catch (CharacterCodingException e) {
+            throw new IOException("The text has characters that " + charset.name() + " cannot hold", e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return;
+            } catch (AccessDeniedException e) {
+                if (attempt >= MOVE_ATTEMPTS) throw e;
+                try {
+                    Thread.sleep(MOVE_RETRY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives the new file the permissions of the one it replaces, since a temporary
+     * file is only readable by its owner.
+     */
+    private static void copyPermissions(Path from, Path to) {
+        try {
+            if (Files.exists(from)) {
+                Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+            }
+        } catch (UnsupportedOperationException | IOException e) {
+            // Not a POSIX file system; the new file gets the default permissions
+        }
+    }
+
+    /**
+     * Flushes the rename itself to disk. Only possible on POSIX systems; elsewhere
+     * the rename is durable once it returns.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on this platform
+        }
+    }
+
+    /**
+     * Waits for queued saves to finish. Called when the game shuts down.
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+        try {
+            if (!EXECUTOR.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warn("Gave up waiting for pending saves");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.zhengzhengyiyi.util;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A growable list of primitive ints, used where a {@code List<Integer>} would box
+ * every element.
+ */
+public final class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public void addAll(int[] source) {
+        insert(size, source);
+    }
+
+    /**
+     * Inserts values at a position, moving the values from there on back.
+     * @param index where the first inserted value goes
+     * @param source the values to insert
+     */
+    public void insert(int index, int[] source) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        if (size + source.length > values.length) {
+            values = Arrays.copyOf(values, Math.max(size + source.length, size * 2));
+        }
+        System.arraycopy(values, index, values, index + source.length, size - index);
+        System.arraycopy(source, 0, values, index, source.length);
+        size += source.length;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes every value that does not match, keeping the order of the others.
+     * @param filter the test a value has to pass to stay in the list
+     */
+    public void retainIf(IntPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(values[i])) {
+                values[kept++] = values[i];
+            }
+        }
+        size = kept;
+    }
+
+    /**
+     * Finds the first value that is at least {@code value}, in a list sorted in ascending order.
+     * @return the index of that value, or {@link #size()} if every value is smaller
+     */
+    public int lowerBound(int value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.zhengzhengyiyi.util;
+
+import java.util.Arrays;
+
+/**
+ * The bracket pairs of a JSON document, as found by {@link JSONValidator}.
+ *
+ * Every object and array that was opened and closed by a matching bracket is a
+ * pair. Pairs are stored in the order of their opening bracket, each with the
+ * index of the pair that directly contains it, so the innermost container around
+ * an edit is found by walking up from its nearest preceding pair.
+ * Instances are immutable.
+ */
+public final class JSONStructure {
+    public static final JSONStructure EMPTY = new JSONStructure(new int[0], new int[0], new int[0]);
+
+    private final int[] opens;
+    private final int[] closes;
+    private final int[] parents;
+
+    private JSONStructure(int[] opens, int[] closes, int[] parents) {
+        this.opens = opens;
+        this.closes = closes;
+        this.parents = parents;
+    }
+
+    /**
+     * Builds a structure from pairs in opening order. Pairs with a negative close
+     * offset were never closed properly; they are dropped and their children are
+     * attached to the nearest remaining ancestor.
+     */
+    static JSONStructure of(int[] opens, int[] closes, int[] parents, int count) {
+        int[] newIndex = new int[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            newIndex[i] = closes[i] >= 0 ? kept++ : -1;
+        }
+        if (kept == 0) return EMPTY;
+
+        int[] keptOpens = new int[kept];
+        int[] keptCloses = new int[kept];
+        int[] keptParents = new int[kept];
+        // Nearest kept ancestor of each pair, or -1
+        int[] anchor = new int[count];
+        for (int i = 0; i < count; i++) {
+            int parent = parents[i];
+            int parentAnchor = parent < 0 ? -1 : (newIndex[parent] >= 0 ? newIndex[parent] : anchor[parent]);
+            anchor[i] = parentAnchor;
+            if (newIndex[i] >= 0) {
+                keptOpens[newIndex[i]] = opens[i];
+                keptCloses[newIndex[i]] = closes[i];
+                keptParents[newIndex[i]] = parentAnchor;
+            }
+        }
+        return new JSONStructure(keptOpens, keptCloses, keptParents);
+    }
+
+    public int size() {
+        return opens.length;
+    }
+
+    public int getOpen(int pair) {
+        return opens[pair];
+    }
+
+    public int getClose(int pair) {
+        return closes[pair];
+    }
+
+    /**
+     * Finds the innermost pair that contains a changed range without either of its
+     * brackets being part of it.
+     * @param start the start of the changed range (inclusive)
+     * @param end the end of the changed range (exclusive)
+     * @return the pair index, or -1 if no pair contains the range
+     */
+    public int findEnclosing(int start, int end) {
+        int low = 0;
+        int high = opens.length - 1;
+        int pair = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (opens[mid] < start) {
+                pair = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        while (pair >= 0 && closes[pair] < end) {
+            pair = parents[pair];
+        }
+        return pair;
+    }
+
+    /**
+     * Replaces a pair and everything inside it.
+     * @param pair the pair to replace
+     * @param replacement the pairs of the new content, starting with the replacing pair itself
+     * @param delta how far everything after the replaced pair has moved
+     * @return the updated structure
+     */
+    public JSONStructure replace(int pair, JSONStructure replacement, int delta) {
+        int end = pair + 1;
+        while (end < opens.length && opens[end] < closes[pair]) {
+            end++;
+        }
+        int inserted = replacement.size();
+        int shift = inserted - (end - pair);
+        int size = opens.length + shift;
+
+        int[] newOpens = Arrays.copyOf(opens, size);
+        int[] newCloses = Arrays.copyOf(closes, size);
+        int[] newParents = Arrays.copyOf(parents, size);
+
+        // Pairs around the replaced one close after it
+        for (int ancestor = parents[pair]; ancestor >= 0; ancestor = parents[ancestor]) {
+            newCloses[ancestor] += delta;
+        }
+        for (int i = 0; i < inserted; i++) {
+            newOpens[pair + i] = replacement.opens[i];
+            newCloses[pair + i] = replacement.closes[i];
+            newParents[pair + i] = i == 0 ? parents[pair] : replacement.parents[i] + pair;
+        }
+        for (int i = end; i < opens.length; i++) {
+            newOpens[i + shift] = opens[i] + delta;
+            newCloses[i + shift] = closes[i] + delta;
+            newParents[i + shift] = parents[i] < pair ? parents[i] : parents[i] + shift;
+        }
+        return new JSONStructure(newOpens, newCloses, newParents);
+    }
+}
@@ -1,357 +1,542 @@
 package io.github.zhengzhengyiyi.util;
 
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.stream.MalformedJsonException;
-import java.util.*;
-import java.util.regex.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Validates JSON in a single pass over the text.
+ *
+ * The accepted syntax follows Gson's lenient mode, which is what {@code JsonParser}
+ * uses: comments ({@code //}, {@code #} and block comments), single quoted and
+ * unquoted strings, {@code =} or {@code =>} after names and {@code ;} between values.
+ * Offsets, lines and columns are tracked while scanning, and the validator keeps
+ * going after an error so that every problem in the document is reported.
+ * Containers are kept on an explicit stack, so deeply nested input cannot
+ * overflow the call stack.
+ *
+ * Besides the errors, a pass records the document's bracket pairs as a
+ * {@link JSONStructure}. After an edit inside a container, only that container
+ * needs to be validated again with {@link #validateContainer}.
+ */
 public class JSONValidator {
+    // A badly broken file would otherwise report an error for almost every token
+    private static final int MAX_ERRORS = 500;
+
     public static List<JSONError> validateJSON(String text) {
+        return validateJSON((CharSequence) text);
+    }
+
+    /**
+     * Validates a JSON document.
+     * @param text the document content
+     * @return the errors found, in document order of detection
+     */
+    public static List<JSONError> validateJSON(CharSequence text) {
+        return validate(text).errors;
+    }
+
+    /**
+     * Validates a JSON document and records its bracket pairs.
+     * @param text the document content
+     * @return the errors and the structure of the document
+     */
+    public static Result validate(CharSequence text) {
         List<JSONError> errors = new ArrayList<>();
-        
-        if (text == null || text.trim().isEmpty()) {
-            return errors;
-        }
-        
-        try {
-            JsonParser.parseString(text);
-        } catch (Exception e) {
-            parseException(e, text, errors);
+        if (text == null || isBlank(text)) {
+            return new Result(errors, JSONStructure.EMPTY, true);
         }
-        
-        checkBasicErrors(text, errors);
-        checkStructuralErrors(text, errors);
-        return errors;
+        Parser parser = new Parser(text, 0, 1, 0, errors);
+        parser.parse();
+        JSONStructure structure = errors.size() < MAX_ERRORS ? parser.buildStructure() : JSONStructure.EMPTY;
+        return new Result(errors, structure, !parser.structural);
     }
-    
-    private static void parseException(Exception e, String text, List<JSONError> errors) {
-        String message = e.getMessage();
-        Pattern pattern = Pattern.compile("at line (\\d+) column (\\d+)");
-        Matcher matcher = pattern.matcher(message);
-        
-        if (matcher.find()) {
-            int line = Integer.parseInt(matcher.group(1));
-            int column = Integer.parseInt(matcher.group(2));
-            int position = findPosition(text, line, column);
-            
-            String errorMsg = getCleanErrorMessage(e);
-            int startPos = findPreciseErrorStart(text, position, errorMsg);
-            int endPos = findPreciseErrorEnd(text, position, errorMsg);
-            
-            int actualLine = calculateLineNumber(text, startPos) + 1;
-            int actualColumn = calculateColumnNumber(text, startPos);
-            
-            errors.add(new JSONError(actualLine, actualColumn, errorMsg, startPos, endPos));
-        } else {
-            checkManualErrorDetection(text, errors);
-        }
+
+    /**
+     * Validates a single object or array taken out of a larger document.
+     *
+     * The result is only meaningful if it is {@link Result#isBalanced() balanced}:
+     * the container must still end at its last character with no bracket left
+     * open or closed too often. Otherwise the edit changed the structure around it
+     * and the whole document has to be validated again.
+     *
+     * @param container the container text, from its opening to its closing bracket
+     * @param offset the document offset of the opening bracket
+     * @param line the one-based line of the opening bracket
+     * @param lineStart the document offset where that line starts
+     * @return the errors and pairs, with document offsets, lines and columns
+     */
+    public static Result validateContainer(CharSequence container, int offset, int line, int lineStart) {
+        List<JSONError> errors = new ArrayList<>();
+        Parser parser = new Parser(container, offset, line, lineStart, errors);
+        parser.parse();
+        boolean balanced = !parser.structural && errors.size() < MAX_ERRORS;
+        return new Result(errors, balanced ? parser.buildStructure() : JSONStructure.EMPTY, balanced);
     }
-    
-    private static String getCleanErrorMessage(Exception e) {
-        if (e instanceof JsonSyntaxException) {
-            String msg = e.getMessage();
-            if (msg.contains("Expected")) {
-                if (msg.contains("BEGIN_OBJECT")) return "Expected '{'";
-                if (msg.contains("END_OBJECT")) return "Expected '}'";
-                if (msg.contains("BEGIN_ARRAY")) return "Expected '['";
-                if (msg.contains("END_ARRAY")) return "Expected ']'";
-                if (msg.contains("COLON")) return "Expected ':'";
-                if (msg.contains("COMMA")) return "Expected ','";
-                return "Expected value";
-            } else if (msg.contains("Unterminated")) {
-                return "Unterminated string";
-            } else if (msg.contains("Malformed")) {
-                return "Malformed JSON";
-            }
-            return "Syntax error";
-        } else if (e instanceof MalformedJsonException) {
-            return "Malformed JSON";
+
+    /**
+     * The outcome of a validation pass.
+     */
+    public static final class Result {
+        public final List<JSONError> errors;
+        public final JSONStructure structure;
+        private final boolean balanced;
+
+        Result(List<JSONError> errors, JSONStructure structure, boolean balanced) {
+            this.errors = errors;
+            this.structure = structure;
+            this.balanced = balanced;
+        }
+
+        /**
+         * Whether every bracket was matched and the text held exactly one value.
+         */
+        public boolean isBalanced() {
+            return balanced;
         }
-        return "JSON error";
     }
-    
-    private static int findPosition(String text, int line, int column) {
-        int currentLine = 1;
-        int currentColumn = 1;
-        
+
+    private static boolean isBlank(CharSequence text) {
         for (int i = 0; i < text.length(); i++) {
-            if (currentLine == line && currentColumn == column) {
-                return i;
-            }
-            
-            if (text.charAt(i) == '\n') {
-                currentLine++;
-                currentColumn = 1;
-            } else {
-                currentColumn++;
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
             }
         }
-        
-        return Math.max(0, Math.min(text.length() - 1, 0));
+        return true;
     }
-    
-    private static int calculateLineNumber(String text, int position) {
-        int line = 0;
-        for (int i = 0; i < position && i < text.length(); i++) {
-            if (text.charAt(i) == '\n') {
-                line++;
+
+    private static final class Parser {
+        // Token types
+        private static final int EOF = 0;
+        private static final int BEGIN_OBJECT = 1;
+        private static final int END_OBJECT = 2;
+        private static final int BEGIN_ARRAY = 3;
+        private static final int END_ARRAY = 4;
+        private static final int COLON = 5;
+        private static final int COMMA = 6;
+        private static final int STRING = 7;
+        private static final int LITERAL = 8;
+        private static final int INVALID = 9;
+
+        // Container kinds
+        private static final int ROOT = 0;
+        private static final int OBJECT = 1;
+        private static final int ARRAY = 2;
+
+        // What a container expects next
+        private static final int EXPECT_NAME_OR_END = 0;
+        private static final int EXPECT_NAME = 1;
+        private static final int EXPECT_COLON = 2;
+        private static final int EXPECT_VALUE = 3;
+        private static final int EXPECT_VALUE_OR_END = 4;
+        private static final int EXPECT_COMMA_OR_END = 5;
+
+        private final CharSequence text;
+        private final int length;
+        // Document offset of the first character of text
+        private final int base;
+        private final List<JSONError> errors;
+
+        private int pos = 0;
+        private int line;
+        private int lineStart;
+
+        private int type;
+        private int tokenStart;
+        private int tokenEnd;
+        private int tokenLine;
+        private int tokenColumn;
+
+        private int[] kinds = new int[32];
+        private int[] states = new int[32];
+        private int[] openOffsets = new int[32];
+        private int[] openLines = new int[32];
+        private int[] openColumns = new int[32];
+        private int[] framePairs = new int[32];
+        private int depth = 0;
+
+        // Bracket pairs in opening order; a close offset of -1 means not closed properly
+        private int[] pairOpens = new int[32];
+        private int[] pairCloses = new int[32];
+        private int[] pairParents = new int[32];
+        private int pairCount = 0;
+        // Set when brackets do not balance or the text holds more than one value
+        private boolean structural = false;
+
+        private int commaOffset;
+        private int commaLine;
+        private int commaColumn;
+        private boolean reportedTrailingData = false;
+
+        Parser(CharSequence text, int base, int line, int lineStart, List<JSONError> errors) {
+            this.text = text;
+            this.length = text.length();
+            this.base = base;
+            this.line = line;
+            this.lineStart = lineStart - base;
+            this.errors = errors;
+        }
+
+        JSONStructure buildStructure() {
+            return JSONStructure.of(pairOpens, pairCloses, pairParents, pairCount);
+        }
+
+        void parse() {
+            push(ROOT, EXPECT_VALUE);
+            int tokens = 0;
+            while (errors.size() < MAX_ERRORS) {
+                if ((++tokens & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                nextToken();
+                switch (type) {
+                    case EOF:
+                        finish();
+                        return;
+                    case BEGIN_OBJECT:
+                    case BEGIN_ARRAY:
+                    case STRING:
+                    case LITERAL:
+                        onValueToken();
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        onCloseToken();
+                        break;
+                    case COLON:
+                        onColon();
+                        break;
+                    case COMMA:
+                        onComma();
+                        break;
+                    default:
+                        tokenError("Unexpected character");
+                        break;
+                }
             }
         }
-        return line;
-    }
-    
-    private static int calculateColumnNumber(String text, int position) {
-        int column = 1;
-//        int lastNewLine = -1;
-        for (int i = 0; i < position && i < text.length(); i++) {
-            if (text.charAt(i) == '\n') {
-//                lastNewLine = i;
-                column = 1;
+
+        private void onValueToken() {
+            int top = depth - 1;
+            int kind = kinds[top];
+            int state = states[top];
+
+            if (kind == ROOT) {
+                if (state == EXPECT_COMMA_OR_END && !reportedTrailingData) {
+                    tokenError("Unexpected data after the root value");
+                    reportedTrailingData = true;
+                    structural = true;
+                }
+                states[top] = EXPECT_COMMA_OR_END;
+                beginValue();
+            } else if (kind == OBJECT) {
+                switch (state) {
+                    case EXPECT_NAME_OR_END:
+                    case EXPECT_NAME:
+                        if (type == STRING || type == LITERAL) {
+                            states[top] = EXPECT_COLON;
+                        } else {
+                            tokenError("Expected name");
+                            states[top] = EXPECT_COMMA_OR_END;
+                            beginValue();
+                        }
+                        break;
+                    case EXPECT_COLON:
+                        tokenError("Expected ':'");
+                        states[top] = EXPECT_COMMA_OR_END;
+                        beginValue();
+                        break;
+                    case EXPECT_VALUE:
+                        states[top] = EXPECT_COMMA_OR_END;
+                        beginValue();
+                        break;
+                    default:
+                        // Missing comma: read the token as the next name, or as a value if it cannot be one
+                        tokenError("Expected ','");
+                        if (type == STRING || type == LITERAL) {
+                            states[top] = EXPECT_COLON;
+                        } else {
+                            beginValue();
+                        }
+                        break;
+                }
             } else {
-                column++;
+                if (state == EXPECT_COMMA_OR_END) {
+                    tokenError("Expected ','");
+                }
+                states[top] = EXPECT_COMMA_OR_END;
+                beginValue();
             }
         }
-        return column;
-    }
-    
-    private static int findPreciseErrorStart(String text, int position, String errorMsg) {
-        if (errorMsg.contains("Expected '{'") || errorMsg.contains("Expected '}'")) {
-            return findBraceBoundary(text, position, true);
-        } else if (errorMsg.contains("Expected '['") || errorMsg.contains("Expected ']'")) {
-            return findBracketBoundary(text, position, true);
-        } else if (errorMsg.contains("Expected ':'")) {
-            return findColonBoundary(text, position, true);
-        } else if (errorMsg.contains("Expected ','")) {
-            return findCommaBoundary(text, position, true);
-        } else if (errorMsg.contains("Unterminated string")) {
-            return findStringStart(text, position);
-        }
-        
-        return findTokenBoundary(text, position, true);
-    }
-    
-    private static int findPreciseErrorEnd(String text, int position, String errorMsg) {
-        if (errorMsg.contains("Expected '{'") || errorMsg.contains("Expected '}'")) {
-            return findBraceBoundary(text, position, false);
-        } else if (errorMsg.contains("Expected '['") || errorMsg.contains("Expected ']'")) {
-            return findBracketBoundary(text, position, false);
-        } else if (errorMsg.contains("Expected ':'")) {
-            return findColonBoundary(text, position, false);
-        } else if (errorMsg.contains("Expected ','")) {
-            return findCommaBoundary(text, position, false);
-        } else if (errorMsg.contains("Unterminated string")) {
-            return findStringEnd(text, position);
+
+        private void beginValue() {
+            if (type == BEGIN_OBJECT) {
+                push(OBJECT, EXPECT_NAME_OR_END);
+            } else if (type == BEGIN_ARRAY) {
+                push(ARRAY, EXPECT_VALUE_OR_END);
+            }
         }
-        
-        return findTokenBoundary(text, position, false);
-    }
-    
-    private static int findBraceBoundary(String text, int position, boolean isStart) {
-        if (isStart) {
-            for (int i = position; i >= 0; i--) {
-                if (i == 0 || text.charAt(i) == '{' || text.charAt(i) == '}' || 
-                    text.charAt(i) == '[' || text.charAt(i) == ']' || 
-                    text.charAt(i) == ',' || text.charAt(i) == '\n') {
-                    return i;
+
+        private void onCloseToken() {
+            int kind = type == END_OBJECT ? OBJECT : ARRAY;
+            int top = depth - 1;
+
+            if (kinds[top] != kind) {
+                int match = top - 1;
+                while (match > 0 && kinds[match] != kind) {
+                    match--;
                 }
-            }
-        } else {
-            for (int i = position; i < text.length(); i++) {
-                if (i == text.length() - 1 || text.charAt(i) == '{' || text.charAt(i) == '}' || 
-                    text.charAt(i) == '[' || text.charAt(i) == ']' || 
-                    text.charAt(i) == ',' || text.charAt(i) == '\n') {
-                    return i;
+                structural = true;
+                if (match <= 0) {
+                    tokenError("Unexpected closing bracket");
+                    return;
                 }
-            }
-        }
-        return position;
-    }
-    
-    private static int findBracketBoundary(String text, int position, boolean isStart) {
-        return findBraceBoundary(text, position, isStart);
-    }
-    
-    private static int findColonBoundary(String text, int position, boolean isStart) {
-        if (isStart) {
-            for (int i = position; i >= 0; i--) {
-                if (i == 0 || text.charAt(i) == ':' || text.charAt(i) == '"' || 
-                    text.charAt(i) == ',' || text.charAt(i) == '\n') {
-                    return i;
+                tokenError("Bracket mismatch");
+                while (depth - 1 > match) {
+                    reportUnclosed(depth - 1);
+                    depth--;
                 }
+                depth--;
+                return;
             }
-        } else {
-            for (int i = position; i < text.length(); i++) {
-                if (i == text.length() - 1 || text.charAt(i) == ':' || text.charAt(i) == '"' || 
-                    text.charAt(i) == ',' || text.charAt(i) == '\n') {
-                    return i;
-                }
+
+            int state = states[top];
+            if (state == EXPECT_NAME || (kind == ARRAY && state == EXPECT_VALUE)) {
+                error(commaLine, commaColumn, "Trailing comma", commaOffset, commaOffset + 1);
+            } else if (state == EXPECT_COLON) {
+                tokenError("Expected ':'");
+            } else if (state == EXPECT_VALUE) {
+                tokenError("Expected value");
             }
+            pairCloses[framePairs[top]] = base + tokenStart;
+            depth--;
         }
-        return position;
-    }
-    
-    private static int findCommaBoundary(String text, int position, boolean isStart) {
-        return findColonBoundary(text, position, isStart);
-    }
-    
-    private static int findStringStart(String text, int position) {
-        for (int i = position; i >= 0; i--) {
-            if (text.charAt(i) == '"') {
-                return i;
+
+        private void onColon() {
+            int top = depth - 1;
+            if (kinds[top] == OBJECT && states[top] == EXPECT_COLON) {
+                states[top] = EXPECT_VALUE;
+            } else {
+                tokenError("Unexpected ':'");
             }
         }
-        return position;
-    }
-    
-    private static int findStringEnd(String text, int position) {
-        for (int i = position; i < text.length(); i++) {
-            if (text.charAt(i) == '"' && (i == 0 || text.charAt(i-1) != '\\')) {
-                return i;
+
+        private void onComma() {
+            int top = depth - 1;
+            if (kinds[top] != ROOT && states[top] == EXPECT_COMMA_OR_END) {
+                states[top] = kinds[top] == OBJECT ? EXPECT_NAME : EXPECT_VALUE;
+                commaOffset = tokenStart;
+                commaLine = tokenLine;
+                commaColumn = tokenColumn;
+            } else {
+                tokenError("Unexpected comma");
             }
         }
-        return text.length() - 1;
-    }
-    
-    private static int findTokenBoundary(String text, int position, boolean isStart) {
-        if (isStart) {
-            int start = position;
-            while (start > 0) {
-                char c = text.charAt(start - 1);
-                if (c == '\n' || c == '{' || c == '[' || c == ',' || c == ':' || c == '}' || c == ']') {
-                    break;
-                }
-                start--;
-            }
-            return Math.max(start, 0);
-        } else {
-            int end = position;
-            while (end < text.length() - 1) {
-                char c = text.charAt(end + 1);
-                if (c == '\n' || c == '}' || c == ']' || c == ',' || c == ':' || c == '{' || c == '[') {
-                    break;
-                }
-                end++;
+
+        private void finish() {
+            while (depth > 1) {
+                reportUnclosed(depth - 1);
+                depth--;
             }
-            return Math.min(end, text.length() - 1);
         }
-    }
-    
-    private static void checkManualErrorDetection(String text, List<JSONError> errors) {
-        checkQuotes(text, errors);
-        checkBrackets(text, errors);
-        checkCommas(text, errors);
-    }
-    
-    private static void checkBasicErrors(String text, List<JSONError> errors) {
-        String trimmed = text.trim();
-        if (trimmed.startsWith(",")) {
-            errors.add(new JSONError(1, 1, "Unexpected comma", 0, 0));
+
+        private void reportUnclosed(int frame) {
+            structural = true;
+            String message = kinds[frame] == OBJECT ? "Unclosed curly brace" : "Unclosed square bracket";
+            error(openLines[frame], openColumns[frame], message, openOffsets[frame], openOffsets[frame] + 1);
         }
-        if (trimmed.endsWith(",")) {
-            int line = calculateLineNumber(text, text.length() - 1) + 1;
-            int column = calculateColumnNumber(text, text.length() - 1);
-            errors.add(new JSONError(line, column, "Trailing comma", text.length() - 1, text.length() - 1));
+
+        private void push(int kind, int state) {
+            if (depth == kinds.length) {
+                int capacity = depth * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                states = Arrays.copyOf(states, capacity);
+                openOffsets = Arrays.copyOf(openOffsets, capacity);
+                openLines = Arrays.copyOf(openLines, capacity);
+                openColumns = Arrays.copyOf(openColumns, capacity);
+                framePairs = Arrays.copyOf(framePairs, capacity);
+            }
+            if (kind != ROOT) {
+                if (pairCount == pairOpens.length) {
+                    int capacity = pairCount * 2;
+                    pairOpens = Arrays.copyOf(pairOpens, capacity);
+                    pairCloses = Arrays.copyOf(pairCloses, capacity);
+                    pairParents = Arrays.copyOf(pairParents, capacity);
+                }
+                pairOpens[pairCount] = base + tokenStart;
+                pairCloses[pairCount] = -1;
+                pairParents[pairCount] = depth > 1 ? framePairs[depth - 1] : -1;
+                framePairs[depth] = pairCount++;
+            }
+            kinds[depth] = kind;
+            states[depth] = state;
+            openOffsets[depth] = tokenStart;
+            openLines[depth] = tokenLine;
+            openColumns[depth] = tokenColumn;
+            depth++;
         }
-    }
-    
-    private static void checkStructuralErrors(String text, List<JSONError> errors) {
-        Stack<Character> stack = new Stack<>();
-        Stack<Integer> positions = new Stack<>();
-        Map<Character, Character> pairs = new HashMap<>();
-        pairs.put('}', '{');
-        pairs.put(']', '[');
-        
-        boolean inString = false;
-        boolean escaped = false;
-        
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-            
-            if (!inString) {
-                if (c == '{' || c == '[') {
-                    stack.push(c);
-                    positions.push(i);
-                } else if (c == '}' || c == ']') {
-                    if (stack.isEmpty()) {
-                        int line = calculateLineNumber(text, i) + 1;
-                        int column = calculateColumnNumber(text, i);
-                        errors.add(new JSONError(line, column, "Unexpected closing bracket", i, i));
-                    } else if (stack.peek() != pairs.get(c)) {
-                        int line = calculateLineNumber(text, i) + 1;
-                        int column = calculateColumnNumber(text, i);
-                        errors.add(new JSONError(line, column, "Bracket mismatch", i, i));
+
+        private void nextToken() {
+            skipWhitespaceAndComments();
+            tokenStart = pos;
+            tokenLine = line;
+            tokenColumn = pos - lineStart + 1;
+
+            if (pos >= length) {
+                type = EOF;
+                tokenEnd = pos;
+                return;
+            }
+
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                    type = BEGIN_OBJECT;
+                    pos++;
+                    break;
+                case '}':
+                    type = END_OBJECT;
+                    pos++;
+                    break;
+                case '[':
+                    type = BEGIN_ARRAY;
+                    pos++;
+                    break;
+                case ']':
+                    type = END_ARRAY;
+                    pos++;
+                    break;
+                case ':':
+                    type = COLON;
+                    pos++;
+                    break;
+                case '=':
+                    type = COLON;
+                    pos++;
+                    if (pos < length && text.charAt(pos) == '>') pos++;
+                    break;
+                case ',':
+                case ';':
+                    type = COMMA;
+                    pos++;
+                    break;
+                case '"':
+                case '\'':
+                    type = STRING;
+                    readString(c);
+                    break;
+                default:
+                    if (isLiteralChar(c)) {
+                        type = LITERAL;
+                        while (pos < length && isLiteralChar(text.charAt(pos))) pos++;
                     } else {
-                        stack.pop();
-                        positions.pop();
+                        type = INVALID;
+                        pos++;
                     }
-                }
-            }
-            
-            if (c == '"' && !escaped) {
-                inString = !inString;
+                    break;
             }
-            escaped = (c == '\\' && !escaped);
-        }
-        
-        while (!stack.isEmpty()) {
-            int pos = positions.pop();
-            char bracket = stack.pop();
-            String msg = (bracket == '{') ? "Unclosed curly brace" : "Unclosed square bracket";
-            int line = calculateLineNumber(text, pos) + 1;
-            int column = calculateColumnNumber(text, pos);
-            errors.add(new JSONError(line, column, msg, pos, pos));
+            tokenEnd = pos;
         }
-    }
-    
-    private static void checkQuotes(String text, List<JSONError> errors) {
-        boolean inString = false;
-        int quoteStart = -1;
-        boolean escaped = false;
-        
-        for (int i = 0; i < text.length(); i++) {
-            char c = text.charAt(i);
-            
-            if (c == '\\' && !escaped) {
-                escaped = true;
-                continue;
+
+        private void readString(char quote) {
+            pos++;
+            while (pos < length) {
+                char c = text.charAt(pos);
+                if (c == quote) {
+                    pos++;
+                    return;
+                }
+                if (c == '\n') {
+                    // Raw line breaks are not allowed in strings; report and resume on the next line
+                    error(tokenLine, tokenColumn, "Unterminated string", tokenStart, pos);
+                    return;
+                }
+                if (c == '\\') {
+                    pos++;
+                    if (pos >= length) break;
+                    char escaped = text.charAt(pos);
+                    if (escaped == 'u') {
+                        int hexEnd = pos + 1;
+                        while (hexEnd < length && hexEnd < pos + 5 && isHexDigit(text.charAt(hexEnd))) hexEnd++;
+                        if (hexEnd != pos + 5) {
+                            error(line, pos - lineStart, "Malformed Unicode escape", pos - 1, hexEnd);
+                        }
+                        pos = hexEnd;
+                        continue;
+                    }
+                    if (escaped == '\n') {
+                        line++;
+                        lineStart = pos + 1;
+                    }
+                }
+                pos++;
             }
-            
-            if (c == '"' && !escaped) {
-                if (!inString) {
-                    inString = true;
-                    quoteStart = i;
+            error(tokenLine, tokenColumn, "Unterminated string", tokenStart, pos);
+        }
+
+        private void skipWhitespaceAndComments() {
+            while (pos < length) {
+                char c = text.charAt(pos);
+                if (c == '\n') {
+                    pos++;
+                    line++;
+                    lineStart = pos;
+                } else if (c == ' ' || c == '\t' || c == '\r' || c == '\uFEFF') {
+                    pos++;
+                } else if (c == '#' || (c == '/' && pos + 1 < length && text.charAt(pos + 1) == '/')) {
+                    while (pos < length && text.charAt(pos) != '\n') pos++;
+                } else if (c == '/' && pos + 1 < length && text.charAt(pos + 1) == '*') {
+                    skipBlockComment();
                 } else {
-                    inString = false;
-                    quoteStart = -1;
+                    return;
                 }
             }
-            
-            if (escaped) {
-                escaped = false;
+        }
+
+        private void skipBlockComment() {
+            int start = pos;
+            int startLine = line;
+            int startColumn = pos - lineStart + 1;
+            pos += 2;
+            while (pos < length) {
+                char c = text.charAt(pos);
+                if (c == '*' && pos + 1 < length && text.charAt(pos + 1) == '/') {
+                    pos += 2;
+                    return;
+                }
+                if (c == '\n') {
+                    line++;
+                    lineStart = pos + 1;
+                }
+                pos++;
             }
+            structural = true;
+            error(startLine, startColumn, "Unterminated comment", start, start + 2);
         }
-        
-        if (inString && quoteStart != -1) {
-            int line = calculateLineNumber(text, quoteStart) + 1;
-            int column = calculateColumnNumber(text, quoteStart);
-            errors.add(new JSONError(line, column, "Unterminated string", quoteStart, text.length() - 1));
+
+        private void tokenError(String message) {
+            error(tokenLine, tokenColumn, message, tokenStart, Math.max(tokenEnd, tokenStart + 1));
+        }
+
+        private void error(int line, int column, String message, int start, int end) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(new JSONError(line, column, message, base + start, base + Math.min(end, length)));
+            }
+        }
+
+        private static boolean isLiteralChar(char c) {
+            switch (c) {
+                case '{': case '}': case '[': case ']': case ':': case ',': case ';': case '=':
+                case '"': case '\'': case '/': case '#': case '\\':
+                case ' ': case '\t': case '\r': case '\n':
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
+        private static boolean isHexDigit(char c) {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
         }
     }
-    
-    private static void checkBrackets(String text, List<JSONError> errors) {
-    }
-    
-    private static void checkCommas(String text, List<JSONError> errors) {
-    }
-    
-//    private static int countLines(String text, int start, int end) {
-//        int lines = 0;
-//        for (int i = start; i < end && i < text.length(); i++) {
-//            if (text.charAt(i) == '\n') {
-//                lines++;
-//            }
-//        }
-//        return lines;
-//    }
 }
@@ -0,0 +1,287 @@
+package io.github.zhengzhengyiyi.util;
+
+import io.github.zhengzhengyiyi.util.document.MappedTextFile;
+import net.minecraft.client.Minecraft;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Reads text files for the editor without blocking the render thread.
+ *
+ * A file is read from disk once, into one byte array, and decoded once. The
+ * encoding is worked out from the bytes: a byte order mark decides it, otherwise
+ * the file is UTF-8 if its bytes are valid UTF-8, otherwise it is tried in the
+ * platform charset and finally read as ISO-8859-1, which accepts any bytes. The
+ * encoding is handed over with the text, so the file can be saved in it again.
+ *
+ * Large files are read in two steps: the first lines are decoded and handed over
+ * as a preview as soon as they are in, so the first screenful shows while the
+ * rest is still being read. Files above {@link #MAPPED_THRESHOLD} are not read at
+ * all but mapped into memory as a {@link MappedTextFile}, for viewing only.
+ */
+public final class TextFileLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextFileLoader.class);
+    // Files larger than this get a preview before the whole file is decoded
+    public static final int PREVIEW_THRESHOLD = 512 * 1024;
+    private static final int PREVIEW_BYTES = 64 * 1024;
+    // Reads UTF-16 marked as little-endian and writes it back with the same mark,
+    // where UTF_16 would write it big-endian
+    private static final Charset UTF_16LE_BOM = Charset.forName("x-UTF-16LE-BOM");
+    private static final int PREVIEW_LINES = 200;
+    // Files larger than this are mapped and viewed read-only instead of loaded into the editor
+    public static final long MAPPED_THRESHOLD = 16L * 1024 * 1024;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Config-Editor-File-Loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Receives the result of {@link #load(Path, Listener)} on the client thread.
+     */
+    public interface Listener {
+        /**
+         * Called with the first lines of a large file before the rest is ready.
+         */
+        default void onPreview(String text) {
+        }
+
+        void onLoaded(String text, Charset charset);
+
+        /**
+         * Called instead of {@link #onLoaded} for a file above {@link #MAPPED_THRESHOLD}.
+         * The listener owns the mapped file and has to close it.
+         */
+        void onMapped(MappedTextFile file);
+
+        void onFailed(IOException error);
+    }
+
+    private TextFileLoader() {
+    }
+
+    /**
+     * Reads and decodes a file in the background.
+     * @param file the file to read
+     * @param listener receives the preview, the text or the error on the client thread
+     * @return the task, which can be cancelled if the result is no longer wanted
+     */
+    public static Future<?> load(Path file, Listener listener) {
+        return EXECUTOR.submit(() -> {
+            try {
+                if (Files.size(file) > MAPPED_THRESHOLD) {
+                    MappedTextFile mapped = map(file);
+                    if (mapped != null) {
+                        Minecraft.getInstance().execute(() -> listener.onMapped(mapped));
+                        return;
+                    }
+                }
+                byte[] bytes = readAll(file, preview -> Minecraft.getInstance().execute(() -> listener.onPreview(preview)));
+                if (Thread.currentThread().isInterrupted()) return;
+                Decoded decoded = decode(bytes);
+                Minecraft.getInstance().execute(() -> listener.onLoaded(decoded.text, decoded.charset));
+            } catch (IOException e) {
+                Minecraft.getInstance().execute(() -> listener.onFailed(e));
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to load {}", file, e);
+                Minecraft.getInstance().execute(() -> listener.onFailed(new IOException(e)));
+            }
+        });
+    }
+
+    /**
+     * Reads and decodes a file on the calling thread, in the encoding {@link #load}
+     * would pick, so offsets into the text match the editor's.
+     */
+    public static String read(Path file) throws IOException {
+        return decode(readAll(file, null)).text;
+    }
+
+    /**
+     * Maps a file in the encoding its first bytes suggest, or returns null if that
+     * encoding cannot be viewed mapped.
+     */
+    private static MappedTextFile map(Path file) throws IOException {
+        byte[] prefix;
+        try (InputStream in = Files.newInputStream(file)) {
+            prefix = in.readNBytes(PREVIEW_BYTES);
+        }
+        Charset charset = detectCharset(prefix, prefix.length, true);
+        if (charset == StandardCharsets.UTF_16 || charset == UTF_16LE_BOM) {
+            // Line breaks in UTF-16 are two bytes, which the mapped view does not handle
+            return null;
+        }
+        return MappedTextFile.open(file, charset == null ? StandardCharsets.ISO_8859_1 : charset);
+    }
+
+    private static final class Decoded {
+        final String text;
+        final Charset charset;
+
+        Decoded(String text, Charset charset) {
+            this.text = text;
+            this.charset = charset;
+        }
+    }
+
+    private static Decoded decode(byte[] bytes) {
+        Charset charset = detectCharset(bytes, bytes.length, false);
+        if (charset == null) {
+            // Checking the platform charset already decoded the text, so keep it
+            Charset platform = Charset.defaultCharset();
+            String text = platform.equals(StandardCharsets.UTF_8) ? null : decodeStrict(bytes, platform);
+            if (text != null) {
+                return new Decoded(text, platform);
+            }
+            charset = StandardCharsets.ISO_8859_1;
+        }
+        return new Decoded(new String(bytes, charset), charset);
+    }
+
+    private static byte[] readAll(Path file, Consumer<String> previewConsumer) throws IOException {
+        long size = Files.size(file);
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("File is too large to edit: " + file);
+        }
+        byte[] bytes = new byte[(int) size];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            if (previewConsumer != null && size > PREVIEW_THRESHOLD) {
+                read = in.readNBytes(bytes, 0, PREVIEW_BYTES);
+                String preview = decodePreview(bytes, read);
+                if (preview != null) {
+                    previewConsumer.accept(preview);
+                }
+                read += in.readNBytes(bytes, read, bytes.length - read);
+            } else {
+                read = in.readNBytes(bytes, 0, bytes.length);
+            }
+            // The file may have changed size since it was measured
+            if (read == bytes.length) {
+                byte[] rest = in.readAllBytes();
+                if (rest.length > 0) {
+                    bytes = Arrays.copyOf(bytes, read + rest.length);
+                    System.arraycopy(rest, 0, bytes, read, rest.length);
+                    read = bytes.length;
+                }
+            }
+        }
+        return read == bytes.length ? bytes : Arrays.copyOf(bytes, read);
+    }
+
+    /**
+     * Decodes the first lines of a file, or returns null if the encoding cannot be
+     * told from them.
+     */
+    private static String decodePreview(byte[] bytes, int length) {
+        Charset charset = detectCharset(bytes, length, true);
+        if (charset != StandardCharsets.UTF_8) {
+            return null;
+        }
+        // Cut at a line break, which is never inside a multi-byte sequence
+        int lines = 0;
+        int end = 0;
+        for (int i = 0; i < length && lines < PREVIEW_LINES; i++) {
+            if (bytes[i] == '\n') {
+                lines++;
+                end = i + 1;
+            }
+        }
+        return end == 0 ? null : new String(bytes, 0, end, charset);
+    }
+
+    /**
+     * Works out the encoding of some bytes from their byte order mark or from them
+     * being valid UTF-8.
+     * @param length how many of the bytes to look at
+     * @param truncated whether the bytes go on past {@code length}, so a sequence cut off there is still valid
+     * @return the encoding, or null if the bytes are neither marked nor UTF-8
+     */
+    static Charset detectCharset(byte[] bytes, int length, boolean truncated) {
+        if (length >= 2) {
+            int first = bytes[0] & 0xFF;
+            int second = bytes[1] & 0xFF;
+            if (first == 0xFE && second == 0xFF) {
+                return StandardCharsets.UTF_16;
+            }
+            if (first == 0xFF && second == 0xFE) {
+                return UTF_16LE_BOM;
+            }
+        }
+        return isValidUtf8(bytes, length, truncated) ? StandardCharsets.UTF_8 : null;
+    }
+
+    private static String decodeStrict(byte[] bytes, Charset charset) {
+        try {
+            return charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that bytes are well-formed UTF-8: no overlong forms, no surrogates
+     * and nothing above U+10FFFF.
+     * @param truncated whether the bytes may end in the middle of a sequence
+     */
+    static boolean isValidUtf8(byte[] bytes, int length, boolean truncated) {
+        int i = 0;
+        while (i < length) {
+            int b = bytes[i];
+            if (b >= 0) {
+                i++;
+                continue;
+            }
+            b &= 0xFF;
+            int count;
+            int min;
+            if (b >= 0xC2 && b <= 0xDF) {
+                count = 1;
+                min = 0x80;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                count = 2;
+                min = 0x800;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                count = 3;
+                min = 0x10000;
+            } else {
+                return false;
+            }
+            if (i + count >= length) {
+                // The sequence runs past the bytes looked at
+                return truncated;
+            }
+            int codePoint = b & (0x3F >> count);
+            for (int j = 1; j <= count; j++) {
+                int next = bytes[i + j] & 0xFF;
+                if ((next & 0xC0) != 0x80) return false;
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            if (codePoint < min || codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+                return false;
+            }
+            i += count + 1;
+        }
+        return true;
+    }
+}
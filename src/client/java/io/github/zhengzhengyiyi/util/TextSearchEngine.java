@@ -1,55 +1,191 @@
 package io.github.zhengzhengyiyi.util;
 
+import io.github.zhengzhengyiyi.util.document.LineIndex;
+import io.github.zhengzhengyiyi.util.document.PieceTable;
+import io.github.zhengzhengyiyi.util.highlighter.HighLighter;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.GuiGraphicsExtractor;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+/**
+ * Finds occurrences of a query in the editor content.
+ *
+ * Searches run on a background thread. Each query gets its own task, which is
+ * cancelled as soon as another query starts, and which gives up after
+ * {@link #SEARCH_TIME_BUDGET_MS} so a pathological pattern cannot keep the worker
+ * busy. The scan starts at the given offset (usually the top of the viewport) and
+ * wraps around, and matches are handed to the client thread in batches while the
+ * task runs, so the first results show up without waiting for the whole file.
+ *
+ * In multi-pattern mode the query is a comma-separated list of literal terms. All
+ * of them are found in one pass with an {@link AhoCorasick} automaton, and each
+ * term is highlighted in its own color.
+ */
 public class TextSearchEngine {
+    private static final long SEARCH_TIME_BUDGET_MS = 2000;
+    // Matches found by the worker are handed over at least this often
+    private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+    // Characters the multi-pattern scan reads between cancellation checks
+    private static final int SCAN_BLOCK = 1 << 16;
+    // Marker colors for the terms of a multi-pattern search, without alpha
+    private static final int[] PATTERN_COLORS = {
+        0xFFFF00, 0x00E5FF, 0xFF6EC7, 0x7CFC00, 0xFFA500, 0xB388FF,
+        0xFF5252, 0x40C4FF, 0xFFD54F, 0x69F0AE, 0xF48FB1, 0xA1887F
+    };
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Config-Editor-Search");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
     private String searchText = "";
     private boolean caseSensitive = false;
     private boolean useRegex = false;
-    public List<Integer> matchPositions = new ArrayList<>();
+    private boolean multiPattern = false;
+    private final IntList matchPositions = new IntList();
+    // Term of each match in multi-pattern mode, parallel to matchPositions; empty otherwise
+    private final IntList matchPatterns = new IntList();
+    private List<String> patterns = List.of();
     private int currentMatchIndex = -1;
-    private int scrollOffset = 0;
+    // Content and options the current matches were found with
+    private String searchedContent = null;
+    private boolean searchedCaseSensitive = false;
+
+    private SearchTask task = null;
+    // Matches before the start offset, which arrive after the others but sort first
+    private int wrappedMatches = 0;
+    private boolean complete = false;
+    private boolean timedOut = false;
     
-    public void search(String text, String content) {
-        this.searchText = text;
-        this.matchPositions.clear();
+    /**
+     * Starts looking for every occurrence of the query in the content.
+     *
+     * If the content is the same string as in the previous, completed search and
+     * the query only grew, the new matches are a subset of the old ones: those are
+     * checked in place right away instead of scanning the whole content again.
+     * Otherwise the content is scanned in the background, beginning at
+     * {@code startOffset}. Case-insensitive matching compares the candidate
+     * regions only; the content is never copied.
+     *
+     * @param text the query
+     * @param content the text to search in
+     * @param startOffset where to start scanning, so that matches there arrive first
+     * @param onProgress called on the client thread whenever new matches arrived or the search ended
+     */
+    public void search(String text, String content, int startOffset, Runnable onProgress) {
+        boolean refine = complete && !useRegex && !multiPattern && content != null && content == searchedContent
+                && caseSensitive == searchedCaseSensitive && !searchText.isEmpty()
+                && text != null && text.length() > searchText.length()
+                && text.regionMatches(!caseSensitive, 0, searchText, 0, searchText.length());
+        
+        cancel();
+        this.searchText = text == null ? "" : text;
+        this.searchedContent = content;
+        this.searchedCaseSensitive = caseSensitive;
         this.currentMatchIndex = -1;
         
-        if (text == null || text.isEmpty() || content == null || content.isEmpty()) {
+        if (refine) {
+            int length = text.length();
+            int limit = content.length() - length;
+            matchPositions.retainIf(position -> position <= limit
+                    && content.regionMatches(!caseSensitive, position, text, 0, length));
+            complete = true;
+            selectFirstMatchFrom(startOffset);
+            onProgress.run();
             return;
         }
         
-        String searchPattern = caseSensitive ? text : text.toLowerCase();
-        String searchContent = caseSensitive ? content : content.toLowerCase();
+        matchPositions.clear();
+        matchPatterns.clear();
+        wrappedMatches = 0;
+        patterns = multiPattern ? parsePatterns(searchText) : List.of();
+        if (searchText.isEmpty() || content == null || content.isEmpty() || (multiPattern && patterns.isEmpty())) {
+            searchedContent = null;
+            complete = true;
+            return;
+        }
         
-        if (useRegex) {
-            try {
-                Pattern pattern = Pattern.compile(searchPattern, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
-                java.util.regex.Matcher matcher = pattern.matcher(content);
-                while (matcher.find()) {
-                    matchPositions.add(matcher.start());
-                }
-            } catch (PatternSyntaxException e) {
-                matchPositions.clear();
+        task = new SearchTask(this, text, multiPattern ? patterns : null, content, caseSensitive, useRegex,
+                Math.max(0, Math.min(startOffset, content.length())), onProgress);
+        EXECUTOR.execute(task);
+    }
+    
+    /**
+     * Whether a background search is still producing matches.
+     */
+    public boolean isRunning() {
+        return task != null;
+    }
+    
+    /**
+     * Whether the last search ran out of time before it had scanned everything.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+    
+    private void cancel() {
+        if (task != null) {
+            task.cancelled = true;
+            task = null;
+        }
+        complete = false;
+        timedOut = false;
+    }
+    
+    private void selectFirstMatchFrom(int offset) {
+        if (matchPositions.isEmpty()) {
+            currentMatchIndex = -1;
+        } else {
+            int index = matchPositions.lowerBound(offset);
+            currentMatchIndex = index < matchPositions.size() ? index : 0;
+        }
+    }
+    
+    /**
+     * Takes a batch of matches from the worker, on the client thread.
+     */
+    private void accept(SearchTask from, int[] matches, int[] matchedPatterns, boolean wrapped,
+                        boolean finished, boolean ranOutOfTime) {
+        if (from != task) return;
+        
+        if (wrapped) {
+            matchPositions.insert(wrappedMatches, matches);
+            if (matchedPatterns != null) {
+                matchPatterns.insert(wrappedMatches, matchedPatterns);
+            }
+            if (currentMatchIndex >= wrappedMatches) {
+                currentMatchIndex += matches.length;
             }
+            wrappedMatches += matches.length;
         } else {
-            int index = 0;
-            while (index < searchContent.length()) {
-                int foundIndex = searchContent.indexOf(searchPattern, index);
-                if (foundIndex == -1) break;
-                matchPositions.add(foundIndex);
-                index = foundIndex + 1;
+            matchPositions.addAll(matches);
+            if (matchedPatterns != null) {
+                matchPatterns.addAll(matchedPatterns);
             }
         }
+        if (currentMatchIndex < 0 && !matchPositions.isEmpty()) {
+            currentMatchIndex = wrapped ? 0 : wrappedMatches;
+        }
         
-        if (!matchPositions.isEmpty()) {
-            currentMatchIndex = 0;
+        if (finished) {
+            task = null;
+            complete = !ranOutOfTime;
+            timedOut = ranOutOfTime;
         }
+        from.onProgress.run();
     }
     
     public boolean hasMatches() {
@@ -64,6 +200,10 @@ public class TextSearchEngine {
         return currentMatchIndex;
     }
     
+    public int getMatchPosition(int index) {
+        return matchPositions.get(index);
+    }
+    
     public Integer getCurrentMatchPosition() {
         if (currentMatchIndex >= 0 && currentMatchIndex < matchPositions.size()) {
             return matchPositions.get(currentMatchIndex);
@@ -91,49 +231,340 @@ public class TextSearchEngine {
         this.useRegex = useRegex;
     }
     
+    /**
+     * Switches between searching for the query as one term and searching for each
+     * of its comma-separated terms at once. Takes effect on the next search.
+     */
+    public void setMultiPattern(boolean multiPattern) {
+        this.multiPattern = multiPattern;
+    }
+    
+    public boolean isMultiPattern() {
+        return multiPattern;
+    }
+    
+    /**
+     * Gets the distinct terms of the last multi-pattern search, in query order.
+     */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+    
+    /**
+     * Gets the marker color of a term of a multi-pattern search.
+     * @param pattern the index of the term in {@link #getPatterns()}
+     * @param current whether the color is for the current match, which is drawn more opaque
+     */
+    public static int getPatternColor(int pattern, boolean current) {
+        return (current ? 0xCC000000 : 0x66000000) | PATTERN_COLORS[pattern % PATTERN_COLORS.length];
+    }
+    
+    private static List<String> parsePatterns(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : query.split(",")) {
+            term = term.trim();
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return List.copyOf(terms);
+    }
+    
     public void clear() {
+        cancel();
         searchText = "";
+        searchedContent = null;
+        wrappedMatches = 0;
         matchPositions.clear();
+        matchPatterns.clear();
         currentMatchIndex = -1;
     }
     
-    public void renderHighlights(GuiGraphicsExtractor context, Font font, String content, int x, int y, int lineHeight, int visibleLines) {
-        if (matchPositions.isEmpty()) return;
+    /**
+     * Draws a marker under every match on the given lines.
+     *
+     * The first match in view is found by binary search and drawing stops at the
+     * first match past the last line, so the cost depends on the matches in view,
+     * not on the total number of matches. Positions inside a line come from the
+     * highlighter's cached prefix widths.
+     *
+     * @param firstLine the first visible line
+     * @param lastLine the line after the last visible one
+     * @param x the screen x of the start of a line
+     * @param y the screen y of {@code firstLine}
+     */
+    public void renderHighlights(GuiGraphicsExtractor context, Font font, HighLighter highLighter, PieceTable document,
+                                 int firstLine, int lastLine, int x, int y, int lineHeight) {
+        if (matchPositions.isEmpty() || firstLine >= lastLine) return;
         
-        String[] lines = content.split("\n", -1);
-        int currentLineStart = 0;
+        LineIndex lines = document.getLineIndex();
+        int length = searchText.length();
+        int line = -1;
+        String text = "";
+        int lineStart = 0;
+        int lineEnd = -1;
         
-        for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
-            if (lineIndex >= scrollOffset && lineIndex < scrollOffset + visibleLines) {
-                String line = lines[lineIndex];
-                int yPos = y + (lineIndex - scrollOffset) * lineHeight;
-                
-                for (int matchPos : matchPositions) {
-                    if (matchPos >= currentLineStart && matchPos < currentLineStart + line.length()) {
-                        int matchInLine = matchPos - currentLineStart;
-                        String beforeMatch = line.substring(0, matchInLine);
-                        String matchText = line.substring(matchInLine, Math.min(matchInLine + searchText.length(), line.length()));
-                        
-                        @SuppressWarnings("null")
-                        int xStart = x + font.width(beforeMatch);
-                        @SuppressWarnings("null")
-                        int highlightWidth = font.width(matchText);
-                        
-                        if (matchPos == getCurrentMatchPosition()) {
-                            context.fill(xStart, yPos, xStart + highlightWidth, yPos + lineHeight, 0x66FFD700);
-                        } else {
-                            context.fill(xStart, yPos, xStart + highlightWidth, yPos + lineHeight, 0x66FFFF00);
-                        }
-                    }
+        for (int i = matchPositions.lowerBound(lines.getLineStart(firstLine)); i < matchPositions.size(); i++) {
+            int position = matchPositions.get(i);
+            if (position >= lineEnd) {
+                line = lines.getLineOfOffset(position);
+                if (line >= lastLine) break;
+                text = document.getLine(line);
+                lineStart = lines.getLineStart(line);
+                lineEnd = lineStart + text.length();
+                if (position >= lineEnd) continue;
+            }
+            
+            int matchInLine = position - lineStart;
+            int pattern = multiPattern ? matchPatterns.get(i) : -1;
+            int matchLength = pattern >= 0 ? patterns.get(pattern).length() : length;
+            int matchEndInLine = Math.min(matchInLine + matchLength, text.length());
+            int xStart = x + highLighter.getTextWidthUpToChar(font, text, matchInLine);
+            int xEnd = x + highLighter.getTextWidthUpToChar(font, text, matchEndInLine);
+            int yStart = y + (line - firstLine) * lineHeight + font.lineHeight - 1;
+            int color = pattern >= 0 ? getPatternColor(pattern, i == currentMatchIndex)
+                    : i == currentMatchIndex ? 0x66FFD700 : 0x66FFFF00;
+            
+            context.fill(xStart, yStart, xEnd, yStart + 2, color);
+        }
+    }
+
+    /**
+     * One search on the worker thread. Setting {@link #cancelled} stops it at the
+     * next check, which also happens while a regex is matching.
+     */
+    private static final class SearchTask implements Runnable {
+        private final TextSearchEngine engine;
+        private final String query;
+        private final List<String> patterns;
+        private final String content;
+        private final boolean caseSensitive;
+        private final boolean regex;
+        private final int startOffset;
+        private final Runnable onProgress;
+        volatile boolean cancelled = false;
+
+        private final IntList pending = new IntList();
+        private final IntList pendingPatterns = new IntList();
+        // Multi-pattern matches may arrive out of start order; only those starting before this are final
+        private int settledBefore = Integer.MAX_VALUE;
+        private boolean wrapped = false;
+        private long deadline;
+        private long lastPublish;
+
+        SearchTask(TextSearchEngine engine, String query, List<String> patterns, String content,
+                   boolean caseSensitive, boolean regex, int startOffset, Runnable onProgress) {
+            this.engine = engine;
+            this.query = query;
+            this.patterns = patterns;
+            this.content = content;
+            this.caseSensitive = caseSensitive;
+            this.regex = regex;
+            this.startOffset = startOffset;
+            this.onProgress = onProgress;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            lastPublish = System.nanoTime();
+            deadline = lastPublish + TimeUnit.MILLISECONDS.toNanos(SEARCH_TIME_BUDGET_MS);
+            try {
+                if (patterns != null) {
+                    findAll();
+                } else if (regex) {
+                    findPattern();
+                } else {
+                    find(startOffset, content.length());
+                    publish(false, false);
+                    wrapped = true;
+                    find(0, startOffset);
+                }
+                publish(true, false);
+            } catch (PatternSyntaxException e) {
+                pending.clear();
+                publish(true, false);
+            } catch (SearchStoppedException e) {
+                if (!cancelled) {
+                    publish(true, true);
                 }
             }
-            String line = lines[lineIndex];
+        }
+
+        /**
+         * Finds the matches that start between {@code from} (inclusive) and {@code to} (exclusive).
+         */
+        private void find(int from, int to) {
+            if (caseSensitive) {
+                int index = content.indexOf(query, from);
+                while (index != -1 && index < to) {
+                    found(index);
+                    index = content.indexOf(query, index + 1);
+                }
+                return;
+            }
+            
+            int length = query.length();
+            char firstUpper = Character.toUpperCase(query.charAt(0));
+            char firstLower = Character.toLowerCase(firstUpper);
+            int limit = Math.min(to - 1, content.length() - length);
+            
+            for (int i = from; i <= limit; i++) {
+                if ((i & 0xFFFF) == 0) checkpoint();
+                char c = content.charAt(i);
+                // Same first-character test as regionMatches, before comparing the whole region
+                if (c != firstUpper && c != firstLower) {
+                    char upper = Character.toUpperCase(c);
+                    if (upper != firstUpper && Character.toLowerCase(upper) != firstLower) continue;
+                }
+                if (content.regionMatches(true, i, query, 0, length)) {
+                    found(i);
+                }
+            }
+        }
+
+        private void findPattern() {
+            Pattern pattern = Pattern.compile(query, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+            Matcher matcher = pattern.matcher(new CheckedCharSequence(content, this));
+            matcher.useTransparentBounds(true).useAnchoringBounds(false);
             
-            currentLineStart += line.length() + 1;
+            matcher.region(startOffset, content.length());
+            while (matcher.find()) {
+                found(matcher.start());
+            }
+            publish(false, false);
+            wrapped = true;
+            matcher.region(0, content.length());
+            while (matcher.find() && matcher.start() < startOffset) {
+                found(matcher.start());
+            }
+        }
+
+        /**
+         * Finds every term of a multi-pattern search in one pass per phase.
+         */
+        private void findAll() {
+            AhoCorasick automaton = new AhoCorasick(patterns, caseSensitive);
+            int overlap = automaton.getMaxPatternLength() - 1;
+            
+            scanAll(automaton, startOffset, content.length(), Integer.MAX_VALUE, overlap);
+            publish(false, false);
+            wrapped = true;
+            scanAll(automaton, 0, Math.min(content.length(), startOffset + overlap), startOffset, overlap);
+        }
+
+        private void scanAll(AhoCorasick automaton, int from, int to, int startLimit, int overlap) {
+            AhoCorasick.MatchListener listener = (start, pattern) -> {
+                if (start < startLimit) {
+                    pending.add(start);
+                    pendingPatterns.add(pattern);
+                }
+            };
+            int state = 0;
+            for (int block = from; block < to; block += SCAN_BLOCK) {
+                int end = Math.min(to, block + SCAN_BLOCK);
+                state = automaton.scan(content, block, end, state, listener);
+                // A match ending later can start at most overlap characters before the end of this block
+                settledBefore = end - overlap;
+                checkpoint();
+            }
+            settledBefore = Integer.MAX_VALUE;
+        }
+
+        private void found(int position) {
+            pending.add(position);
+            if ((pending.size() & 0xFF) == 0) checkpoint();
+        }
+
+        void checkpoint() {
+            if (cancelled) throw SearchStoppedException.INSTANCE;
+            long now = System.nanoTime();
+            if (now > deadline) throw SearchStoppedException.INSTANCE;
+            if (now - lastPublish > PUBLISH_INTERVAL_NANOS && !pending.isEmpty()) {
+                publish(false, false);
+            }
+        }
+
+        private void publish(boolean finished, boolean ranOutOfTime) {
+            if (!finished && pending.isEmpty()) return;
+            int[] matches;
+            int[] matchedPatterns = null;
+            if (patterns == null) {
+                matches = pending.toArray();
+                pending.clear();
+            } else {
+                // Sort by start, then hand over the settled prefix and keep the rest
+                long[] packed = new long[pending.size()];
+                for (int i = 0; i < packed.length; i++) {
+                    packed[i] = (long) pending.get(i) << 32 | pendingPatterns.get(i);
+                }
+                Arrays.sort(packed);
+                int settled = 0;
+                while (settled < packed.length && (finished || (int) (packed[settled] >>> 32) < settledBefore)) {
+                    settled++;
+                }
+                matches = new int[settled];
+                matchedPatterns = new int[settled];
+                for (int i = 0; i < settled; i++) {
+                    matches[i] = (int) (packed[i] >>> 32);
+                    matchedPatterns[i] = (int) packed[i];
+                }
+                pending.clear();
+                pendingPatterns.clear();
+                for (int i = settled; i < packed.length; i++) {
+                    pending.add((int) (packed[i] >>> 32));
+                    pendingPatterns.add((int) packed[i]);
+                }
+            }
+            boolean wrappedMatches = wrapped;
+            int[] patternsOfMatches = matchedPatterns;
+            lastPublish = System.nanoTime();
+            Minecraft.getInstance().execute(() -> engine.accept(this, matches, patternsOfMatches, wrappedMatches,
+                    finished, ranOutOfTime));
         }
     }
-    
-    public void setScrollOffset(int scrollOffset) {
-        this.scrollOffset = scrollOffset;
+
+    /**
+     * Lets the worker check for cancellation while {@link Matcher} reads the content,
+     * since a single {@code find()} can take arbitrarily long.
+     */
+    private static final class CheckedCharSequence implements CharSequence {
+        private final String content;
+        private final SearchTask task;
+        private int reads = 0;
+
+        CheckedCharSequence(String content, SearchTask task) {
+            this.content = content;
+            this.task = task;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFFF) == 0) task.checkpoint();
+            return content.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return content.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return content.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return content;
+        }
+    }
+
+    private static final class SearchStoppedException extends RuntimeException {
+        static final SearchStoppedException INSTANCE = new SearchStoppedException();
+
+        private SearchStoppedException() {
+            super(null, null, false, false);
+        }
     }
 }
@@ -0,0 +1,37 @@
+package io.github.zhengzhengyiyi.util.document;
+
+/**
+ * Receives change notifications from a {@link PieceTable}.
+ *
+ * Per-line caches (widths, tokens, lexer state) implement this to update only
+ * the lines touched by an edit instead of rebuilding everything.
+ */
+public interface DocumentListener {
+
+    /**
+     * Called after an edit.
+     *
+     * Before the edit, lines {@code firstLine} to {@code firstLine + removedLines}
+     * (inclusive) were affected. After the edit, lines {@code firstLine} to
+     * {@code firstLine + addedLines} (inclusive) hold the new content. Every line
+     * after that range is unchanged but has moved by {@code addedLines - removedLines}.
+     *
+     * @param firstLine the first line touched by the edit
+     * @param removedLines the number of line breaks removed by the edit
+     * @param addedLines the number of line breaks added by the edit
+     */
+    void onLinesChanged(int firstLine, int removedLines, int addedLines);
+
+    /**
+     * Called after an edit, with the character range it replaced.
+     *
+     * The characters from {@code offset} to {@code offset + removedLength} were
+     * replaced by {@code insertedLength} new characters.
+     *
+     * @param offset the offset of the edit
+     * @param removedLength the number of characters removed
+     * @param insertedLength the number of characters inserted
+     */
+    default void onTextEdited(int offset, int removedLength, int insertedLength) {
+    }
+}
@@ -0,0 +1,209 @@
+package io.github.zhengzhengyiyi.util.document;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the start offset of every line of a document in a sorted int array.
+ *
+ * The index is updated from each edit instead of being rebuilt, and offset to
+ * (line, column) lookups use binary search. Shifting the starts that follow an
+ * edit is deferred: a pending delta is kept for all lines from a given line on,
+ * so repeated typing on the same line only updates a single int.
+ */
+public class LineIndex {
+    private int[] starts = new int[64];
+    private int lineCount = 1;
+    private int length = 0;
+
+    // Lines >= pendingLine still need pendingDelta added to their stored start
+    private int pendingLine = Integer.MAX_VALUE;
+    private int pendingDelta = 0;
+
+    public LineIndex() {
+    }
+
+    public LineIndex(CharSequence text) {
+        reset(text);
+    }
+
+    /**
+     * Rebuilds the index from scratch.
+     * @param text the full document text
+     */
+    public void reset(CharSequence text) {
+        lineCount = 1;
+        starts[0] = 0;
+        pendingLine = Integer.MAX_VALUE;
+        pendingDelta = 0;
+        length = text == null ? 0 : text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                append(i + 1);
+            }
+        }
+    }
+
+    /**
+     * Updates the index after text was inserted.
+     * @param offset the offset the text was inserted at
+     * @param text the inserted text
+     */
+    public void onInsert(int offset, CharSequence text) {
+        int insertedLength = text.length();
+        if (insertedLength == 0) return;
+
+        int line = getLineOfOffset(offset);
+        int newLines = 0;
+        for (int i = 0; i < insertedLength; i++) {
+            if (text.charAt(i) == '\n') newLines++;
+        }
+
+        if (newLines == 0) {
+            shift(line + 1, insertedLength);
+        } else {
+            flush();
+            ensureCapacity(lineCount + newLines);
+            System.arraycopy(starts, line + 1, starts, line + 1 + newLines, lineCount - line - 1);
+            for (int i = line + 1 + newLines; i < lineCount + newLines; i++) {
+                starts[i] += insertedLength;
+            }
+            int at = line + 1;
+            for (int i = 0; i < insertedLength; i++) {
+                if (text.charAt(i) == '\n') {
+                    starts[at++] = offset + i + 1;
+                }
+            }
+            lineCount += newLines;
+        }
+        length += insertedLength;
+    }
+
+    /**
+     * Updates the index after a range of text was deleted.
+     * @param start the start offset of the deleted range (inclusive)
+     * @param end the end offset of the deleted range (exclusive)
+     */
+    public void onDelete(int start, int end) {
+        int removedLength = end - start;
+        if (removedLength <= 0) return;
+
+        int firstLine = getLineOfOffset(start);
+        int lastLine = getLineOfOffset(end);
+        if (firstLine == lastLine) {
+            shift(firstLine + 1, -removedLength);
+        } else {
+            flush();
+            int removedLines = lastLine - firstLine;
+            System.arraycopy(starts, lastLine + 1, starts, firstLine + 1, lineCount - lastLine - 1);
+            lineCount -= removedLines;
+            for (int i = firstLine + 1; i < lineCount; i++) {
+                starts[i] -= removedLength;
+            }
+        }
+        length -= removedLength;
+    }
+
+    /**
+     * Gets the number of lines. An empty document has one line.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Gets the offset of the first character of a line.
+     * @param line the zero-based line number
+     */
+    public int getLineStart(int line) {
+        int start = starts[line];
+        return line >= pendingLine ? start + pendingDelta : start;
+    }
+
+    /**
+     * Gets the offset just past the last character of a line, excluding the line break.
+     * @param line the zero-based line number
+     */
+    public int getLineEnd(int line) {
+        return line + 1 < lineCount ? getLineStart(line + 1) - 1 : length;
+    }
+
+    /**
+     * Gets the length of a line, excluding the line break.
+     * @param line the zero-based line number
+     */
+    public int getLineLength(int line) {
+        return getLineEnd(line) - getLineStart(line);
+    }
+
+    /**
+     * Finds the line that contains the given offset.
+     * @param offset the document offset
+     * @return the zero-based line number
+     */
+    public int getLineOfOffset(int offset) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (getLineStart(mid) <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the column of an offset within its line.
+     * @param offset the document offset
+     * @return the zero-based column
+     */
+    public int getColumnOfOffset(int offset) {
+        return offset - getLineStart(getLineOfOffset(offset));
+    }
+
+    /**
+     * Gets the start offset of the line that contains the given offset.
+     */
+    public int getLineStartForOffset(int offset) {
+        return getLineStart(getLineOfOffset(offset));
+    }
+
+    /**
+     * Gets the end offset of the line that contains the given offset.
+     */
+    public int getLineEndForOffset(int offset) {
+        return getLineEnd(getLineOfOffset(offset));
+    }
+
+    private void shift(int fromLine, int delta) {
+        if (fromLine >= lineCount) return;
+        if (pendingDelta != 0 && pendingLine != fromLine) {
+            flush();
+        }
+        pendingLine = fromLine;
+        pendingDelta += delta;
+    }
+
+    private void flush() {
+        if (pendingDelta != 0) {
+            for (int i = pendingLine; i < lineCount; i++) {
+                starts[i] += pendingDelta;
+            }
+        }
+        pendingLine = Integer.MAX_VALUE;
+        pendingDelta = 0;
+    }
+
+    private void append(int start) {
+        ensureCapacity(lineCount + 1);
+        starts[lineCount++] = start;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(capacity, starts.length * 2));
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package io.github.zhengzhengyiyi.util.document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * A read-only view of a text file that is mapped into memory instead of read.
+ *
+ * Opening the file makes one pass over it and notes where every
+ * {@value #LINES_PER_CHECKPOINT}th line starts. A line is found by jumping to the
+ * checkpoint before it and scanning forward over at most that many lines, so the
+ * index stays small even for files with millions of lines. Text is decoded one
+ * line at a time when it is asked for; the file is never held as a string.
+ *
+ * Line breaks are found by looking for the byte '\n', so the encoding has to be
+ * one where that byte only ever means a line break, such as UTF-8 or ISO-8859-1.
+ * The mapping stays in place until {@link #close()}.
+ */
+public final class MappedTextFile implements Closeable {
+    private static final int LINES_PER_CHECKPOINT = 64;
+    // Bytes copied out of the mapping at a time while scanning
+    private static final int SCAN_BLOCK = 1 << 16;
+    // Longer lines are cut off when decoded; generated dumps can be a single line of megabytes
+    public static final int MAX_LINE_BYTES = 4096;
+
+    private final Path path;
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final long size;
+    private final Charset charset;
+    // Start of lines 0, 64, 128, ...
+    private long[] checkpoints = new long[1024];
+    private int lineCount = 1;
+
+    private MappedTextFile(Path path, Arena arena, MemorySegment segment, Charset charset) {
+        this.path = path;
+        this.arena = arena;
+        this.segment = segment;
+        this.size = segment.byteSize();
+        this.charset = charset;
+    }
+
+    /**
+     * Maps a file and indexes its lines.
+     * @param path the file
+     * @param charset the encoding of the file, which has to encode '\n' as that byte alone
+     */
+    public static MappedTextFile open(Path path, Charset charset) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            MappedTextFile file = new MappedTextFile(path, arena, segment, charset);
+            file.buildIndex();
+            return file;
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private void buildIndex() throws IOException {
+        byte[] block = new byte[SCAN_BLOCK];
+        for (long position = 0; position < size; position += SCAN_BLOCK) {
+            int count = (int) Math.min(SCAN_BLOCK, size - position);
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, block, 0, count);
+            for (int i = 0; i < count; i++) {
+                if (block[i] != '\n') continue;
+                if (lineCount == Integer.MAX_VALUE) {
+                    throw new IOException("Too many lines to view: " + path);
+                }
+                if (lineCount % LINES_PER_CHECKPOINT == 0) {
+                    int checkpoint = lineCount / LINES_PER_CHECKPOINT;
+                    if (checkpoint == checkpoints.length) {
+                        checkpoints = Arrays.copyOf(checkpoints, checkpoint * 2);
+                    }
+                    checkpoints[checkpoint] = position + i + 1;
+                }
+                lineCount++;
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets the size of the file in bytes.
+     */
+    public long length() {
+        return size;
+    }
+
+    /**
+     * Gets the number of lines. An empty file has one line.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Gets the offset of the first byte of a line.
+     * @param line the zero-based line number
+     */
+    public long getLineStart(int line) {
+        int checkpoint = line / LINES_PER_CHECKPOINT;
+        long start = checkpoints[checkpoint];
+        for (int i = checkpoint * LINES_PER_CHECKPOINT; i < line; i++) {
+            start = getLineEnd(start) + 1;
+        }
+        return start;
+    }
+
+    /**
+     * Gets the offset of the line break that ends the line starting at an offset,
+     * or the file size for the last line.
+     * @param lineStart the offset of the first byte of the line
+     */
+    public long getLineEnd(long lineStart) {
+        for (long position = lineStart; position < size; position++) {
+            if (segment.get(ValueLayout.JAVA_BYTE, position) == '\n') return position;
+        }
+        return size;
+    }
+
+    /**
+     * Finds the line that contains an offset.
+     * @return the zero-based line number
+     */
+    public int getLineOfOffset(long offset) {
+        int low = 0;
+        int high = (lineCount - 1) / LINES_PER_CHECKPOINT;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (checkpoints[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int line = low * LINES_PER_CHECKPOINT;
+        long start = checkpoints[low];
+        while (line + 1 < lineCount) {
+            long next = getLineEnd(start) + 1;
+            if (next > offset) break;
+            start = next;
+            line++;
+        }
+        return line;
+    }
+
+    /**
+     * Decodes a line, without its line break.
+     * @param line the zero-based line number
+     */
+    public String getLine(int line) {
+        long start = getLineStart(line);
+        return getText(start, getLineEnd(start));
+    }
+
+    /**
+     * Decodes the bytes between two offsets, or the first {@link #MAX_LINE_BYTES}
+     * of them if there are more. A carriage return at the end is dropped.
+     */
+    public String getText(long from, long to) {
+        int length = (int) Math.min(to - from, MAX_LINE_BYTES);
+        if (length <= 0) return "";
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, from, bytes, 0, length);
+        if (length == to - from && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, charset);
+    }
+
+    /**
+     * Finds every occurrence of some bytes between two offsets, in order.
+     *
+     * The scan stops early when the thread is interrupted or when the callback
+     * returns false.
+     *
+     * @param needle the bytes to look for
+     * @param ignoreCase whether ASCII letters match regardless of case
+     * @param onMatch receives the offset of each occurrence; returns false to stop
+     * @return whether the whole range was scanned
+     */
+    public boolean findAll(byte[] needle, long from, long to, boolean ignoreCase, LongPredicate onMatch) {
+        int length = needle.length;
+        to = Math.min(to, size);
+        if (length == 0) return true;
+        byte[] pattern = ignoreCase ? toLowerAscii(needle) : needle;
+        // Blocks overlap by the needle length so matches across a block boundary are seen
+        byte[] block = new byte[SCAN_BLOCK + length - 1];
+        // Only positions holding the first byte, in either case, are compared in full
+        byte first = pattern[0];
+        byte firstUpper = ignoreCase && first >= 'a' && first <= 'z' ? (byte) (first - ('a' - 'A')) : first;
+        for (long position = from; position <= to - length; position += SCAN_BLOCK) {
+            if (Thread.currentThread().isInterrupted()) return false;
+            int count = (int) Math.min(block.length, to - position);
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, block, 0, count);
+            int starts = Math.min(SCAN_BLOCK, count - length + 1);
+            for (int i = 0; i < starts; i++) {
+                byte b = block[i];
+                if (b != first && b != firstUpper) continue;
+                if (matches(block, i, pattern, ignoreCase) && !onMatch.test(position + i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] block, int offset, byte[] pattern, boolean ignoreCase) {
+        for (int j = 0; j < pattern.length; j++) {
+            byte b = block[offset + j];
+            if (ignoreCase && b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != pattern[j]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] toLowerAscii(byte[] bytes) {
+        byte[] lower = bytes.clone();
+        for (int i = 0; i < lower.length; i++) {
+            if (lower[i] >= 'A' && lower[i] <= 'Z') {
+                lower[i] += 'a' - 'A';
+            }
+        }
+        return lower;
+    }
+
+    /**
+     * Releases the mapping. Reading from the file afterwards throws
+     * {@link IllegalStateException}, including on other threads.
+     */
+    @Override
+    public void close() {
+        try {
+            arena.close();
+        } catch (IllegalStateException e) {
+            // Already closed
+        }
+    }
+}
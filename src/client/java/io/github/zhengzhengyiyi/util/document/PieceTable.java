@@ -0,0 +1,501 @@
+package io.github.zhengzhengyiyi.util.document;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A piece-table text buffer used as the document model of the editor.
+ *
+ * The document is described by a list of pieces, each pointing into either the
+ * immutable original text or the append-only add buffer. Inserting and deleting
+ * only splits or trims pieces, so an edit costs O(pieces) instead of copying the
+ * whole document. Consecutive typing at the same spot extends the last piece in
+ * place, which keeps the piece count low during normal editing.
+ *
+ * A {@link String} copy of the document is only built when {@link #toString()}
+ * is called, and is cached until the next edit. A {@link LineIndex} is kept in
+ * sync with every edit so line lookups never need to scan the text.
+ */
+public class PieceTable implements CharSequence {
+    /** Once the table holds this many pieces it is flattened back into a single piece. */
+    private static final int COMPACT_THRESHOLD = 4096;
+
+    private String original = "";
+    private final StringBuilder added = new StringBuilder();
+
+    private boolean[] pieceAdded = new boolean[16];
+    private int[] pieceStart = new int[16];
+    private int[] pieceLength = new int[16];
+    private int pieceCount = 0;
+
+    private int length = 0;
+    private long revision = 0;
+    private final LineIndex lineIndex = new LineIndex();
+    private final List<DocumentListener> listeners = new ArrayList<>();
+    private String snapshot = "";
+
+    // Last piece hit by charAt, so sequential scans do not restart from piece 0
+    private int cachedPiece = 0;
+    private int cachedPieceOffset = 0;
+
+    public PieceTable() {
+    }
+
+    public PieceTable(String text) {
+        setText(text);
+    }
+
+    /**
+     * Replaces the whole document content.
+     * @param text the new content
+     */
+    public void setText(String text) {
+        if (text == null) text = "";
+        int oldLength = length;
+        original = text;
+        added.setLength(0);
+        pieceCount = 0;
+        if (!text.isEmpty()) {
+            addPiece(0, false, 0, text.length());
+        }
+        length = text.length();
+        int oldLineBreaks = lineIndex.getLineCount() - 1;
+        lineIndex.reset(text);
+        snapshot = text;
+        resetCache();
+        revision++;
+        fireLinesChanged(0, oldLineBreaks, lineIndex.getLineCount() - 1);
+        fireTextEdited(0, oldLength, length);
+    }
+
+    /**
+     * Inserts text at the given offset.
+     * @param offset the offset to insert at, between 0 and {@link #length()}
+     * @param text the text to insert
+     */
+    public void insert(int offset, CharSequence text) {
+        checkOffset(offset);
+        if (text == null || text.length() == 0) return;
+
+        int addStart = added.length();
+        added.append(text);
+        int addLength = text.length();
+
+        int piece = 0;
+        int pieceOffset = 0;
+        while (piece < pieceCount && pieceOffset + pieceLength[piece] < offset) {
+            pieceOffset += pieceLength[piece];
+            piece++;
+        }
+
+        if (piece < pieceCount && offset == pieceOffset + pieceLength[piece]
+                && pieceAdded[piece] && pieceStart[piece] + pieceLength[piece] == addStart) {
+            // Typing right after the previous insertion: grow that piece
+            pieceLength[piece] += addLength;
+        } else if (piece < pieceCount && offset == pieceOffset + pieceLength[piece]) {
+            addPiece(piece + 1, true, addStart, addLength);
+        } else if (piece < pieceCount && offset == pieceOffset) {
+            addPiece(piece, true, addStart, addLength);
+        } else if (piece < pieceCount) {
+            int split = offset - pieceOffset;
+            int tailStart = pieceStart[piece] + split;
+            int tailLength = pieceLength[piece] - split;
+            boolean tailAdded = pieceAdded[piece];
+            pieceLength[piece] = split;
+            addPiece(piece + 1, true, addStart, addLength);
+            addPiece(piece + 2, tailAdded, tailStart, tailLength);
+        } else {
+            addPiece(pieceCount, true, addStart, addLength);
+        }
+
+        length += addLength;
+        int firstLine = lineIndex.getLineOfOffset(offset);
+        int oldLineCount = lineIndex.getLineCount();
+        lineIndex.onInsert(offset, text);
+        onEdit();
+        fireLinesChanged(firstLine, 0, lineIndex.getLineCount() - oldLineCount);
+        fireTextEdited(offset, 0, addLength);
+    }
+
+    /**
+     * Deletes the characters between {@code start} (inclusive) and {@code end} (exclusive).
+     * @param start the first offset to delete
+     * @param end the offset after the last character to delete
+     */
+    public void delete(int start, int end) {
+        checkOffset(start);
+        checkOffset(end);
+        if (start >= end) return;
+
+        int piece = 0;
+        int pieceOffset = 0;
+        while (piece < pieceCount && pieceOffset + pieceLength[piece] <= start) {
+            pieceOffset += pieceLength[piece];
+            piece++;
+        }
+
+        int remaining = end - start;
+        while (remaining > 0 && piece < pieceCount) {
+            int localStart = start - pieceOffset;
+            int localEnd = Math.min(pieceLength[piece], localStart + remaining);
+            int removed = localEnd - localStart;
+
+            if (localStart == 0 && localEnd == pieceLength[piece]) {
+                removePiece(piece);
+            } else if (localStart == 0) {
+                pieceStart[piece] += removed;
+                pieceLength[piece] -= removed;
+                piece++;
+            } else if (localEnd == pieceLength[piece]) {
+                pieceLength[piece] = localStart;
+                pieceOffset += localStart;
+                piece++;
+            } else {
+                int tailStart = pieceStart[piece] + localEnd;
+                int tailLength = pieceLength[piece] - localEnd;
+                pieceLength[piece] = localStart;
+                addPiece(piece + 1, pieceAdded[piece], tailStart, tailLength);
+                piece++;
+            }
+            remaining -= removed;
+        }
+
+        length -= end - start;
+        int firstLine = lineIndex.getLineOfOffset(start);
+        int oldLineCount = lineIndex.getLineCount();
+        lineIndex.onDelete(start, end);
+        onEdit();
+        fireLinesChanged(firstLine, oldLineCount - lineIndex.getLineCount(), 0);
+        fireTextEdited(start, end - start, 0);
+    }
+
+    /**
+     * Gets the edit revision. It changes every time the document content changes.
+     * @return the current revision
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Registers a listener that is notified of every edit.
+     * @param listener the listener to add
+     */
+    public void addListener(DocumentListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered listener.
+     * @param listener the listener to remove
+     */
+    public void removeListener(DocumentListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the line index that is kept up to date with this document.
+     */
+    public LineIndex getLineIndex() {
+        return lineIndex;
+    }
+
+    /**
+     * Gets the number of lines in the document.
+     */
+    public int getLineCount() {
+        return lineIndex.getLineCount();
+    }
+
+    /**
+     * Copies a single line of the document, without its line break.
+     * @param line the zero-based line number
+     * @return the line text
+     */
+    public String getLine(int line) {
+        return substring(lineIndex.getLineStart(line), lineIndex.getLineEnd(line));
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        if (snapshot != null) {
+            return snapshot.charAt(index);
+        }
+        if (cachedPiece >= pieceCount || index < cachedPieceOffset) {
+            resetCache();
+        }
+        while (index >= cachedPieceOffset + pieceLength[cachedPiece]) {
+            cachedPieceOffset += pieceLength[cachedPiece];
+            cachedPiece++;
+        }
+        int bufferIndex = pieceStart[cachedPiece] + index - cachedPieceOffset;
+        return pieceAdded[cachedPiece] ? added.charAt(bufferIndex) : original.charAt(bufferIndex);
+    }
+
+    /**
+     * Copies a range of the document without materializing the rest of it.
+     * @param start the start offset (inclusive)
+     * @param end the end offset (exclusive)
+     * @return the text in the range
+     */
+    public String substring(int start, int end) {
+        checkOffset(start);
+        checkOffset(end);
+        if (start >= end) return "";
+        if (snapshot != null) {
+            return snapshot.substring(start, end);
+        }
+        char[] chars = new char[end - start];
+        getChars(start, end, chars, 0);
+        return new String(chars);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    /**
+     * Copies characters from the document into the destination array.
+     * @param srcBegin the start offset in the document (inclusive)
+     * @param srcEnd the end offset in the document (exclusive)
+     * @param dst the destination array
+     * @param dstBegin the start index in the destination array
+     */
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        int pieceOffset = 0;
+        for (int piece = 0; piece < pieceCount && pieceOffset < srcEnd; piece++) {
+            int pieceEnd = pieceOffset + pieceLength[piece];
+            if (pieceEnd > srcBegin) {
+                int from = Math.max(srcBegin, pieceOffset) - pieceOffset + pieceStart[piece];
+                int to = Math.min(srcEnd, pieceEnd) - pieceOffset + pieceStart[piece];
+                int at = dstBegin + Math.max(srcBegin, pieceOffset) - srcBegin;
+                if (pieceAdded[piece]) {
+                    added.getChars(from, to, dst, at);
+                } else {
+                    original.getChars(from, to, dst, at);
+                }
+            }
+            pieceOffset = pieceEnd;
+        }
+    }
+
+    /**
+     * Finds the first occurrence of a character at or after {@code fromIndex}.
+     * @param ch the character to look for
+     * @param fromIndex the offset to start from
+     * @return the offset of the character, or -1 if not found
+     */
+    public int indexOf(char ch, int fromIndex) {
+        for (int i = Math.max(0, fromIndex); i < length; i++) {
+            if (charAt(i) == ch) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last occurrence of a character at or before {@code fromIndex}.
+     * @param ch the character to look for
+     * @param fromIndex the offset to start from, searching backwards
+     * @return the offset of the character, or -1 if not found
+     */
+    public int lastIndexOf(char ch, int fromIndex) {
+        for (int i = Math.min(fromIndex, length - 1); i >= 0; i--) {
+            if (charAt(i) == ch) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the document with a string without materializing the document.
+     * @param other the string to compare with
+     * @return true if both contain the same characters
+     */
+    public boolean contentEquals(CharSequence other) {
+        if (other == null || other.length() != length) return false;
+        if (snapshot != null) return snapshot.contentEquals(other);
+        for (int i = 0; i < length; i++) {
+            if (charAt(i) != other.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes a copy of the document that later edits do not change and that can be
+     * written out on another thread. The original text is shared rather than copied;
+     * only the add buffer, which holds the typed text, and the piece list are.
+     */
+    public Snapshot snapshot() {
+        if (snapshot != null) {
+            return new Snapshot(snapshot);
+        }
+        return new Snapshot(original, added.toString(), Arrays.copyOf(pieceAdded, pieceCount),
+                Arrays.copyOf(pieceStart, pieceCount), Arrays.copyOf(pieceLength, pieceCount), length);
+    }
+
+    /**
+     * The content of a {@link PieceTable} at one revision, as pieces of two strings.
+     */
+    public static final class Snapshot {
+        private final String original;
+        private final String added;
+        private final boolean[] pieceAdded;
+        private final int[] pieceStart;
+        private final int[] pieceLength;
+        private final int length;
+
+        private Snapshot(String text) {
+            this(text, "", new boolean[] {false}, new int[] {0}, new int[] {text.length()}, text.length());
+        }
+
+        private Snapshot(String original, String added, boolean[] pieceAdded, int[] pieceStart,
+                         int[] pieceLength, int length) {
+            this.original = original;
+            this.added = added;
+            this.pieceAdded = pieceAdded;
+            this.pieceStart = pieceStart;
+            this.pieceLength = pieceLength;
+            this.length = length;
+        }
+
+        /**
+         * Wraps a string as a snapshot, for text that did not come from a document.
+         */
+        public static Snapshot of(String text) {
+            return new Snapshot(text);
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Checks whether some text is the same as this, comparing piece by piece.
+         * A document is read front to back, which its position cache keeps cheap.
+         */
+        public boolean contentEquals(CharSequence text) {
+            if (text.length() != length) return false;
+            int offset = 0;
+            for (int i = 0; i < pieceStart.length; i++) {
+                String source = pieceAdded[i] ? added : original;
+                if (text instanceof String string) {
+                    if (!string.regionMatches(offset, source, pieceStart[i], pieceLength[i])) return false;
+                } else {
+                    for (int j = 0; j < pieceLength[i]; j++) {
+                        if (text.charAt(offset + j) != source.charAt(pieceStart[i] + j)) return false;
+                    }
+                }
+                offset += pieceLength[i];
+            }
+            return true;
+        }
+
+        /**
+         * Writes the content piece by piece, without joining it into one string.
+         */
+        public void writeTo(Writer out) throws IOException {
+            for (int i = 0; i < pieceStart.length; i++) {
+                out.write(pieceAdded[i] ? added : original, pieceStart[i], pieceLength[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the whole document as a string. The result is cached until the next edit.
+     */
+    @Override
+    public String toString() {
+        if (snapshot == null) {
+            char[] chars = new char[length];
+            getChars(0, length, chars, 0);
+            snapshot = new String(chars);
+        }
+        return snapshot;
+    }
+
+    private void onEdit() {
+        snapshot = null;
+        resetCache();
+        revision++;
+        if (pieceCount > COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private void fireLinesChanged(int firstLine, int removedLines, int addedLines) {
+        for (DocumentListener listener : listeners) {
+            listener.onLinesChanged(firstLine, removedLines, addedLines);
+        }
+    }
+
+    private void fireTextEdited(int offset, int removedLength, int insertedLength) {
+        for (DocumentListener listener : listeners) {
+            listener.onTextEdited(offset, removedLength, insertedLength);
+        }
+    }
+
+    private void compact() {
+        String text = toString();
+        original = text;
+        added.setLength(0);
+        pieceCount = 0;
+        if (!text.isEmpty()) {
+            addPiece(0, false, 0, text.length());
+        }
+    }
+
+    private void resetCache() {
+        cachedPiece = 0;
+        cachedPieceOffset = 0;
+    }
+
+    private void addPiece(int index, boolean isAdded, int start, int pieceLen) {
+        if (pieceCount == pieceStart.length) {
+            int capacity = pieceCount * 2;
+            pieceAdded = Arrays.copyOf(pieceAdded, capacity);
+            pieceStart = Arrays.copyOf(pieceStart, capacity);
+            pieceLength = Arrays.copyOf(pieceLength, capacity);
+        }
+        int moved = pieceCount - index;
+        if (moved > 0) {
+            System.arraycopy(pieceAdded, index, pieceAdded, index + 1, moved);
+            System.arraycopy(pieceStart, index, pieceStart, index + 1, moved);
+            System.arraycopy(pieceLength, index, pieceLength, index + 1, moved);
+        }
+        pieceAdded[index] = isAdded;
+        pieceStart[index] = start;
+        pieceLength[index] = pieceLen;
+        pieceCount++;
+    }
+
+    private void removePiece(int index) {
+        int moved = pieceCount - index - 1;
+        if (moved > 0) {
+            System.arraycopy(pieceAdded, index + 1, pieceAdded, index, moved);
+            System.arraycopy(pieceStart, index + 1, pieceStart, index, moved);
+            System.arraycopy(pieceLength, index + 1, pieceLength, index, moved);
+        }
+        pieceCount--;
+    }
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.zhengzhengyiyi.util.highlighter;
+
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphicsExtractor;
+import net.minecraft.network.chat.Style;
+import net.minecraft.util.FormattedCharSink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base class for highlighters that describe a line as a {@link TokenStream}.
+ *
+ * Subclasses only implement {@link #tokenize(String, TokenStream)} and
+ * {@link #getTokenColor(int, boolean)}. Drawing and measuring work from cached
+ * token streams, and a line is drawn as a single styled character sequence, so
+ * no substring is created per token. Highlighters that carry state across lines
+ * override {@link #tokenize(String, int, TokenStream)}; token streams are cached
+ * per start state.
+ */
+public abstract class AbstractHighlighter implements HighLighter {
+    private final TokenStream buffer = new TokenStream();
+    private final List<TokenCache<TokenStream>> tokenCaches = new ArrayList<>();
+    private Style[] editableStyles = new Style[0];
+    private Style[] readOnlyStyles = new Style[0];
+
+    @Override
+    public abstract void tokenize(String line, TokenStream out);
+
+    @Override
+    public abstract int getTokenColor(int type, boolean editable);
+
+    /**
+     * Gets the cached tokens of a line.
+     * @param line the text line
+     * @param state the lexer state at the start of the line
+     * @return the shared token stream, which must not be modified
+     */
+    protected TokenStream getTokens(String line, int state) {
+        while (tokenCaches.size() <= state) {
+            int cacheState = tokenCaches.size();
+            tokenCaches.add(new TokenCache<>(text -> tokenizeToCache(text, cacheState)));
+        }
+        return tokenCaches.get(state).get(line);
+    }
+
+    @Override
+    public int getEndState(String line, int state) {
+        return getTokens(line, state).getEndState();
+    }
+
+    @Override
+    public void drawHighlightedText(GuiGraphicsExtractor context, Font font, String text, int x, int y, boolean editable) {
+        drawHighlightedText(context, font, text, INITIAL_STATE, x, y, editable);
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public void drawHighlightedText(GuiGraphicsExtractor context, Font font, String text, int state, int x, int y, boolean editable) {
+        if (text == null || text.isEmpty()) return;
+
+        TokenStream tokens = getTokens(text, state);
+        context.text(font, sink -> emit(text, tokens, editable, sink), x, y, getDefaultColor(editable), false);
+    }
+
+    @Override
+    public int getTextWidth(Font font, String text) {
+        return TextMetrics.getInstance().getWidth(font, text);
+    }
+
+    @Override
+    public int getCharIndexFromTokens(Font font, String line, int targetX) {
+        return TextMetrics.getInstance().getIndexAtWidth(font, line, targetX);
+    }
+
+    @Override
+    public int getTextWidthUpToChar(Font font, String line, int charIndex) {
+        return TextMetrics.getInstance().getWidthUpTo(font, line, charIndex);
+    }
+
+    /**
+     * Gets the color of text that is not covered by a token.
+     */
+    protected static int getDefaultColor(boolean editable) {
+        return editable ? 0xFFFFFFFF : 0xFFAAAAAA;
+    }
+
+    /**
+     * Finds the first character at or after {@code from} that is not whitespace.
+     * Uses the same definition of whitespace as {@link String#trim()}.
+     */
+    protected static int skipWhitespace(String line, int from, int to) {
+        while (from < to && line.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Finds the end of {@code [from, to)} once trailing whitespace is removed.
+     * Uses the same definition of whitespace as {@link String#trim()}.
+     */
+    protected static int trimEnd(String line, int from, int to) {
+        while (to > from && line.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    /**
+     * Checks whether {@code [start, end)} of a line is exactly the given word.
+     */
+    protected static boolean regionEquals(String line, int start, int end, String word) {
+        return end - start == word.length() && line.startsWith(word, start);
+    }
+
+    private TokenStream tokenizeToCache(String line, int state) {
+        buffer.clear();
+        buffer.setEndState(tokenize(line, state, buffer));
+        return buffer.compact();
+    }
+
+    private boolean emit(String text, TokenStream tokens, boolean editable, FormattedCharSink sink) {
+        int token = 0;
+        int tokenCount = tokens.size();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            while (token < tokenCount && tokens.getEnd(token) <= i) {
+                token++;
+            }
+            Style style = token < tokenCount && tokens.getStart(token) <= i ? getStyle(tokens.getType(token), editable) : Style.EMPTY;
+            if (!sink.accept(i, style, codePoint)) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    private Style getStyle(int type, boolean editable) {
+        Style[] styles = editable ? editableStyles : readOnlyStyles;
+        if (type >= styles.length) {
+            styles = Arrays.copyOf(styles, type + 1);
+            if (editable) {
+                editableStyles = styles;
+            } else {
+                readOnlyStyles = styles;
+            }
+        }
+        Style style = styles[type];
+        if (style == null) {
+            style = Style.EMPTY.withColor(getTokenColor(type, editable) & 0xFFFFFF);
+            styles[type] = style;
+        }
+        return style;
+    }
+}
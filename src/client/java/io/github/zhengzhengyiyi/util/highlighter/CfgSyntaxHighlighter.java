@@ -1,11 +1,7 @@
 package io.github.zhengzhengyiyi.util.highlighter;
 
-import net.minecraft.client.gui.Font;
-import net.minecraft.client.gui.GuiGraphicsExtractor;
-import java.util.*;
+public class CfgSyntaxHighlighter extends AbstractHighlighter {
 
-public class CfgSyntaxHighlighter implements HighLighter{
-    
     public enum TokenType {
         COMMENT,
         KEY,
@@ -17,150 +13,64 @@ public class CfgSyntaxHighlighter implements HighLighter{
         SECTION_HEADER,
         TEXT
     }
-    
-    private static class Token {
-        public final TokenType type;
-        public final String content;
-        
-        public Token(TokenType type, String content) {
-            this.type = type;
-            this.content = content;
-        }
-    }
-    
-    public int getCharIndexFromTokens(Font font, String line, int targetX) {
-        if (line.isEmpty()) return 0;
-        
-        for (int i = 0; i <= line.length(); i++) {
-            int width = getTextWidthUpToChar(font, line, i);
-            if (width >= targetX) {
-                return i;
-            }
-        }
-        return line.length();
-    }
-    
-    @SuppressWarnings("null")
-    public int getTextWidthUpToChar(Font font, String line, int charIndex) {
-        if (line.isEmpty() || charIndex <= 0) return 0;
-        
-        List<Token> tokens = tokenizeLine(line);
-        int currentCharIndex = 0;
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            int tokenLength = token.content.length();
-            if (currentCharIndex + tokenLength >= charIndex) {
-                int charsInThisToken = charIndex - currentCharIndex;
-                if (charsInThisToken > 0) {
-                    totalWidth += font.width(token.content.substring(0, charsInThisToken));
-                }
-                break;
-            } else {
-                totalWidth += font.width(token.content);
-                currentCharIndex += tokenLength;
-            }
-        }
-        
-        return totalWidth;
-    }
-    
-    @SuppressWarnings("null")
-    public void drawHighlightedText(GuiGraphicsExtractor context, Font font, String text, int x, int y, boolean editable) {
-        if (text.isEmpty()) return;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int currentX = x;
-        
-        for (Token token : tokens) {
-            int color = getTokenColor(token.type, editable);
-            context.text(font, token.content, currentX, y, color, false);
-            currentX += font.width(token.content);
-        }
-    }
-    
-    private List<Token> tokenizeLine(String line) {
-        List<Token> tokens = new ArrayList<>();
-        if (line.isEmpty()) return tokens;
-        
-        String trimmedLine = line.trim();
-        
-        if (trimmedLine.startsWith("#") || trimmedLine.startsWith(";")) {
-            tokens.add(new Token(TokenType.COMMENT, line));
-            return tokens;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    @Override
+    public void tokenize(String line, TokenStream out) {
+        int length = line.length();
+        if (length == 0) return;
+
+        int first = skipWhitespace(line, 0, length);
+        int last = trimEnd(line, first, length);
+
+        if (line.startsWith("#", first) || line.startsWith(";", first)) {
+            out.add(0, length, TokenType.COMMENT.ordinal());
+            return;
         }
-        
-        if (trimmedLine.startsWith("[") && trimmedLine.endsWith("]")) {
-            tokens.add(new Token(TokenType.SECTION_HEADER, line));
-            return tokens;
+
+        if (line.startsWith("[", first) && line.charAt(last - 1) == ']') {
+            out.add(0, length, TokenType.SECTION_HEADER.ordinal());
+            return;
         }
-        
+
         int equalsIndex = line.indexOf('=');
         if (equalsIndex == -1) {
-            tokens.add(new Token(TokenType.TEXT, line));
-            return tokens;
-        }
-        
-        String beforeEquals = line.substring(0, equalsIndex);
-        String afterEquals = line.substring(equalsIndex + 1);
-        
-        String keyPart = beforeEquals.trim();
-        int keyStart = beforeEquals.indexOf(keyPart);
-        
-        if (keyStart > 0) {
-            tokens.add(new Token(TokenType.TEXT, beforeEquals.substring(0, keyStart)));
+            return;
         }
-        
-        if (!keyPart.isEmpty()) {
-            tokens.add(new Token(TokenType.KEY, keyPart));
-        }
-        
-        tokens.add(new Token(TokenType.EQUALS, "="));
-        
-        if (!afterEquals.isEmpty()) {
-            String value = afterEquals.trim();
-            TokenType valueType = determineValueType(value);
-            tokens.add(new Token(valueType, afterEquals));
+
+        int keyStart = skipWhitespace(line, 0, equalsIndex);
+        out.add(keyStart, trimEnd(line, keyStart, equalsIndex), TokenType.KEY.ordinal());
+
+        out.add(equalsIndex, equalsIndex + 1, TokenType.EQUALS.ordinal());
+
+        if (equalsIndex + 1 < length) {
+            int valueStart = skipWhitespace(line, equalsIndex + 1, length);
+            String value = line.substring(valueStart, trimEnd(line, valueStart, length));
+            out.add(equalsIndex + 1, length, determineValueType(value).ordinal());
         }
-        
-        return tokens;
     }
-    
+
     private TokenType determineValueType(String value) {
         if (value.startsWith("\"") || value.startsWith("'")) {
             return TokenType.STRING_VALUE;
         }
-        
+
         if (value.equals("true") || value.equals("false") || value.equals("yes") || value.equals("no") || 
             value.equals("on") || value.equals("off") || value.equals("enable") || value.equals("disable")) {
             return TokenType.BOOLEAN_VALUE;
         }
-        
+
         if (value.matches("-?\\d+(\\.\\d+)?")) {
             return TokenType.NUMBER_VALUE;
         }
-        
+
         return TokenType.VALUE;
     }
-    
-    @SuppressWarnings("null")
-    public int getTextWidth(Font font, String text) {
-        if (text == null || text.isEmpty()) return 0;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            totalWidth += font.width(token.content);
-        }
-        
-        return totalWidth;
-    }
-    
-    private int getTokenColor(TokenType type, boolean editable) {
-        int defaultColor = editable ? 0xFFFFFFFF : 0xFFAAAAAA;
-        
-        switch (type) {
+
+    @Override
+    public int getTokenColor(int type, boolean editable) {
+        switch (TYPES[type]) {
             case COMMENT:
                 return 0xFF6A9955;
             case SECTION_HEADER:
@@ -179,7 +89,7 @@ public class CfgSyntaxHighlighter implements HighLighter{
                 return 0xFFE6DB74;
             case TEXT:
             default:
-                return defaultColor;
+                return getDefaultColor(editable);
         }
     }
 }
@@ -12,6 +12,12 @@ import net.minecraft.client.gui.GuiGraphicsExtractor;
  * colors to different token types.
  */
 public interface HighLighter {
+
+    /**
+     * The lexer state at the start of a document, and the state of every line for
+     * highlighters that do not carry state from one line to the next.
+     */
+    int INITIAL_STATE = 0;
     
     /**
      * Draws syntax-highlighted text at the specified position.
@@ -53,4 +59,73 @@ public interface HighLighter {
      * @return the width in pixels of the text from start to the specified character index
      */
     int getTextWidthUpToChar(Font font, String line, int charIndex);
+
+    /**
+     * Splits a line into tokens without allocating per-token objects.
+     *
+     * Implementations append (start, end, type) ranges to {@code out}, where the type is
+     * passed back to {@link #getTokenColor(int, boolean)}. Characters that are not covered
+     * by a token use the default text color. The default implementation emits nothing.
+     * Extending {@link AbstractHighlighter} provides the four methods above from this one.
+     *
+     * @param line the text line to tokenize
+     * @param out the stream to append tokens to
+     */
+    default void tokenize(String line, TokenStream out) {
+    }
+
+    /**
+     * Tokenizes a line that starts in the given lexer state and returns the state at its end.
+     *
+     * States are small non-negative ints chosen by the highlighter and let constructs such
+     * as multi-line strings continue onto the next line. The default implementation is
+     * line-local: it ignores {@code state} and returns {@link #INITIAL_STATE}.
+     *
+     * @param line the text line to tokenize
+     * @param state the lexer state at the start of the line
+     * @param out the stream to append tokens to
+     * @return the lexer state at the end of the line
+     */
+    default int tokenize(String line, int state, TokenStream out) {
+        tokenize(line, out);
+        return INITIAL_STATE;
+    }
+
+    /**
+     * Gets the lexer state at the end of a line without drawing it.
+     *
+     * @param line the text line
+     * @param state the lexer state at the start of the line
+     * @return the lexer state at the end of the line
+     */
+    default int getEndState(String line, int state) {
+        return INITIAL_STATE;
+    }
+
+    /**
+     * Draws a line that starts in the given lexer state. The default implementation
+     * ignores the state.
+     *
+     * @param context the draw context used for rendering
+     * @param font the text renderer for measuring and drawing text
+     * @param text the text to be highlighted and drawn
+     * @param state the lexer state at the start of the line
+     * @param x the x-coordinate of the starting position
+     * @param y the y-coordinate of the starting position
+     * @param editable whether the text is in an editable context
+     */
+    default void drawHighlightedText(GuiGraphicsExtractor context, Font font, String text, int state, int x, int y, boolean editable) {
+        drawHighlightedText(context, font, text, x, y, editable);
+    }
+
+    /**
+     * Gets the color of a token type emitted by {@link #tokenize(String, TokenStream)}.
+     *
+     * @param type the token type ordinal
+     * @param editable whether the text is in an editable context
+     * @return the ARGB color of the token
+     */
+    default int getTokenColor(int type, boolean editable) {
+        return editable ? 0xFFFFFFFF : 0xFFAAAAAA;
+    }
 }
@@ -1,11 +1,6 @@
 package io.github.zhengzhengyiyi.util.highlighter;
 
-import net.minecraft.client.gui.Font;
-import net.minecraft.client.gui.GuiGraphicsExtractor;
-
-import java.util.*;
-
-public class JsonSyntaxHighlighter implements HighLighter{
+public class JsonSyntaxHighlighter extends AbstractHighlighter {
     public enum TokenType {
         BRACE_LEFT, BRACE_RIGHT,
         BRACKET_LEFT, BRACKET_RIGHT,
@@ -18,197 +13,118 @@ public class JsonSyntaxHighlighter implements HighLighter{
         SYMBOL,
         TEXT
     }
-    
-    private static class Token {
-        public final TokenType type;
-        public final String content;
-        
-        public Token(TokenType type, String content) {
-            this.type = type;
-            this.content = content;
-        }
-    }
-    
-    public int getCharIndexFromTokens(Font font, String line, int targetX) {
-        if (line.isEmpty()) return 0;
-        
-        for (int i = 0; i <= line.length(); i++) {
-            int width = getTextWidthUpToChar(font, line, i);
-            if (width >= targetX) {
-                return i;
-            }
-        }
-        return line.length();
-    }
-    
-    @SuppressWarnings("null")
-    public int getTextWidthUpToChar(Font font, String line, int charIndex) {
-        if (line.isEmpty() || charIndex <= 0) return 0;
-        
-        List<Token> tokens = tokenizeLine(line);
-        int currentCharIndex = 0;
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            int tokenLength = token.content.length();
-            if (currentCharIndex + tokenLength >= charIndex) {
-                int charsInThisToken = charIndex - currentCharIndex;
-                if (charsInThisToken > 0) {
-                    totalWidth += font.width(token.content.substring(0, charsInThisToken));
-                }
-                break;
-            } else {
-                totalWidth += font.width(token.content);
-                currentCharIndex += tokenLength;
-            }
-        }
-        
-        return totalWidth;
-    }
-    
-    @SuppressWarnings("null")
-    public void drawHighlightedText(GuiGraphicsExtractor context, Font font, String text, int x, int y, boolean editable) {
-        if (text.isEmpty()) return;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int currentX = x;
-        
-        for (Token token : tokens) {
-            int color = getTokenColor(token.type, editable);
-            context.text(font, token.content, currentX, y, color, false);
-            currentX += font.width(token.content);
-        }
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    // Lexer state bits carried from one line to the next
+    private static final int IN_STRING = 1;
+    private static final int IS_KEY = 2;
+    private static final int EXPECT_VALUE = 4;
+
+    @Override
+    public void tokenize(String line, TokenStream out) {
+        tokenize(line, INITIAL_STATE, out);
     }
-    
-    private List<Token> tokenizeLine(String line) {
-        List<Token> tokens = new ArrayList<>();
-        if (line.isEmpty()) return tokens;
-        
-        StringBuilder currentToken = new StringBuilder();
-        boolean inString = false;
-        boolean isKey = false;
-        boolean expectValue = false;
-        
-        for (int i = 0; i < line.length(); i++) {
+
+    @Override
+    public int tokenize(String line, int state, TokenStream out) {
+        int length = line.length();
+        int stringStart = 0;
+        boolean inString = (state & IN_STRING) != 0;
+        boolean isKey = (state & IS_KEY) != 0;
+        boolean expectValue = (state & EXPECT_VALUE) != 0;
+
+        for (int i = 0; i < length; i++) {
             char c = line.charAt(i);
-            
-            if (c == '"') {
+
+            if (inString && c == '\\') {
+                i++;
+            } else if (c == '"') {
                 if (!inString) {
                     inString = true;
-                    tokens.add(new Token(TokenType.TEXT, "\""));
+                    stringStart = i + 1;
                 } else {
                     inString = false;
-                    if (currentToken.length() > 0) {
+                    if (i > stringStart) {
                         TokenType type = isKey ? TokenType.KEY : (expectValue ? TokenType.STRING_VALUE : TokenType.TEXT);
-                        tokens.add(new Token(type, currentToken.toString()));
-                        currentToken.setLength(0);
+                        out.add(stringStart, i, type.ordinal());
                         if (type == TokenType.KEY) expectValue = true;
                     }
-                    tokens.add(new Token(TokenType.TEXT, "\""));
                 }
-            } else if (inString) {
-                currentToken.append(c);
-            } else {
+            } else if (!inString) {
                 switch (c) {
                     case '{':
-                        tokens.add(new Token(TokenType.BRACE_LEFT, "{"));
+                        out.add(i, i + 1, TokenType.BRACE_LEFT.ordinal());
                         isKey = true;
                         expectValue = false;
                         break;
                     case '}':
-                        tokens.add(new Token(TokenType.BRACE_RIGHT, "}"));
+                        out.add(i, i + 1, TokenType.BRACE_RIGHT.ordinal());
                         isKey = false;
                         expectValue = false;
                         break;
                     case '[':
-                        tokens.add(new Token(TokenType.BRACKET_LEFT, "["));
+                        out.add(i, i + 1, TokenType.BRACKET_LEFT.ordinal());
                         isKey = false;
                         expectValue = false;
                         break;
                     case ']':
-                        tokens.add(new Token(TokenType.BRACKET_RIGHT, "]"));
+                        out.add(i, i + 1, TokenType.BRACKET_RIGHT.ordinal());
                         isKey = false;
                         expectValue = false;
                         break;
                     case ':':
-                        tokens.add(new Token(TokenType.COLON, ":"));
+                        out.add(i, i + 1, TokenType.COLON.ordinal());
                         isKey = false;
                         expectValue = true;
                         break;
                     case ',':
-                        tokens.add(new Token(TokenType.COMMA, ","));
+                        out.add(i, i + 1, TokenType.COMMA.ordinal());
                         isKey = true;
                         expectValue = false;
                         break;
                     case '=': case ';': case '+': case '-': case '*': case '/': case '%': case '&': case '|': case '!': case '?': case '<': case '>': case '~': case '^': case '@': case '#': case '$': case '(': case ')':
-                        tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c)));
-                        break;
-                    case ' ': case '\t':
-                        tokens.add(new Token(TokenType.TEXT, String.valueOf(c)));
+                        out.add(i, i + 1, TokenType.SYMBOL.ordinal());
                         break;
                     default:
-                        if (Character.isDigit(c) || c == '-' || c == '.') {
-                            currentToken.setLength(0);
-                            currentToken.append(c);
-                            while (i + 1 < line.length()) {
+                        if (Character.isDigit(c) || c == '.') {
+                            int start = i;
+                            while (i + 1 < length) {
                                 char nextChar = line.charAt(i + 1);
                                 if (Character.isDigit(nextChar) || nextChar == '.' || nextChar == 'e' || nextChar == 'E' || nextChar == '+' || nextChar == '-') {
-                                    currentToken.append(nextChar);
                                     i++;
                                 } else {
                                     break;
                                 }
                             }
-                            tokens.add(new Token(TokenType.NUMBER_VALUE, currentToken.toString()));
-                            currentToken.setLength(0);
+                            out.add(start, i + 1, TokenType.NUMBER_VALUE.ordinal());
                         } else if (Character.isLetter(c) || c == '_') {
-                            currentToken.setLength(0);
-                            currentToken.append(c);
-                            while (i + 1 < line.length() && (Character.isLetterOrDigit(line.charAt(i + 1)) || line.charAt(i + 1) == '_')) {
-                                currentToken.append(line.charAt(++i));
+                            int start = i;
+                            while (i + 1 < length && (Character.isLetterOrDigit(line.charAt(i + 1)) || line.charAt(i + 1) == '_')) {
+                                i++;
                             }
-                            String word = currentToken.toString();
-                            TokenType type = TokenType.TEXT;
-                            if ("true".equals(word) || "false".equals(word)) {
-                                type = TokenType.BOOLEAN_VALUE;
-                            } else if ("null".equals(word)) {
-                                type = TokenType.NULL_VALUE;
+                            if (regionEquals(line, start, i + 1, "true") || regionEquals(line, start, i + 1, "false")) {
+                                out.add(start, i + 1, TokenType.BOOLEAN_VALUE.ordinal());
+                            } else if (regionEquals(line, start, i + 1, "null")) {
+                                out.add(start, i + 1, TokenType.NULL_VALUE.ordinal());
                             }
-                            tokens.add(new Token(type, word));
-                            currentToken.setLength(0);
-                        } else {
-                            tokens.add(new Token(TokenType.TEXT, String.valueOf(c)));
                         }
                         break;
                 }
             }
         }
-        
-        if (inString && currentToken.length() > 0) {
-            tokens.add(new Token(TokenType.STRING_VALUE, currentToken.toString()));
-        }
-        
-        return tokens;
-    }
-    
-    @SuppressWarnings("null")
-    public int getTextWidth(Font font, String text) {
-        if (text == null || text.isEmpty()) return 0;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            totalWidth += font.width(token.content);
+
+        if (inString && length > stringStart) {
+            TokenType type = isKey ? TokenType.KEY : TokenType.STRING_VALUE;
+            out.add(stringStart, length, type.ordinal());
         }
-        
-        return totalWidth;
+
+        return (inString ? IN_STRING : 0) | (isKey ? IS_KEY : 0) | (expectValue ? EXPECT_VALUE : 0);
     }
-    
-    private int getTokenColor(TokenType type, boolean editable) {
-        int defaultColor = editable ? 0xFFFFFFFF : 0xFFAAAAAA;
-        
-        switch (type) {
+
+    @Override
+    public int getTokenColor(int type, boolean editable) {
+        switch (TYPES[type]) {
             case BRACE_LEFT: case BRACE_RIGHT:
             case BRACKET_LEFT: case BRACKET_RIGHT:
                 return 0xFFFFFF00;
@@ -228,7 +144,7 @@ public class JsonSyntaxHighlighter implements HighLighter{
                 return 0xFFF92672;
             case TEXT:
             default:
-                return defaultColor;
+                return getDefaultColor(editable);
         }
     }
 }
@@ -0,0 +1,161 @@
+package io.github.zhengzhengyiyi.util.highlighter;
+
+import net.minecraft.client.gui.Font;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures editor lines from cached per-codepoint advances.
+ *
+ * Every line that is hit tested gets a prefix-width array, where entry {@code i} is
+ * the width of the first {@code i} characters. Cursor placement then becomes an
+ * array lookup and click-to-cursor a binary search, instead of measuring a
+ * substring per character. Advances are read from the font once per codepoint.
+ * Call {@link #clear()} if the font's glyphs change.
+ */
+public class TextMetrics {
+    private static TextMetrics instance;
+
+    private Font font;
+    private final int[][] pages = new int[256][];
+    private final Map<Integer, Integer> supplementaryAdvances = new HashMap<>();
+    private final TokenCache<int[]> prefixWidths = new TokenCache<>(this::computePrefixWidths, 256);
+
+    private TextMetrics() {}
+
+    public static TextMetrics getInstance() {
+        if (instance == null) {
+            instance = new TextMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the width of a whole line.
+     * @param font the font used for drawing
+     * @param line the text line
+     * @return the width in pixels
+     */
+    public int getWidth(Font font, String line) {
+        if (line == null || line.isEmpty()) return 0;
+        useFont(font);
+
+        int[] prefix = prefixWidths.getIfPresent(line);
+        if (prefix != null) {
+            return prefix[line.length()];
+        }
+        int width = 0;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            width += getAdvance(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /**
+     * Gets the width of the first {@code charIndex} characters of a line.
+     * @param font the font used for drawing
+     * @param line the text line
+     * @param charIndex the number of characters to measure
+     * @return the width in pixels
+     */
+    public int getWidthUpTo(Font font, String line, int charIndex) {
+        if (line == null || line.isEmpty() || charIndex <= 0) return 0;
+        return getPrefixWidths(font, line)[Math.min(charIndex, line.length())];
+    }
+
+    /**
+     * Finds the first character index whose prefix width reaches {@code targetX}.
+     * @param font the font used for drawing
+     * @param line the text line
+     * @param targetX the x offset in pixels from the start of the line
+     * @return a character index between 0 and the line length
+     */
+    public int getIndexAtWidth(Font font, String line, int targetX) {
+        if (line == null || line.isEmpty()) return 0;
+        int[] prefix = getPrefixWidths(font, line);
+        int low = 0;
+        int high = line.length();
+        if (prefix[high] < targetX) return high;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prefix[mid] >= targetX) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the prefix widths of a line. Entry {@code i} is the width of the first
+     * {@code i} characters, so the array is one longer than the line.
+     * @param font the font used for drawing
+     * @param line the text line
+     * @return the shared prefix width array, which must not be modified
+     */
+    public int[] getPrefixWidths(Font font, String line) {
+        useFont(font);
+        return prefixWidths.get(line);
+    }
+
+    /**
+     * Drops every cached advance and prefix width.
+     */
+    public void clear() {
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = null;
+        }
+        supplementaryAdvances.clear();
+        prefixWidths.clear();
+    }
+
+    private void useFont(Font font) {
+        if (this.font != font) {
+            clear();
+            this.font = font;
+        }
+    }
+
+    private int[] computePrefixWidths(String line) {
+        int length = line.length();
+        int[] prefix = new int[length + 1];
+        int width = 0;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(line.charAt(i + 1))) {
+                prefix[i + 1] = width;
+                width += getAdvance(Character.toCodePoint(c, line.charAt(i + 1)));
+                prefix[i + 2] = width;
+                i++;
+            } else {
+                width += getAdvance(c);
+                prefix[i + 1] = width;
+            }
+        }
+        return prefix;
+    }
+
+    @SuppressWarnings("null")
+    private int getAdvance(int codePoint) {
+        if (codePoint >= 0x10000) {
+            return supplementaryAdvances.computeIfAbsent(codePoint, cp -> font.width(new String(Character.toChars(cp))));
+        }
+        int[] page = pages[codePoint >>> 8];
+        if (page == null) {
+            page = new int[256];
+            Arrays.fill(page, -1);
+            pages[codePoint >>> 8] = page;
+        }
+        int advance = page[codePoint & 0xFF];
+        if (advance < 0) {
+            advance = font.width(String.valueOf((char) codePoint));
+            page[codePoint & 0xFF] = advance;
+        }
+        return advance;
+    }
+}
@@ -1,10 +1,6 @@
 package io.github.zhengzhengyiyi.util.highlighter;
 
-import net.minecraft.client.gui.Font;
-import net.minecraft.client.gui.GuiGraphicsExtractor;
-import java.util.*;
-
-public class TextSyntaxHighlighter implements HighLighter{
+public class TextSyntaxHighlighter extends AbstractHighlighter {
     
     public enum TokenType {
         COMMENT,
@@ -17,160 +13,88 @@ public class TextSyntaxHighlighter implements HighLighter{
         SYMBOL,
         TEXT
     }
-    
-    private static class Token {
-        public final TokenType type;
-        public final String content;
-        
-        public Token(TokenType type, String content) {
-            this.type = type;
-            this.content = content;
-        }
-    }
-    
-    public int getCharIndexFromTokens(Font font, String line, int targetX) {
-        if (line.isEmpty()) return 0;
-        
-        for (int i = 0; i <= line.length(); i++) {
-            int width = getTextWidthUpToChar(font, line, i);
-            if (width >= targetX) {
-                return i;
-            }
-        }
-        return line.length();
-    }
-    
-    @SuppressWarnings("null")
-    public int getTextWidthUpToChar(Font font, String line, int charIndex) {
-        if (line.isEmpty() || charIndex <= 0) return 0;
-        
-        List<Token> tokens = tokenizeLine(line);
-        int currentCharIndex = 0;
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            int tokenLength = token.content.length();
-            if (currentCharIndex + tokenLength >= charIndex) {
-                int charsInThisToken = charIndex - currentCharIndex;
-                if (charsInThisToken > 0) {
-                    totalWidth += font.width(token.content.substring(0, charsInThisToken));
-                }
-                break;
-            } else {
-                totalWidth += font.width(token.content);
-                currentCharIndex += tokenLength;
-            }
-        }
-        
-        return totalWidth;
-    }
-    
-    @SuppressWarnings("null")
-    public void drawHighlightedText(GuiGraphicsExtractor context, Font font, String text, int x, int y, boolean editable) {
-        if (text.isEmpty()) return;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int currentX = x;
-        
-        for (Token token : tokens) {
-            int color = getTokenColor(token.type, editable);
-            context.text(font, token.content, currentX, y, color, false);
-            currentX += font.width(token.content);
-        }
-    }
-    
-    private List<Token> tokenizeLine(String line) {
-        List<Token> tokens = new ArrayList<>();
-        if (line.isEmpty()) return tokens;
-        
-        String trimmedLine = line.trim();
-        
-        if (trimmedLine.startsWith("#") || trimmedLine.startsWith("//")) {
-            tokens.add(new Token(TokenType.COMMENT, line));
-            return tokens;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    @Override
+    public void tokenize(String line, TokenStream out) {
+        int length = line.length();
+        if (length == 0) return;
+
+        int first = skipWhitespace(line, 0, length);
+        if (line.startsWith("#", first) || line.startsWith("//", first)) {
+            out.add(0, length, TokenType.COMMENT.ordinal());
+            return;
         }
-        
-        StringBuilder currentToken = new StringBuilder();
+
+        int wordStart = 0;
         boolean inQuotes = false;
         char quoteChar = '"';
-        
-        for (int i = 0; i < line.length(); i++) {
+
+        for (int i = 0; i < length; i++) {
             char c = line.charAt(i);
-            
-            if (c == '"' || c == '\'') {
-                if (!inQuotes) {
-                    if (currentToken.length() > 0) {
-                        tokens.add(createToken(currentToken.toString()));
-                        currentToken.setLength(0);
-                    }
-                    inQuotes = true;
-                    quoteChar = c;
-                } else if (c == quoteChar) {
+
+            if (inQuotes) {
+                if (c == quoteChar) {
                     inQuotes = false;
-                    if (currentToken.length() > 0) {
-                        tokens.add(new Token(TokenType.QUOTED_TEXT, currentToken.toString()));
-                        currentToken.setLength(0);
-                    }
-                    continue;
+                    out.add(wordStart, i + 1, TokenType.QUOTED_TEXT.ordinal());
+                    wordStart = i + 1;
                 }
+                continue;
             }
-            
-            if (inQuotes) {
-                currentToken.append(c);
-            } else {
-                if (Character.isWhitespace(c)) {
-                    if (currentToken.length() > 0) {
-                        tokens.add(createToken(currentToken.toString()));
-                        currentToken.setLength(0);
-                    }
-                    tokens.add(new Token(TokenType.TEXT, String.valueOf(c)));
-                } else if (isBracket(c)) {
-                    if (currentToken.length() > 0) {
-                        tokens.add(createToken(currentToken.toString()));
-                        currentToken.setLength(0);
-                    }
-                    tokens.add(new Token(TokenType.BRACKET, String.valueOf(c)));
-                } else if (isSymbol(c)) {
-                    if (currentToken.length() > 0) {
-                        tokens.add(createToken(currentToken.toString()));
-                        currentToken.setLength(0);
-                    }
-                    tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c)));
-                } else {
-                    currentToken.append(c);
-                }
+
+            if (c == '"' || c == '\'') {
+                addWord(line, wordStart, i, out);
+                inQuotes = true;
+                quoteChar = c;
+                wordStart = i;
+            } else if (Character.isWhitespace(c)) {
+                addWord(line, wordStart, i, out);
+                wordStart = i + 1;
+            } else if (isBracket(c)) {
+                addWord(line, wordStart, i, out);
+                out.add(i, i + 1, TokenType.BRACKET.ordinal());
+                wordStart = i + 1;
+            } else if (isSymbol(c)) {
+                addWord(line, wordStart, i, out);
+                out.add(i, i + 1, TokenType.SYMBOL.ordinal());
+                wordStart = i + 1;
             }
         }
-        
-        if (currentToken.length() > 0) {
-            tokens.add(createToken(currentToken.toString()));
+
+        addWord(line, wordStart, length, out);
+    }
+
+    private void addWord(String line, int start, int end, TokenStream out) {
+        if (end <= start) return;
+        TokenType type = classifyWord(line.substring(start, end));
+        if (type != TokenType.TEXT) {
+            out.add(start, end, type.ordinal());
         }
-        
-        return tokens;
     }
-    
-    private Token createToken(String text) {
+
+    private TokenType classifyWord(String text) {
         if (text.startsWith("#") || text.startsWith("//")) {
-            return new Token(TokenType.COMMENT, text);
+            return TokenType.COMMENT;
         }
         
         if (isHeader(text)) {
-            return new Token(TokenType.HEADER, text);
+            return TokenType.HEADER;
         }
         
         if (isNumber(text)) {
-            return new Token(TokenType.NUMBER, text);
+            return TokenType.NUMBER;
         }
         
         if (isURL(text)) {
-            return new Token(TokenType.URL, text);
+            return TokenType.URL;
         }
         
         if (isEmail(text)) {
-            return new Token(TokenType.EMAIL, text);
+            return TokenType.EMAIL;
         }
         
-        return new Token(TokenType.TEXT, text);
+        return TokenType.TEXT;
     }
     
     private boolean isHeader(String text) {
@@ -202,24 +126,9 @@ public class TextSyntaxHighlighter implements HighLighter{
                c == '|' || c == '^' || c == '~' || c == '@' || c == '#' || c == '$' || c == '%';
     }
     
-    @SuppressWarnings("null")
-    public int getTextWidth(Font font, String text) {
-        if (text == null || text.isEmpty()) return 0;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            totalWidth += font.width(token.content);
-        }
-        
-        return totalWidth;
-    }
-    
-    private int getTokenColor(TokenType type, boolean editable) {
-        int defaultColor = editable ? 0xFFFFFFFF : 0xFFAAAAAA;
-        
-        switch (type) {
+    @Override
+    public int getTokenColor(int type, boolean editable) {
+        switch (TYPES[type]) {
             case COMMENT:
                 return 0xFF6A9955;
             case HEADER:
@@ -238,7 +147,7 @@ public class TextSyntaxHighlighter implements HighLighter{
                 return 0xFFFD971F;
             case TEXT:
             default:
-                return defaultColor;
+                return getDefaultColor(editable);
         }
     }
 }
@@ -0,0 +1,68 @@
+package io.github.zhengzhengyiyi.util.highlighter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded, least-recently-used cache of tokenized lines keyed by line content.
+ *
+ * Highlighters are asked about the same visible lines many times per frame
+ * (drawing, width, cursor and hit testing), so tokenizing once per distinct line
+ * content and reusing the result makes an idle editor tokenize nothing at all.
+ * An edited line has new content and therefore misses, while untouched lines keep
+ * their entries; stale entries simply age out.
+ *
+ * @param <T> the tokenized representation of a line
+ */
+public class TokenCache<T> {
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final Function<String, T> tokenizer;
+    private final Map<String, T> entries;
+
+    public TokenCache(Function<String, T> tokenizer) {
+        this(tokenizer, DEFAULT_CAPACITY);
+    }
+
+    public TokenCache(Function<String, T> tokenizer, int capacity) {
+        this.tokenizer = tokenizer;
+        this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the tokens of a line, tokenizing it only if it is not cached yet.
+     * The returned value is shared and must not be modified.
+     * @param line the line content
+     * @return the cached tokens
+     */
+    public T get(String line) {
+        T tokens = entries.get(line);
+        if (tokens == null) {
+            tokens = tokenizer.apply(line);
+            entries.put(line, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * Gets the tokens of a line only if they are already cached.
+     * @param line the line content
+     * @return the cached tokens, or null
+     */
+    public T getIfPresent(String line) {
+        return entries.get(line);
+    }
+
+    /**
+     * Drops every cached line.
+     */
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.zhengzhengyiyi.util.highlighter;
+
+import java.util.Arrays;
+
+/**
+ * A compact list of tokens stored as parallel int arrays of (start, end, type).
+ *
+ * Offsets are character offsets into the tokenized line, with an exclusive end,
+ * and the type is a highlighter specific ordinal (usually {@code TokenType.ordinal()}).
+ * A stream can be cleared and refilled, so tokenizing does not allocate a
+ * {@code Token} or a {@code String} per token. Characters not covered by any
+ * token are drawn in the default text color. The stream also records the lexer
+ * state at the end of the line, see {@link HighLighter#tokenize(String, int, TokenStream)}.
+ */
+public final class TokenStream {
+    private int[] starts;
+    private int[] ends;
+    private int[] types;
+    private int size;
+    private int endState;
+
+    public TokenStream() {
+        this(16);
+    }
+
+    public TokenStream(int capacity) {
+        starts = new int[capacity];
+        ends = new int[capacity];
+        types = new int[capacity];
+    }
+
+    /**
+     * Appends a token. Empty ranges are ignored and a token that directly follows
+     * one of the same type is merged into it.
+     * @param start the start offset (inclusive)
+     * @param end the end offset (exclusive)
+     * @param type the token type ordinal
+     */
+    public void add(int start, int end, int type) {
+        if (end <= start) return;
+        if (size > 0 && types[size - 1] == type && ends[size - 1] == start) {
+            ends[size - 1] = end;
+            return;
+        }
+        if (size == starts.length) {
+            int capacity = Math.max(16, size * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        types[size] = type;
+        size++;
+    }
+
+    /**
+     * Removes every token while keeping the allocated arrays.
+     */
+    public void clear() {
+        size = 0;
+        endState = HighLighter.INITIAL_STATE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Gets the lexer state at the end of the tokenized line.
+     */
+    public int getEndState() {
+        return endState;
+    }
+
+    public void setEndState(int endState) {
+        this.endState = endState;
+    }
+
+    /**
+     * Creates a copy whose arrays are trimmed to the number of tokens.
+     * @return a new stream holding the same tokens
+     */
+    public TokenStream compact() {
+        TokenStream copy = new TokenStream(size);
+        System.arraycopy(starts, 0, copy.starts, 0, size);
+        System.arraycopy(ends, 0, copy.ends, 0, size);
+        System.arraycopy(types, 0, copy.types, 0, size);
+        copy.size = size;
+        copy.endState = endState;
+        return copy;
+    }
+}
@@ -1,11 +1,7 @@
 package io.github.zhengzhengyiyi.util.highlighter;
 
-import net.minecraft.client.gui.Font;
-import net.minecraft.client.gui.GuiGraphicsExtractor;
-import java.util.*;
+public class YamlSyntaxHighlighter extends AbstractHighlighter {
 
-public class YamlSyntaxHighlighter implements HighLighter{
-    
     public enum TokenType {
         COMMENT,
         KEY,
@@ -20,170 +16,108 @@ public class YamlSyntaxHighlighter implements HighLighter{
         DOCUMENT_MARKER,
         TEXT
     }
-    
-    private static class Token {
-        public final TokenType type;
-        public final String content;
-        
-        public Token(TokenType type, String content) {
-            this.type = type;
-            this.content = content;
-        }
-    }
-    
-    public int getCharIndexFromTokens(Font font, String line, int targetX) {
-        if (line.isEmpty()) return 0;
-        
-        for (int i = 0; i <= line.length(); i++) {
-            int width = getTextWidthUpToChar(font, line, i);
-            if (width >= targetX) {
-                return i;
-            }
-        }
-        return line.length();
-    }
-    
-    @SuppressWarnings("null")
-    public int getTextWidthUpToChar(Font font, String line, int charIndex) {
-        if (line.isEmpty() || charIndex <= 0) return 0;
-        
-        List<Token> tokens = tokenizeLine(line);
-        int currentCharIndex = 0;
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            int tokenLength = token.content.length();
-            if (currentCharIndex + tokenLength >= charIndex) {
-                int charsInThisToken = charIndex - currentCharIndex;
-                if (charsInThisToken > 0) {
-                    totalWidth += font.width(token.content.substring(0, charsInThisToken));
-                }
-                break;
-            } else {
-                totalWidth += font.width(token.content);
-                currentCharIndex += tokenLength;
-            }
-        }
-        
-        return totalWidth;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    @Override
+    public void tokenize(String line, TokenStream out) {
+        tokenize(line, INITIAL_STATE, out);
     }
-    
-    @SuppressWarnings("null")
-    public void drawHighlightedText(GuiGraphicsExtractor context, Font font, String text, int x, int y, boolean editable) {
-        if (text.isEmpty()) return;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int currentX = x;
-        
-        for (Token token : tokens) {
-            int color = getTokenColor(token.type, editable);
-            context.text(font, token.content, currentX, y, color, false);
-            currentX += font.width(token.content);
+
+    /**
+     * Inside a block scalar ({@code |} or {@code >}) the state is the indentation of
+     * the key that opened it plus one; any more indented or blank line continues it.
+     */
+    @Override
+    public int tokenize(String line, int state, TokenStream out) {
+        int length = line.length();
+        int first = skipWhitespace(line, 0, length);
+        int last = trimEnd(line, first, length);
+
+        if (state != INITIAL_STATE && (first == length || first >= state)) {
+            out.add(0, length, TokenType.STRING_VALUE.ordinal());
+            return state;
         }
-    }
-    
-    private List<Token> tokenizeLine(String line) {
-        List<Token> tokens = new ArrayList<>();
-        if (line.isEmpty()) return tokens;
-        
-        String trimmedLine = line.trim();
-        
-        if (trimmedLine.startsWith("#")) {
-            tokens.add(new Token(TokenType.COMMENT, line));
-            return tokens;
+
+        if (length == 0) return INITIAL_STATE;
+
+        if (line.startsWith("#", first)) {
+            out.add(0, length, TokenType.COMMENT.ordinal());
+            return INITIAL_STATE;
         }
-        
-        if (trimmedLine.equals("---") || trimmedLine.equals("...")) {
-            tokens.add(new Token(TokenType.DOCUMENT_MARKER, line));
-            return tokens;
+
+        if (regionEquals(line, first, last, "---") || regionEquals(line, first, last, "...")) {
+            out.add(0, length, TokenType.DOCUMENT_MARKER.ordinal());
+            return INITIAL_STATE;
         }
-        
-        if (trimmedLine.startsWith("- ")) {
-            tokens.add(new Token(TokenType.LIST_ITEM, line));
-            return tokens;
+
+        if (last - first >= 2 && line.startsWith("- ", first)) {
+            out.add(0, length, TokenType.LIST_ITEM.ordinal());
+            return INITIAL_STATE;
         }
-        
+
         int colonIndex = line.indexOf(':');
         if (colonIndex == -1) {
-            tokens.add(new Token(TokenType.TEXT, line));
-            return tokens;
+            return INITIAL_STATE;
         }
-        
-        String beforeColon = line.substring(0, colonIndex);
-        String afterColon = line.substring(colonIndex + 1);
-        
-        String indentation = extractIndentation(beforeColon);
-        if (!indentation.isEmpty()) {
-            tokens.add(new Token(TokenType.INDENTATION, indentation));
-        }
-        
-        String keyPart = beforeColon.trim();
-        if (!keyPart.isEmpty()) {
-            tokens.add(new Token(TokenType.KEY, keyPart));
+
+        int indentationEnd = 0;
+        while (indentationEnd < colonIndex && (line.charAt(indentationEnd) == ' ' || line.charAt(indentationEnd) == '\t')) {
+            indentationEnd++;
         }
-        
-        tokens.add(new Token(TokenType.COLON, ":"));
-        
-        if (!afterColon.isEmpty()) {
-            String value = afterColon.trim();
-            TokenType valueType = determineValueType(value);
-            tokens.add(new Token(valueType, afterColon));
+        out.add(0, indentationEnd, TokenType.INDENTATION.ordinal());
+
+        int keyStart = skipWhitespace(line, 0, colonIndex);
+        out.add(keyStart, trimEnd(line, keyStart, colonIndex), TokenType.KEY.ordinal());
+
+        out.add(colonIndex, colonIndex + 1, TokenType.COLON.ordinal());
+
+        if (colonIndex + 1 < length) {
+            int valueStart = skipWhitespace(line, colonIndex + 1, length);
+            String value = line.substring(valueStart, trimEnd(line, valueStart, length));
+            out.add(colonIndex + 1, length, determineValueType(value).ordinal());
+            if (isBlockScalarIndicator(value)) {
+                return first + 1;
+            }
         }
-        
-        return tokens;
+        return INITIAL_STATE;
     }
-    
-    private String extractIndentation(String text) {
-        for (int i = 0; i < text.length(); i++) {
-            if (text.charAt(i) != ' ' && text.charAt(i) != '\t') {
-                return text.substring(0, i);
-            }
+
+    private boolean isBlockScalarIndicator(String value) {
+        int comment = value.indexOf(" #");
+        if (comment != -1) {
+            value = value.substring(0, comment).trim();
         }
-        return text;
+        return value.matches("[|>]([+-][1-9]?|[1-9][+-]?)?");
     }
-    
+
     private TokenType determineValueType(String value) {
         if (value.startsWith("\"") || value.startsWith("'")) {
             return TokenType.STRING_VALUE;
         }
-        
+
         if (value.startsWith("- ")) {
             return TokenType.LIST_ITEM;
         }
-        
+
         if (value.equals("true") || value.equals("false") || value.equals("yes") || value.equals("no")) {
             return TokenType.BOOLEAN_VALUE;
         }
-        
+
         if (value.equals("null") || value.equals("~")) {
             return TokenType.NULL_VALUE;
         }
-        
+
         if (value.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
             return TokenType.NUMBER_VALUE;
         }
-        
+
         return TokenType.VALUE;
     }
-    
-    @SuppressWarnings("null")
-    public int getTextWidth(Font font, String text) {
-        if (text == null || text.isEmpty()) return 0;
-        
-        List<Token> tokens = tokenizeLine(text);
-        int totalWidth = 0;
-        
-        for (Token token : tokens) {
-            totalWidth += font.width(token.content);
-        }
-        
-        return totalWidth;
-    }
-    
-    private int getTokenColor(TokenType type, boolean editable) {
-        int defaultColor = editable ? 0xFFFFFFFF : 0xFFAAAAAA;
-        
-        switch (type) {
+
+    @Override
+    public int getTokenColor(int type, boolean editable) {
+        switch (TYPES[type]) {
             case COMMENT:
                 return 0xFF6A9955;
             case KEY:
@@ -208,7 +142,7 @@ public class YamlSyntaxHighlighter implements HighLighter{
                 return 0xFFE6DB74;
             case TEXT:
             default:
-                return defaultColor;
+                return getDefaultColor(editable);
         }
     }
 }
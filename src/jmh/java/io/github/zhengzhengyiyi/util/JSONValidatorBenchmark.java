@@ -0,0 +1,79 @@
+package io.github.zhengzhengyiyi.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass {@link JSONValidator} with the {@link LegacyJSONValidator}
+ * it replaced, on generated config-like documents of 1 MB and 10 MB, both valid
+ * and with one closing brace missing halfway through.
+ *
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JSONValidatorBenchmark {
+    @Param({"1", "10"})
+    public int sizeMb;
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = generate(sizeMb * 1024 * 1024, valid);
+    }
+
+    @Benchmark
+    public List<JSONError> singlePass() {
+        return JSONValidator.validateJSON(text);
+    }
+
+    @Benchmark
+    public List<JSONError> legacy() {
+        return LegacyJSONValidator.validateJSON(text);
+    }
+
+    /**
+     * Builds a pretty-printed object of nested entries of at least the given size.
+     * The same seed always gives the same document.
+     * @param valid whether to leave the document intact, or drop one closing brace near the middle
+     */
+    static String generate(int size, boolean valid) {
+        Random random = new Random(42);
+        StringBuilder out = new StringBuilder(size + 1024);
+        out.append("{\n  \"entries\": [\n");
+        for (int i = 0; out.length() < size; i++) {
+            if (i > 0) out.append(",\n");
+            out.append("    {\n")
+                    .append("      \"id\": \"entry_").append(i).append("\",\n")
+                    .append("      \"enabled\": ").append(random.nextBoolean()).append(",\n")
+                    .append("      \"weight\": ").append(random.nextInt(1000) / 10.0).append(",\n")
+                    .append("      \"tags\": [\"alpha\", \"beta \\\"quoted\\\"\", \"gamma\"],\n")
+                    .append("      \"settings\": {\"min\": ").append(random.nextInt(64))
+                    .append(", \"max\": ").append(64 + random.nextInt(64))
+                    .append(", \"mode\": null}\n")
+                    .append("    }");
+        }
+        out.append("\n  ]\n}\n");
+        if (!valid) {
+            int brace = out.indexOf("}", out.length() / 2);
+            out.deleteCharAt(brace);
+        }
+        return out.toString();
+    }
+}